@@ -0,0 +1,272 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import modelling.StoredTypes;
+
+/**
+ * A compact binary snapshot format. Unlike the Java serialization every Object
+ * of the graph is written exactly once with a numeric id, all references are
+ * written as this id. The stored Objects get the ids 0 to n-1 in the order they
+ * are given, the Objects only reachable from them get the following ids.
+ *
+ * Each class writes its own fields, see BinaryStorable. A class is identified
+ * by the stable id of its StoreType, all StoreTypes are listed in StoredTypes.
+ *
+ * A snapshot consists of
+ * <ul>
+ * <li>the id and the encoding version of each used StoreType</li>
+ * <li>the StoreType id of each Object, so all Objects can be allocated
+ * first</li>
+ * <li>the fields of each Object</li>
+ * <li>the generation of the snapshot</li>
+ * </ul>
+ *
+ * The ChunkedCodec uses the same encoding for each of its chunks. There the
+ * stored Objects of other chunks are written as their id in the snapshot.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+class BinaryCodec implements StoreCodec {
+
+	private static final int MAGIC = 0x4E544231;
+	/**
+	 * Version 1 was written by reflection and can't be read any more
+	 */
+	private static final int VERSION = 2;
+
+	private static final Map<Integer, StoreType<?>> typesById = new HashMap<>();
+	private static final Map<Class<?>, StoreType<?>> typesByClass = new HashMap<>();
+
+	static {
+		for (StoreType<?> type : StoredTypes.getAll()) {
+			StoreType<?> previous = typesById.put(type.getId(), type);
+			assert (previous == null);
+			typesByClass.put(type.getType(), type);
+		}
+	}
+
+	@Override
+	public byte[] encode(List<? extends Serializable> objects, long generation) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		encodeChunk(out, objects, null);
+		out.writeLong(generation);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Snapshot decode(byte[] snapshot) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+		if (in.readInt() != MAGIC) {
+			throw new StreamCorruptedException("No binary snapshot");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new StreamCorruptedException("Unknown version " + version + " of the binary snapshot");
+		}
+		ChunkDecoder chunk = new ChunkDecoder(in);
+		chunk.fill(null);
+		long generation = in.readLong();
+		return new Snapshot(chunk.getStoredObjects(), generation);
+	}
+
+	/**
+	 * Encode a set of Objects with all Objects that are only reachable from them.
+	 *
+	 * @param out         - the stream to write to
+	 * @param objects     - the stored Objects of this chunk
+	 * @param externalIds - the ids of the stored Objects of other chunks. They are
+	 *                    written as a reference to their id. Can be null.
+	 * @throws IOException
+	 */
+	static void encodeChunk(DataOutputStream out, List<? extends Serializable> objects,
+			Map<?, Long> externalIds) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream bodyOut = new DataOutputStream(body);
+		StoreOutput storeOut = new StoreOutput(bodyOut, externalIds);
+		for (Serializable object : objects) {
+			if (!(object instanceof BinaryStorable)) {
+				throw new NotSerializableException(object.getClass().getName());
+			}
+			storeOut.objectId((BinaryStorable) object);
+		}
+		// The list grows while the Objects are written
+		List<BinaryStorable> all = storeOut.getObjects();
+		List<StoreType<?>> objectTypes = new ArrayList<>(all.size());
+		for (int i = 0; i < all.size(); i++) {
+			BinaryStorable object = all.get(i);
+			objectTypes.add(getType(object.getClass()));
+			object.writeTo(storeOut);
+		}
+		bodyOut.flush();
+
+		Map<Integer, StoreType<?>> usedTypes = new LinkedHashMap<>();
+		for (StoreType<?> type : objectTypes) {
+			usedTypes.put(type.getId(), type);
+		}
+		writeVarInt(out, usedTypes.size());
+		for (StoreType<?> type : usedTypes.values()) {
+			writeVarInt(out, type.getId());
+			writeVarInt(out, type.getVersion());
+		}
+		writeVarInt(out, objectTypes.size());
+		for (StoreType<?> type : objectTypes) {
+			writeVarInt(out, type.getId());
+		}
+		writeVarInt(out, objects.size());
+		out.flush();
+		body.writeTo(out);
+	}
+
+	private static StoreType<?> getType(Class<?> c) throws NotSerializableException {
+		StoreType<?> type = typesByClass.get(c);
+		if (type == null) {
+			throw new NotSerializableException(c.getName() + " has no StoreType");
+		}
+		return type;
+	}
+
+	/**
+	 * Decodes one chunk in two steps. The constructor reads the types and
+	 * allocates all Objects, fill() reads their fields. So the Objects of all
+	 * chunks can be allocated first and then be filled in parallel.
+	 */
+	static class ChunkDecoder {
+
+		private final BinaryStorable[] objects;
+		private final int[] versions;
+		private final int numberOfStoredObjects;
+		private final StoreInput input;
+
+		ChunkDecoder(DataInputStream in) throws IOException {
+			Map<Integer, Integer> usedVersions = new HashMap<>();
+			int numberOfTypes = readVarInt(in);
+			for (int i = 0; i < numberOfTypes; i++) {
+				int id = readVarInt(in);
+				int version = readVarInt(in);
+				if (!typesById.containsKey(id)) {
+					throw new StreamCorruptedException("Unknown StoreType " + id);
+				}
+				if (version > typesById.get(id).getVersion()) {
+					throw new StreamCorruptedException(typesById.get(id).getType().getName()
+							+ " was written by a newer version " + version);
+				}
+				usedVersions.put(id, version);
+			}
+
+			// First allocate all Objects, so they can reference each other
+			objects = new BinaryStorable[readVarInt(in)];
+			versions = new int[objects.length];
+			for (int i = 0; i < objects.length; i++) {
+				int id = readVarInt(in);
+				Integer version = usedVersions.get(id);
+				if (version == null) {
+					throw new StreamCorruptedException("Unknown StoreType " + id);
+				}
+				objects[i] = typesById.get(id).allocate();
+				versions[i] = version;
+			}
+			numberOfStoredObjects = readVarInt(in);
+			input = new StoreInput(in, objects);
+		}
+
+		/**
+		 * @return the stored Objects of this chunk in the order they were given to
+		 *         encodeChunk(). They are empty until the chunk is filled.
+		 */
+		List<Serializable> getStoredObjects() {
+			List<Serializable> stored = new ArrayList<>(numberOfStoredObjects);
+			for (int i = 0; i < numberOfStoredObjects; i++) {
+				stored.add(objects[i]);
+			}
+			return stored;
+		}
+
+		/**
+		 * Read a stored Object into an existing Object instead of the allocated
+		 * one, e.g. to apply an update of the journal. Must be called before
+		 * fill().
+		 *
+		 * @param index  - the index of the stored Object in this chunk
+		 * @param object - of the same class as the stored Object
+		 * @throws StreamCorruptedException - if the classes differ
+		 */
+		void replaceStoredObject(int index, BinaryStorable object) throws StreamCorruptedException {
+			assert (index < numberOfStoredObjects);
+			if (object.getClass() != objects[index].getClass()) {
+				throw new StreamCorruptedException("Expected a " + object.getClass().getName() + " but found a "
+						+ objects[index].getClass().getName());
+			}
+			objects[index] = object;
+		}
+
+		/**
+		 * Read the fields of all Objects of this chunk.
+		 *
+		 * @param externalObjects - the stored Objects of all chunks by their id. Can
+		 *                        be null if there are no other chunks.
+		 * @throws IOException
+		 */
+		void fill(Object[] externalObjects) throws IOException {
+			input.setExternalObjects(externalObjects);
+			for (int i = 0; i < objects.length; i++) {
+				input.setVersion(versions[i]);
+				objects[i].readFrom(input);
+			}
+		}
+	}
+
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xffffffffL);
+	}
+
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed number");
+	}
+}
@@ -0,0 +1,42 @@
+package main;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Objects that the BinaryCodec writes with their own encoder. Each class has a
+ * StoreType with a stable id, which allocates an empty Object without side
+ * effects. All Objects of a snapshot are allocated first and then read, so
+ * Objects can reference each other in cycles.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+public interface BinaryStorable extends Serializable {
+
+	/**
+	 * Write all fields that are stored. Other Objects are written with
+	 * writeReference(), they have to be BinaryStorable as well.
+	 * 
+	 * The StoreHandler writes snapshots while the model runs. Hold the lock that
+	 * guards the fields while they are written, but no other lock: a referenced
+	 * Object is written later with its own lock.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(StoreOutput out) throws IOException;
+
+	/**
+	 * Read the fields in the order writeTo() has written them. The referenced
+	 * Objects are allocated, but may not be read yet. Only their identity may be
+	 * used here, everything else belongs into MySerializable.restore(). The
+	 * journal replays updates into existing Objects, so collections are cleared
+	 * before they are read.
+	 *
+	 * @param in
+	 * @throws IOException
+	 */
+	void readFrom(StoreInput in) throws IOException;
+}
@@ -0,0 +1,109 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import modelling.Balise;
+import modelling.TrainScope;
+import modelling.Vehicle;
+
+/**
+ * A binary snapshot that is split into chunks, which can be decoded
+ * independently of each other: the topology, the rolling stock, the balises and
+ * the train scopes. Each chunk is encoded by the BinaryCodec, the stored Objects
+ * of other chunks are referenced by their id.
+ * 
+ * A snapshot consists of the generation and for each chunk the ids of its
+ * stored Objects, its length and the encoded chunk.
+ * 
+ * @see ChunkedSnapshot
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class ChunkedCodec implements StoreCodec {
+
+	static final int MAGIC = 0x4E544331;
+	/**
+	 * Version 1 contained chunks of version 1 of the BinaryCodec
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * The chunks of a snapshot. Objects of a chunk only reference Objects of the
+	 * same or of earlier chunks, except for references between the rolling stock
+	 * and the train scopes.
+	 */
+	enum Chunk {
+		TOPOLOGY, ROLLING_STOCK, BALISES, TRAIN_SCOPES;
+
+		static Chunk of(Class<?> c) {
+			if (Vehicle.class.isAssignableFrom(c)) {
+				return ROLLING_STOCK;
+			}
+			if (Balise.class.isAssignableFrom(c)) {
+				return BALISES;
+			}
+			if (TrainScope.class.isAssignableFrom(c)) {
+				return TRAIN_SCOPES;
+			}
+			return TOPOLOGY;
+		}
+	}
+
+	@Override
+	public byte[] encode(List<? extends Serializable> objects, long generation) throws IOException {
+		Map<Object, Long> ids = new IdentityHashMap<>();
+		List<List<Serializable>> chunks = new ArrayList<>();
+		List<List<Long>> chunkIds = new ArrayList<>();
+		for (int i = 0; i < Chunk.values().length; i++) {
+			chunks.add(new ArrayList<>());
+			chunkIds.add(new ArrayList<>());
+		}
+		long id = 0;
+		for (Serializable object : objects) {
+			ids.put(object, id);
+			int chunk = Chunk.of(object.getClass()).ordinal();
+			chunks.get(chunk).add(object);
+			chunkIds.get(chunk).add(id);
+			id++;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(generation);
+		BinaryCodec.writeVarInt(out, objects.size());
+		BinaryCodec.writeVarInt(out, chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+			DataOutputStream chunkOut = new DataOutputStream(chunkBytes);
+			BinaryCodec.encodeChunk(chunkOut, chunks.get(i), ids);
+			chunkOut.flush();
+
+			out.writeByte(i);
+			BinaryCodec.writeVarInt(out, chunkIds.get(i).size());
+			for (long chunkId : chunkIds.get(i)) {
+				BinaryCodec.writeVarLong(out, chunkId);
+			}
+			out.writeInt(chunkBytes.size());
+			chunkBytes.writeTo(out);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Snapshot decode(byte[] snapshot) throws IOException, ClassNotFoundException {
+		ChunkedSnapshot chunks = ChunkedSnapshot.load(snapshot);
+		chunks.awaitFilled();
+		return new Snapshot(chunks.getObjects(), chunks.getGeneration());
+	}
+}
@@ -0,0 +1,226 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import main.BinaryCodec.ChunkDecoder;
+import main.ChunkedCodec.Chunk;
+
+/**
+ * A snapshot of the ChunkedCodec while it is loaded. First the Objects of all
+ * chunks are allocated in parallel, so every stored Object is known by its id
+ * right away. Then the chunks are filled in parallel. Only the topology is
+ * awaited when loading, the other chunks are completed in the background and
+ * awaited when they are used for the first time.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class ChunkedSnapshot {
+
+	private final long generation;
+	private final Serializable[] objects;
+	private final Map<Chunk, List<Serializable>> storedObjects = new EnumMap<>(Chunk.class);
+	private final Map<Chunk, CompletableFuture<Void>> filled = new EnumMap<>(Chunk.class);
+	/**
+	 * A chunk is ready when it is filled and its Objects are restored
+	 */
+	private final Map<Chunk, CompletableFuture<Void>> ready = new EnumMap<>(Chunk.class);
+	private final Executor executor;
+	private final long loadStart;
+
+	static ChunkedSnapshot load(byte[] snapshot) throws IOException, ClassNotFoundException {
+		return load(snapshot, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Allocate all Objects of the snapshot and start to fill the chunks.
+	 *
+	 * @param snapshot - a snapshot of the ChunkedCodec
+	 * @param executor - decodes the chunks
+	 * @return the loading snapshot
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	static ChunkedSnapshot load(byte[] snapshot, Executor executor) throws IOException, ClassNotFoundException {
+		long loadStart = System.nanoTime();
+		ByteArrayInputStream bytes = new ByteArrayInputStream(snapshot);
+		DataInputStream in = new DataInputStream(bytes);
+		if (in.readInt() != ChunkedCodec.MAGIC) {
+			throw new StreamCorruptedException("No chunked snapshot");
+		}
+		int version = in.readInt();
+		if (version != ChunkedCodec.VERSION) {
+			throw new StreamCorruptedException("Unknown version " + version + " of the chunked snapshot");
+		}
+		long generation = in.readLong();
+		Serializable[] objects = new Serializable[BinaryCodec.readVarInt(in)];
+
+		Map<Chunk, long[]> chunkIds = new EnumMap<>(Chunk.class);
+		Map<Chunk, CompletableFuture<ChunkDecoder>> decoders = new EnumMap<>(Chunk.class);
+		int numberOfChunks = BinaryCodec.readVarInt(in);
+		for (int i = 0; i < numberOfChunks; i++) {
+			int ordinal = in.readByte();
+			if (ordinal < 0 || ordinal >= Chunk.values().length) {
+				throw new StreamCorruptedException("Unknown chunk " + ordinal);
+			}
+			Chunk chunk = Chunk.values()[ordinal];
+			long[] ids = new long[BinaryCodec.readVarInt(in)];
+			for (int j = 0; j < ids.length; j++) {
+				ids[j] = BinaryCodec.readVarLong(in);
+			}
+			int length = in.readInt();
+			int offset = snapshot.length - bytes.available();
+			in.skipBytes(length);
+
+			chunkIds.put(chunk, ids);
+			decoders.put(chunk, CompletableFuture.supplyAsync(() -> {
+				try {
+					return new ChunkDecoder(new DataInputStream(new ByteArrayInputStream(snapshot, offset, length)));
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+
+		ChunkedSnapshot loading = new ChunkedSnapshot(generation, objects, executor, loadStart);
+		for (Chunk chunk : Chunk.values()) {
+			List<Serializable> stored = new ArrayList<>();
+			if (decoders.containsKey(chunk)) {
+				ChunkDecoder decoder = join(decoders.get(chunk));
+				stored = decoder.getStoredObjects();
+				long[] ids = chunkIds.get(chunk);
+				for (int j = 0; j < ids.length; j++) {
+					objects[(int) ids[j]] = stored.get(j);
+				}
+			}
+			loading.storedObjects.put(chunk, stored);
+		}
+		// All Objects are allocated, now the chunks can reference each other
+		for (Chunk chunk : Chunk.values()) {
+			CompletableFuture<Void> fill;
+			if (decoders.containsKey(chunk)) {
+				ChunkDecoder decoder = decoders.get(chunk).join();
+				fill = CompletableFuture.runAsync(() -> {
+					try {
+						decoder.fill(objects);
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, executor);
+			} else {
+				fill = CompletableFuture.completedFuture(null);
+			}
+			loading.filled.put(chunk, fill);
+			loading.ready.put(chunk, fill);
+		}
+		return loading;
+	}
+
+	private ChunkedSnapshot(long generation, Serializable[] objects, Executor executor, long loadStart) {
+		this.generation = generation;
+		this.objects = objects;
+		this.executor = executor;
+		this.loadStart = loadStart;
+	}
+
+	long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return all stored Objects in order of their ids. The Objects of a chunk
+	 *         are empty until the chunk is filled.
+	 */
+	List<Serializable> getObjects() {
+		return Arrays.asList(objects);
+	}
+
+	/**
+	 * Restore the Objects of each chunk as soon as the chunk and all chunks
+	 * before it are filled.
+	 *
+	 * @see MySerializable#restore()
+	 */
+	void restoreInBackground() {
+		List<CompletableFuture<Void>> fills = new ArrayList<>();
+		for (Chunk chunk : Chunk.values()) {
+			fills.add(filled.get(chunk));
+			List<Serializable> stored = storedObjects.get(chunk);
+			CompletableFuture<Void> restored = CompletableFuture
+					.allOf(fills.toArray(new CompletableFuture<?>[fills.size()])).thenRunAsync(() -> {
+						for (Serializable object : stored) {
+							if (object instanceof MySerializable) {
+								((MySerializable) object).restore();
+							}
+						}
+					}, executor);
+			restored.thenRun(() -> System.out.println("The StoreHandler has loaded " + stored.size() + " Objects of "
+					+ chunk + " after " + (System.nanoTime() - loadStart) / 1000000 + " ms"));
+			ready.put(chunk, restored);
+		}
+	}
+
+	/**
+	 * Wait until all chunks are filled.
+	 *
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	void awaitFilled() throws IOException, ClassNotFoundException {
+		for (CompletableFuture<Void> fill : filled.values()) {
+			join(fill);
+		}
+	}
+
+	/**
+	 * Wait until the chunk of a class is ready.
+	 */
+	void await(Class<?> c) {
+		await(Chunk.of(c));
+	}
+
+	void await(Chunk chunk) {
+		try {
+			ready.get(chunk).join();
+		} catch (CompletionException e) {
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**
+	 * Wait until all chunks are ready.
+	 */
+	void awaitAll() {
+		for (Chunk chunk : Chunk.values()) {
+			await(chunk);
+		}
+	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException, ClassNotFoundException {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof ClassNotFoundException) {
+				throw (ClassNotFoundException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package main;
+
+/**
+ * Decides how often the StoreHandler forces its files to the disk.
+ * 
+ * EVERY_FLUSH - after every snapshot and every journal flush
+ * INTERVAL - at most once per StoreHandler.FSYNC_INTERVAL
+ * NEVER - leave it to the operating system
+ */
+public enum FsyncPolicy {
+	EVERY_FLUSH, INTERVAL, NEVER
+}
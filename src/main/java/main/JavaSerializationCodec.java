@@ -0,0 +1,57 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The snapshot format of the older versions: the number of Objects, each Object
+ * written with the default Java serialization and at the end the generation of
+ * the snapshot.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class JavaSerializationCodec implements StoreCodec {
+
+	@Override
+	public byte[] encode(List<? extends Serializable> objects, long generation) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		// At the Beginning store the number of Objects being stored
+		oos.writeInt(objects.size());
+		for (Serializable item : objects) {
+			oos.writeObject(item);
+		}
+		// At the End store the generation of the snapshot, the journal refers to it
+		oos.writeLong(generation);
+		oos.close();
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Snapshot decode(byte[] snapshot) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(snapshot))) {
+			int numberOfObjects = ois.readInt();
+			List<Serializable> objects = new ArrayList<>(numberOfObjects);
+			for (int i = 0; i < numberOfObjects; i++) {
+				objects.add((Serializable) ois.readObject());
+			}
+			long generation;
+			try {
+				generation = ois.readLong();
+			} catch (EOFException e) {
+				// Snapshots of older versions have no generation
+				generation = 0;
+			}
+			return new Snapshot(objects, generation);
+		}
+	}
+}
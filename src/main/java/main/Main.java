@@ -13,7 +13,11 @@ import modelling.Node;
 import modelling.Position;
 import modelling.Track;
 import modelling.TrainScope;
+import sensorsAktuators.AsyncControlUnit;
+import sensorsAktuators.BlockingControlUnit;
+import sensorsAktuators.CommandScheduler;
 import sensorsAktuators.ControlUnit;
+import sensorsAktuators.DeduplicatingControlUnit;
 import sensorsAktuators.Z21;
 
 public class Main {
@@ -34,6 +38,10 @@ public class Main {
 	public static volatile double EPSILON = 0.0000001;
 	public static volatile int SCALE = 160;
 	public static ControlUnit controlUnit;
+	/**
+	 * The same control unit as controlUnit, but without waiting for the network
+	 */
+	public static AsyncControlUnit asyncControlUnit;
 
 	public static void main(String[] args) throws Exception {
 		
@@ -41,7 +49,9 @@ public class Main {
 		String railwayID = ModelRailwaySelector.openModelRailway();
 		// Load and initialize Model
 		loadModelRailwayFields(railwayID);
-		controlUnit = new Z21();
+		// Unchanged drive levels are dropped before they take the tokens of the scheduler
+		asyncControlUnit = new DeduplicatingControlUnit(new CommandScheduler(new Z21()));
+		controlUnit = new BlockingControlUnit(asyncControlUnit);
 		StoreHandler.open();
 		//TODO der folgende Befehl muss hier wieder weg.
 		StoreHandler.deleteAllFromDisk();
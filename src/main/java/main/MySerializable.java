@@ -18,4 +18,19 @@ public interface MySerializable extends Serializable{
 		StoreHandler.deleteObject(this);
 	}
 
+	/**
+	 * This Method should be called if the stored state of an Object has changed.
+	 * Only dirty Objects will be written again by the StoreHandler.
+	 */
+	default public void markDirty() {
+		StoreHandler.markDirty(this);
+	}
+
+	/**
+	 * This Method is called by the StoreHandler after all Objects have been
+	 * loaded. Objects can rebuild the state here, that is not stored.
+	 */
+	default public void restore() {
+	}
+
 }
@@ -0,0 +1,164 @@
+package main;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A SnapshotFile writes the snapshot of the layout crash-safe. The snapshot is
+ * written to a temporary file and then renamed atomically, so there is always a
+ * complete snapshot on the disk. The previous snapshot is kept as a backup.
+ * 
+ * Each snapshot starts with a header that contains the length and a checksum of
+ * the payload. If the checksum doesn't match, the backup is loaded instead.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class SnapshotFile {
+
+	private static final int MAGIC = 0x4E545331;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 20;
+
+	private final Path file;
+	private final Path backup;
+	private final Path temp;
+
+	SnapshotFile(String anlageID) {
+		this.file = Paths.get("serializedObjects", anlageID + ".ser");
+		this.backup = Paths.get("serializedObjects", anlageID + ".ser.bak");
+		this.temp = Paths.get("serializedObjects", anlageID + ".ser.tmp");
+	}
+
+	/**
+	 * Write a new snapshot.
+	 * 
+	 * @param payload - the encoded layout
+	 * @param sync    - force the snapshot to the disk before it replaces the old
+	 *                one and force the renaming afterwards
+	 * @throws IOException
+	 */
+	void write(byte[] payload, boolean sync) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		try (FileOutputStream fos = new FileOutputStream(temp.toFile())) {
+			DataOutputStream out = new DataOutputStream(fos);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(payload.length);
+			out.writeLong(crc.getValue());
+			out.write(payload);
+			out.flush();
+			if (sync) {
+				fos.getFD().sync();
+			}
+		}
+
+		if (Files.exists(file)) {
+			move(file, backup);
+		}
+		move(temp, file);
+		if (sync) {
+			syncDirectory(file.getParent());
+		}
+	}
+
+	/**
+	 * A rename is only durable after the directory that contains the file is
+	 * forced to the disk as well.
+	 * 
+	 * @param directory
+	 * @throws IOException
+	 */
+	private static void syncDirectory(Path directory) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch (IOException e) {
+			// Some platforms (Windows) can't open a directory, there the rename is
+			// durable with the file
+			return;
+		}
+		try (channel) {
+			channel.force(true);
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Read the newest valid snapshot. Snapshots of older versions have no header,
+	 * they are returned as they are.
+	 * 
+	 * @return the payload of the snapshot or null if there is no valid snapshot
+	 */
+	byte[] read() {
+		byte[] payload = read(file);
+		if (payload == null && Files.exists(backup)) {
+			System.out.println("WARNUNG: The snapshot " + file + " is damaged, the backup " + backup + " is loaded");
+			payload = read(backup);
+		}
+		return payload;
+	}
+
+	private static byte[] read(Path path) {
+		if (!Files.exists(path)) {
+			return null;
+		}
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		if (bytes.length >= 2 && (short) (((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff)) == ObjectStreamConstants.STREAM_MAGIC) {
+			// Snapshot without header
+			return bytes;
+		}
+		if (bytes.length < HEADER_LENGTH) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			int length = in.readInt();
+			long checksum = in.readLong();
+			if (length != bytes.length - HEADER_LENGTH) {
+				return null;
+			}
+			byte[] payload = new byte[length];
+			in.readFully(payload);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if (crc.getValue() != checksum) {
+				return null;
+			}
+			return payload;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package main;
+
+import java.io.ObjectStreamConstants;
+
+/**
+ * The formats in which the StoreHandler can write its snapshots. Snapshots of
+ * all formats can be loaded, the format is detected by the first bytes.
+ * 
+ * JAVA_SERIALIZATION - the default Java serialization
+ * BINARY - a compact binary format, see BinaryCodec
+ * CHUNKED - the binary format split into chunks, that are loaded in parallel, see ChunkedCodec
+ */
+public enum SnapshotFormat {
+	JAVA_SERIALIZATION(new JavaSerializationCodec()), BINARY(new BinaryCodec()), CHUNKED(new ChunkedCodec());
+
+	private final StoreCodec codec;
+
+	private SnapshotFormat(StoreCodec codec) {
+		this.codec = codec;
+	}
+
+	public StoreCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * @param snapshot - an encoded snapshot
+	 * @return the format the snapshot was written in
+	 */
+	public static SnapshotFormat of(byte[] snapshot) {
+		if (snapshot.length >= 2
+				&& (short) (((snapshot[0] & 0xff) << 8) | (snapshot[1] & 0xff)) == ObjectStreamConstants.STREAM_MAGIC) {
+			return JAVA_SERIALIZATION;
+		}
+		if (snapshot.length >= 4 && ((snapshot[0] & 0xff) << 24 | (snapshot[1] & 0xff) << 16
+				| (snapshot[2] & 0xff) << 8 | (snapshot[3] & 0xff)) == ChunkedCodec.MAGIC) {
+			return CHUNKED;
+		}
+		return BINARY;
+	}
+}
@@ -0,0 +1,62 @@
+package main;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A StoreCodec encodes the stored Objects of the layout into a snapshot and
+ * back. The id of each stored Object is its index in the snapshot, the journal
+ * refers to the Objects by this id.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public interface StoreCodec {
+
+	/**
+	 * Encode all stored Objects.
+	 * 
+	 * @param objects    - the stored Objects in order of their ids
+	 * @param generation - the generation of the snapshot
+	 * @return the encoded snapshot
+	 * @throws IOException
+	 */
+	byte[] encode(List<? extends Serializable> objects, long generation) throws IOException;
+
+	/**
+	 * Decode a snapshot that was encoded by this codec.
+	 * 
+	 * @param snapshot - the encoded snapshot
+	 * @return the stored Objects and the generation of the snapshot
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	Snapshot decode(byte[] snapshot) throws IOException, ClassNotFoundException;
+
+	/**
+	 * The content of a decoded snapshot.
+	 */
+	public static final class Snapshot {
+
+		private final List<Serializable> objects;
+		private final long generation;
+
+		public Snapshot(List<Serializable> objects, long generation) {
+			this.objects = objects;
+			this.generation = generation;
+		}
+
+		/**
+		 * @return the stored Objects in order of their ids
+		 */
+		public List<Serializable> getObjects() {
+			return objects;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
+	}
+}
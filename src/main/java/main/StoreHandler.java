@@ -1,14 +1,16 @@
 package main;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ConcurrentModificationException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import modelling.Balise;
 import modelling.Locomotive;
@@ -23,38 +25,153 @@ import modelling.TrainScope;
  */
 public class StoreHandler implements Runnable {
 
-	private static final Set<Serializable> storeableItemsForMethodResponses = new HashSet<>();
+	/**
+	 * In journal mode only the changes (add and delete records) are appended to a
+	 * log file instead of rewriting the whole layout every second. This must be
+	 * set before the StoreHandler is opened.
+	 */
+	public static volatile boolean JOURNAL_MODE = true;
+	/**
+	 * The number of journal records after which the journal is folded into a new
+	 * snapshot.
+	 */
+	public static volatile int COMPACTION_THRESHOLD = 1000;
+	/**
+	 * The interval in ms in which moving Objects (e.g. TrainScopes) mark their
+	 * durable state as dirty. Positions in between are not stored.
+	 */
+	public static volatile long CHECKPOINT_INTERVAL = 5000;
+	/**
+	 * How often snapshots and the journal are forced to the disk. All writes are
+	 * done by the StoreHandler Thread, so the speed control never waits for the
+	 * disk.
+	 */
+	public static volatile FsyncPolicy FSYNC_POLICY = FsyncPolicy.INTERVAL;
+	/**
+	 * The interval in ms for FsyncPolicy.INTERVAL
+	 */
+	public static volatile long FSYNC_INTERVAL = 5000;
+	/**
+	 * The format of new snapshots. Snapshots of all formats can be loaded.
+	 */
+	public static volatile SnapshotFormat SNAPSHOT_FORMAT = SnapshotFormat.CHUNKED;
+
+	/**
+	 * All stored Objects, indexed by their concrete class.
+	 */
+	private static final Map<Class<?>, Set<Serializable>> storeableItemsForMethodResponses = new ConcurrentHashMap<>();
 
 	private static final Set<Serializable> storeableItemsBatch = new HashSet<>();
 	private static final Set<Serializable> addListBatch = new HashSet<>();
 	private static final Set<Serializable> deleteListBatch = new HashSet<>();
+	private static final Set<Serializable> dirtyListBatch = new HashSet<>();
 	private static boolean open = false;
+	/**
+	 * The Thread that writes the changes, until it has terminated after close()
+	 */
+	private static Thread storeThread;
+
+	/**
+	 * The changeEpoch is increased with every add, delete or markDirty. If it
+	 * didn't move since the last flush, there is nothing to write.
+	 */
+	private static long changeEpoch = 0;
+	private static long flushedEpoch = 0;
+	private static long performedFlushes = 0;
+	private static long skippedFlushes = 0;
+
+	/**
+	 * The id of each stored Object. The ids are given by the position in the
+	 * snapshot, Objects added afterwards get the next free id.
+	 */
+	private static final Map<Serializable, Long> objectIds = new IdentityHashMap<>();
+	private static long nextObjectId = 0;
+	private static long snapshotGeneration = 0;
+	private static StoreJournal journal;
+	private static SnapshotFile snapshotFile;
+	private static boolean journaling = false;
+	private static long lastSync = 0;
+	private static int replayedRecords = 0;
+	/**
+	 * The snapshot while its chunks are loaded in the background. Is null if all
+	 * Objects are loaded.
+	 */
+	private static ChunkedSnapshot loading;
 
 	synchronized public static void open() {
 		if (!open) {
-
+			long start = System.nanoTime();
 			open = true;
+			journal = new StoreJournal(Main.anlageID);
+			snapshotFile = new SnapshotFile(Main.anlageID);
+			clearStoredObjects();
 			loadAllObjects();
 			handleAddList();
-			new Thread(new StoreHandler()).start();
+			// The journal is started by the StoreHandler Thread
+			journaling = JOURNAL_MODE;
+			storeThread = new Thread(new StoreHandler());
+			storeThread.start();
+			printPhase("open the StoreHandler", start);
+			System.out.println();
 		}
 
 	}
 
-	private static void writeNewEmptyList(String filename) {
+	/**
+	 * Forget the Objects of a previous open(). A StoreHandler that is opened again
+	 * only contains the Objects of the snapshot and the journal.
+	 */
+	synchronized private static void clearStoredObjects() {
+		storeableItemsBatch.clear();
+		addListBatch.clear();
+		deleteListBatch.clear();
+		dirtyListBatch.clear();
+		for (Set<Serializable> items : storeableItemsForMethodResponses.values()) {
+			items.clear();
+		}
+		objectIds.clear();
+		nextObjectId = 0;
+		snapshotGeneration = 0;
+	}
+
+	/**
+	 * Start a new journal on top of the current snapshot. If records of the old
+	 * journal have been replayed, it is folded into a new snapshot first. Only
+	 * called by the StoreHandler Thread without the lock of the StoreHandler.
+	 */
+	private static void startJournal() {
 		try {
-			ObjectOutputStream oos = new ObjectOutputStream(
-					new FileOutputStream("serializedObjects/" + filename + ".ser"));
-			// At the Beginning store the number of Objects being stored
-			oos.writeInt(0);
-			oos.flush();
-			oos.close();
+			if (replayedRecords > 0 && !storeAllObjects()) {
+				// The old journal is still needed
+				journaling = false;
+				return;
+			}
+			journal.open(snapshotGeneration);
 		} catch (IOException e) {
-			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * @param force - sync regardless of the FSYNC_POLICY, unless it is NEVER
+	 * @return whether the next write should be forced to the disk
+	 */
+	private static boolean shouldSync(boolean force) {
+		switch (FSYNC_POLICY) {
+		case EVERY_FLUSH:
+			return true;
+		case INTERVAL:
+			long now = System.currentTimeMillis();
+			if (force || now - lastSync >= FSYNC_INTERVAL) {
+				lastSync = now;
+				return true;
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
 	/**
 	 * This Method permanently deletes an Item from the disk.
 	 * 
@@ -67,8 +184,9 @@ public class StoreHandler implements Runnable {
 		}
 		deleteListBatch.add(object);
 		addListBatch.remove(object);
-		storeableItemsForMethodResponses.remove(object);
-
+		dirtyListBatch.remove(object);
+		getItemsOfClass(object.getClass()).remove(object);
+		changeEpoch++;
 	}
 
 	/**
@@ -83,14 +201,57 @@ public class StoreHandler implements Runnable {
 		}
 		addListBatch.add(object);
 		deleteListBatch.remove(object);
-		storeableItemsForMethodResponses.add(object);
+		getItemsOfClass(object.getClass()).add(object);
+		changeEpoch++;
+	}
+
+	/**
+	 * This Method marks an Item as changed, so that it will be written again with
+	 * the next flush. Objects that are not stored are ignored.
+	 * 
+	 * @param object
+	 */
+	synchronized public static void markDirty(Serializable object) {
+		if (getItemsOfClass(object.getClass()).contains(object)) {
+			dirtyListBatch.add(object);
+			changeEpoch++;
+		}
+	}
+
+	/**
+	 * @return the number of flushes that were written to disk.
+	 */
+	synchronized public static long getPerformedFlushes() {
+		return performedFlushes;
 	}
 
 	/**
-	 * This Method should be called in order to stop the StoreHandler
+	 * @return the number of flushes that were skipped because nothing changed.
 	 */
-	public synchronized static void close() {
-		open = false;
+	synchronized public static long getSkippedFlushes() {
+		return skippedFlushes;
+	}
+
+	/**
+	 * This Method should be called in order to stop the StoreHandler. It
+	 * returns after the StoreHandler Thread has stored all changes, so a
+	 * StoreHandler opened afterwards starts on the final snapshot and journal.
+	 */
+	public static void close() {
+		Thread thread;
+		synchronized (StoreHandler.class) {
+			open = false;
+			thread = storeThread;
+			storeThread = null;
+			StoreHandler.class.notifyAll();
+		}
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	synchronized public static boolean isOpen() {
@@ -107,110 +268,293 @@ public class StoreHandler implements Runnable {
 		addListBatch.clear();
 	}
 
-	private static void storeAllObjects() {
-		if (storeableItemsBatch.isEmpty()) {
-			writeNewEmptyList(Main.anlageID);
-		} else {
-			try {
-				ObjectOutputStream oos = new ObjectOutputStream(
-						new FileOutputStream("serializedObjects/" + Main.anlageID + ".ser"));
-				// At the Beginning store the number of Objects being stored
-				oos.writeInt(storeableItemsBatch.size());
-				for (Serializable item : storeableItemsBatch) {
-					storeProcedure: while(true) {
-						try {
-							oos.writeObject(item);
-							break storeProcedure;
-						}catch (ConcurrentModificationException e){
-							try {
-								Thread.sleep(20);
-							} catch (InterruptedException e1) {
-								e1.printStackTrace();
-							}
-						}	
-					}
-				}
-				oos.flush();
-				oos.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+	/**
+	 * Write the whole layout again, but only if something changed since the last
+	 * flush.
+	 */
+	private static void storeAllObjectsIfChanged() {
+		synchronized (StoreHandler.class) {
+			if (changeEpoch == flushedEpoch) {
+				skippedFlushes++;
+				return;
+			}
+			flushedEpoch = changeEpoch;
+			performedFlushes++;
+			dirtyListBatch.clear();
+			handleAddList();
+			handleDeleteList();
+		}
+		if (!storeAllObjects()) {
+			synchronized (StoreHandler.class) {
+				// Try again with the next flush
+				changeEpoch++;
 			}
 		}
 	}
 
-	synchronized private static void loadAllObjects() {
-		ObjectInputStream ois;
+	/**
+	 * Append the changes of the current batch to the journal. Only added, deleted
+	 * and dirty Objects are encoded, each while it holds its own lock (see
+	 * BinaryStorable). If the journal has reached the
+	 * COMPACTION_THRESHOLD it is folded into a new snapshot.
+	 */
+	private static void appendChangesToJournal() {
+		Set<Serializable> added;
+		Set<Serializable> deleted;
+		Set<Serializable> dirty;
+		synchronized (StoreHandler.class) {
+			if (changeEpoch == flushedEpoch) {
+				skippedFlushes++;
+				return;
+			}
+			flushedEpoch = changeEpoch;
+			performedFlushes++;
+			added = new HashSet<>(addListBatch);
+			deleted = new HashSet<>(deleteListBatch);
+			dirty = new HashSet<>(dirtyListBatch);
+			dirtyListBatch.clear();
+			handleAddList();
+			handleDeleteList();
+		}
+		// New Objects are written completely anyway
+		dirty.removeAll(added);
 		try {
-			ois = new ObjectInputStream(new FileInputStream("serializedObjects/" + Main.anlageID + ".ser"));
-			int numberOfObjects = ois.readInt();
-			for (int i = 0; i < numberOfObjects; i++) {
-				Serializable object = (Serializable) ois.readObject();
-				addListBatch.add(object);
-				storeableItemsForMethodResponses.add(object);
-			}
-			ois.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (ClassNotFoundException e) {
-			// TODO Auto-generated catch block
+			for (Serializable item : deleted) {
+				Long id = objectIds.remove(item);
+				// Objects that were deleted before they were written need no record
+				if (id != null) {
+					journal.appendDelete(id);
+				}
+			}
+			// All ids are given first, so the new Objects can reference each other
+			List<Serializable> newItems = new ArrayList<>(added);
+			for (Serializable item : newItems) {
+				objectIds.put(item, nextObjectId++);
+			}
+			journal.appendAdd(newItems, objectIds);
+			List<Serializable> changedItems = new ArrayList<>();
+			for (Serializable item : dirty) {
+				if (objectIds.containsKey(item)) {
+					changedItems.add(item);
+				}
+			}
+			journal.appendUpdate(changedItems, objectIds);
+			journal.flush(shouldSync(false));
+		} catch (IOException | RuntimeException e) {
+			System.out.println("WARNUNG: The changes couldn't be appended to the journal");
 			e.printStackTrace();
+			// The journal may hold a part of the changes, a snapshot holds all of them
+			if (!compactJournal()) {
+				synchronized (StoreHandler.class) {
+					dirtyListBatch.addAll(dirty);
+					changeEpoch++;
+				}
+				// The next flushes write snapshots until one succeeds
+				journaling = false;
+			}
+			return;
+		}
+		if (journal.getRecordCount() >= COMPACTION_THRESHOLD) {
+			compactJournal();
 		}
+	}
 
-		System.out.println("The StoreHandler has opened this Objects:");
-		for (Serializable item : addListBatch) {
-			System.out.println(item.toString());
+	/**
+	 * Fold the journal into a new snapshot and start an empty journal.
+	 * 
+	 * @return false if the snapshot or the new journal couldn't be written
+	 */
+	private static boolean compactJournal() {
+		if (!storeAllObjects()) {
+			// Keep appending to the current journal
+			return false;
+		}
+		try {
+			journal.open(snapshotGeneration);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
 		}
-		System.out.println();
 	}
 
-	synchronized static void deleteAllFromDisk() {
-		if (!open) {
-			open();
+	/**
+	 * Write a new snapshot. The snapshot is encoded in memory first and then
+	 * replaces the old one atomically, so a crash never leaves a truncated
+	 * snapshot. Each Object is written while it holds its own lock (see
+	 * BinaryStorable), so it is stored in a consistent state without stopping
+	 * the trains. The Objects are not written at the same point in time.
+	 * 
+	 * Must not be called with the lock of the StoreHandler, because the model
+	 * marks Objects dirty while it holds their locks.
+	 * 
+	 * @return false if the snapshot couldn't be written. The ids and the
+	 *         generation of the old snapshot remain valid in this case.
+	 */
+	private static boolean storeAllObjects() {
+		List<Serializable> items;
+		synchronized (StoreHandler.class) {
+			items = new ArrayList<>(storeableItemsBatch);
 		}
-		deleteListBatch.addAll(storeableItemsBatch);
-		addListBatch.clear();
-		storeableItemsForMethodResponses.clear();
+		long generation = snapshotGeneration + 1;
+		try {
+			byte[] snapshot = SNAPSHOT_FORMAT.getCodec().encode(items, generation);
+			// A new snapshot is always synced, the journal is started on top of it
+			snapshotFile.write(snapshot, shouldSync(true));
+		} catch (IOException | RuntimeException e) {
+			System.out.println("WARNUNG: The snapshot couldn't be written");
+			e.printStackTrace();
+			return false;
+		}
+		snapshotGeneration = generation;
+		objectIds.clear();
+		nextObjectId = 0;
+		for (Serializable item : items) {
+			objectIds.put(item, nextObjectId++);
+		}
+		return true;
 	}
 
-	synchronized static HashSet<TrainScope> getAllTrainScopes() {
-		if (!open) {
-			open();
+	/**
+	 * Load the last snapshot and the journal. A chunked snapshot is decoded in
+	 * parallel, only the topology is loaded before this method returns. All other
+	 * chunks are awaited when they are used for the first time.
+	 */
+	synchronized private static void loadAllObjects() {
+		long start = System.nanoTime();
+		byte[] snapshot = snapshotFile.read();
+		printPhase("read the snapshot", start);
+
+		Map<Long, Serializable> objects = new LinkedHashMap<>();
+		ChunkedSnapshot chunks = null;
+		if (snapshot != null) {
+			start = System.nanoTime();
+			try {
+				SnapshotFormat format = SnapshotFormat.of(snapshot);
+				List<Serializable> content;
+				if (format == SnapshotFormat.CHUNKED) {
+					chunks = ChunkedSnapshot.load(snapshot);
+					chunks.await(ChunkedCodec.Chunk.TOPOLOGY);
+					content = chunks.getObjects();
+					snapshotGeneration = chunks.getGeneration();
+					printPhase("decode the topology", start);
+				} else {
+					StoreCodec.Snapshot decoded = format.getCodec().decode(snapshot);
+					content = decoded.getObjects();
+					snapshotGeneration = decoded.getGeneration();
+					printPhase("decode the snapshot", start);
+				}
+				long id = 0;
+				for (Serializable object : content) {
+					objects.put(id++, object);
+				}
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			} catch (ClassNotFoundException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
 		}
-		HashSet<TrainScope> scopes = new HashSet<TrainScope>();
-		for (Serializable object : storeableItemsForMethodResponses) {
-			if (!object.toString().contains("[") && object.toString().contains("TrainScope")) {
-				scopes.add((TrainScope) object);
+
+		replayedRecords = 0;
+		if (journal.hasRecords(snapshotGeneration)) {
+			start = System.nanoTime();
+			if (chunks != null) {
+				// The journal can change the Objects of all chunks
+				try {
+					chunks.awaitFilled();
+				} catch (IOException | ClassNotFoundException e) {
+					e.printStackTrace();
+				}
+				chunks = null;
 			}
+			replayedRecords = journal.replay(objects, snapshotGeneration);
+			printPhase("replay " + replayedRecords + " journal records", start);
 		}
-		return scopes;
-	}
 
-	synchronized static public HashSet<Balise> getAllBalises() {
-		if (!open) {
-			open();
+		start = System.nanoTime();
+		nextObjectId = 0;
+		for (Map.Entry<Long, Serializable> entry : objects.entrySet()) {
+			Serializable object = entry.getValue();
+			addListBatch.add(object);
+			getItemsOfClass(object.getClass()).add(object);
+			objectIds.put(object, entry.getKey());
+			nextObjectId = Math.max(nextObjectId, entry.getKey() + 1);
 		}
-		HashSet<Balise> balises = new HashSet<Balise>();
-		for (Serializable object : storeableItemsForMethodResponses) {
-			if (!object.toString().contains("[") && object.toString().contains("Balise")) {
-				balises.add((Balise) object);
+		printPhase("register " + objects.size() + " Objects", start);
+
+		// Rebuild the state that is not stored, e.g. the positions of the TrainScopes
+		if (chunks != null) {
+			chunks.restoreInBackground();
+			chunks.await(ChunkedCodec.Chunk.TOPOLOGY);
+			loading = chunks;
+		} else {
+			start = System.nanoTime();
+			for (Serializable object : objects.values()) {
+				if (object instanceof MySerializable) {
+					((MySerializable) object).restore();
+				}
 			}
+			printPhase("restore the Objects", start);
 		}
-		return balises;
 	}
 
-	synchronized static public HashSet<Locomotive> getAllLocomotives() {
+	private static void printPhase(String phase, long start) {
+		System.out.println("The StoreHandler needed " + (System.nanoTime() - start) / 1000000 + " ms to " + phase);
+	}
+
+	synchronized static void deleteAllFromDisk() {
 		if (!open) {
 			open();
 		}
-		HashSet<Locomotive> locomotives = new HashSet<>();
-		for (Serializable object : storeableItemsForMethodResponses) {
-			if (!object.toString().contains("[") && object.toString().contains("Locomotive")) {
-				locomotives.add((Locomotive) object);
+		deleteListBatch.addAll(storeableItemsBatch);
+		addListBatch.clear();
+		dirtyListBatch.clear();
+		for (Set<Serializable> items : storeableItemsForMethodResponses.values()) {
+			items.clear();
+		}
+		changeEpoch++;
+	}
+
+	private static Set<Serializable> getItemsOfClass(Class<?> c) {
+		return storeableItemsForMethodResponses.computeIfAbsent(c, k -> ConcurrentHashMap.newKeySet());
+	}
+
+	/**
+	 * Get all stored Objects of a concrete class. Subclasses are not included.
+	 * The returned Set is an unmodifiable view, that is kept up to date by the
+	 * StoreHandler.
+	 * 
+	 * @param c - the concrete class
+	 * @return all stored Objects of the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Set<T> getAll(Class<T> c) {
+		ChunkedSnapshot chunks;
+		synchronized (StoreHandler.class) {
+			if (!open) {
+				open();
 			}
+			chunks = loading;
+		}
+		if (chunks != null) {
+			// The chunks are loaded without the lock of the StoreHandler
+			chunks.await(c);
 		}
-		return locomotives;
+		return Collections.unmodifiableSet((Set<T>) getItemsOfClass(c));
+	}
+
+	static Set<TrainScope> getAllTrainScopes() {
+		return getAll(TrainScope.class);
+	}
+
+	public static Set<Balise> getAllBalises() {
+		return getAll(Balise.class);
+	}
+
+	public static Set<Locomotive> getAllLocomotives() {
+		return getAll(Locomotive.class);
 	}
 
 	@Override
@@ -218,22 +562,56 @@ public class StoreHandler implements Runnable {
 		System.out.println("Start StoreHandler Thread");
 		System.out.println();
 		Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+		ChunkedSnapshot chunks;
+		synchronized (StoreHandler.class) {
+			chunks = loading;
+		}
+		if (chunks != null) {
+			// Only complete Objects can be stored
+			chunks.awaitAll();
+			synchronized (StoreHandler.class) {
+				loading = null;
+			}
+		}
+		if (journaling) {
+			startJournal();
+		}
 		do {
-			handleAddList();
-			handleDeleteList();
-			storeAllObjects();
-			
-			try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			if (journaling) {
+				appendChangesToJournal();
+			} else {
+				storeAllObjectsIfChanged();
+			}
+
+			synchronized (StoreHandler.class) {
+				try {
+					// close() wakes the Thread up
+					if (open) {
+						StoreHandler.class.wait(1000);
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
 			}
 		} while (isOpen());
 
 		// At the end store all Objects again.
-		handleAddList();
-		handleDeleteList();
-		storeAllObjects();
+		if (journaling) {
+			appendChangesToJournal();
+			compactJournal();
+			try {
+				journal.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		} else {
+			synchronized (StoreHandler.class) {
+				dirtyListBatch.clear();
+				handleAddList();
+				handleDeleteList();
+			}
+			storeAllObjects();
+		}
 		System.out.println("StoreHandler Thread terminated");
 	}
 
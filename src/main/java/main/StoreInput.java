@@ -0,0 +1,190 @@
+package main;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.IntFunction;
+
+/**
+ * The stream a BinaryStorable reads its fields from, in the order they were
+ * written to the StoreOutput.
+ *
+ * @see BinaryCodec
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+public final class StoreInput {
+
+	private final DataInputStream in;
+	private final Object[] objects;
+	private Object[] externalObjects;
+	private int version;
+
+	/**
+	 * @param in      - the stream to read from
+	 * @param objects - the allocated Objects of this chunk by their id
+	 */
+	StoreInput(DataInputStream in, Object[] objects) {
+		this.in = in;
+		this.objects = objects;
+	}
+
+	/**
+	 * @param externalObjects - the stored Objects of all chunks by their id. Can
+	 *                        be null if there are no other chunks.
+	 */
+	void setExternalObjects(Object[] externalObjects) {
+		this.externalObjects = externalObjects;
+	}
+
+	void setVersion(int version) {
+		this.version = version;
+	}
+
+	/**
+	 * @return the version of the StoreType the current Object was written with
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return in.readBoolean();
+	}
+
+	public int readInt() throws IOException {
+		return (int) BinaryCodec.unZigZag(BinaryCodec.readVarLong(in));
+	}
+
+	public long readLong() throws IOException {
+		return BinaryCodec.unZigZag(BinaryCodec.readVarLong(in));
+	}
+
+	public double readDouble() throws IOException {
+		return in.readDouble();
+	}
+
+	/**
+	 * @return the String or null
+	 * @throws IOException
+	 */
+	public String readString() throws IOException {
+		int length = BinaryCodec.readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param type - the class of the enum
+	 * @return the constant or null
+	 * @throws IOException - if the enum has no such constant any more
+	 */
+	public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+		String name = readString();
+		if (name == null) {
+			return null;
+		}
+		try {
+			return Enum.valueOf(type, name);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidObjectException(type.getName() + " has no constant " + name);
+		}
+	}
+
+	/**
+	 * @param type - the expected class of the Object
+	 * @return the Object or null
+	 * @throws IOException - if the Object has another class
+	 */
+	public <T> T readReference(Class<T> type) throws IOException {
+		long reference = BinaryCodec.readVarLong(in);
+		if (reference == 0) {
+			return null;
+		}
+		Object object;
+		try {
+			if ((reference & 1) == 1) {
+				object = externalObjects[(int) (reference >>> 1)];
+			} else {
+				object = objects[(int) (reference >>> 1) - 1];
+			}
+		} catch (NullPointerException | ArrayIndexOutOfBoundsException e) {
+			throw new StreamCorruptedException("Unknown reference " + reference);
+		}
+		if (!type.isInstance(object)) {
+			throw new StreamCorruptedException("Expected a " + type.getName() + " but found a "
+					+ (object == null ? null : object.getClass().getName()));
+		}
+		return type.cast(object);
+	}
+
+	/**
+	 * @param type     - the expected class of the elements
+	 * @param newArray - e.g. Edge[]::new
+	 * @return the array or null
+	 * @throws IOException
+	 */
+	public <T> T[] readReferences(Class<T> type, IntFunction<T[]> newArray) throws IOException {
+		int length = BinaryCodec.readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		T[] array = newArray.apply(length);
+		for (int i = 0; i < length; i++) {
+			array[i] = readReference(type);
+		}
+		return array;
+	}
+
+	/**
+	 * @param type - the expected class of the elements
+	 * @param into - the elements are added to this Collection
+	 * @throws IOException
+	 */
+	public <T> void readReferences(Class<T> type, Collection<? super T> into) throws IOException {
+		int length = BinaryCodec.readVarInt(in) - 1;
+		for (int i = 0; i < length; i++) {
+			into.add(readReference(type));
+		}
+	}
+
+	/**
+	 * @return the array or null
+	 * @throws IOException
+	 */
+	public double[] readDoubles() throws IOException {
+		int length = BinaryCodec.readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+
+	/**
+	 * @return the array or null
+	 * @throws IOException
+	 */
+	public int[] readInts() throws IOException {
+		int length = BinaryCodec.readVarInt(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = readInt();
+		}
+		return values;
+	}
+}
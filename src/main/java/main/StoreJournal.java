@@ -0,0 +1,247 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The StoreJournal is an append-only log of add, update and delete records. Instead of
+ * rewriting the whole layout, the StoreHandler only appends the changes of the
+ * last batch to the journal. From time to time the journal is folded into a
+ * new snapshot (compaction) and truncated.
+ *
+ * An add or update record is a chunk of the BinaryCodec, so each Object is
+ * written by its own encoder while it holds its own lock, like in a snapshot.
+ * Objects that are already stored are not written again, they are written as
+ * their id and resolved on replay. All Objects added in one batch share one
+ * record, so they can reference each other.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+class StoreJournal {
+
+	static final byte ADD = 1;
+	static final byte DELETE = 2;
+	static final byte UPDATE = 3;
+
+	private final File file;
+	private FileOutputStream fileOut;
+	private DataOutputStream out;
+	private int recordCount = 0;
+
+	StoreJournal(String anlageID) {
+		this.file = new File("serializedObjects/" + anlageID + ".log");
+	}
+
+	/**
+	 * Start a new (empty) journal on top of a snapshot.
+	 *
+	 * @param snapshotGeneration - the generation of the snapshot. A journal is only
+	 *                           replayed on the snapshot it was started on.
+	 * @throws IOException
+	 */
+	void open(long snapshotGeneration) throws IOException {
+		close();
+		fileOut = new FileOutputStream(file, false);
+		out = new DataOutputStream(new BufferedOutputStream(fileOut));
+		out.writeLong(snapshotGeneration);
+		flush(true);
+		recordCount = 0;
+	}
+
+	void appendDelete(long id) throws IOException {
+		out.writeByte(DELETE);
+		BinaryCodec.writeVarLong(out, id);
+		recordCount++;
+	}
+
+	/**
+	 * Append new Objects with everything that is only reachable from them.
+	 *
+	 * @param objects   - the new Objects, they already have their id
+	 * @param objectIds - the ids of all stored Objects
+	 * @throws IOException
+	 */
+	void appendAdd(List<? extends Serializable> objects, Map<? extends Serializable, Long> objectIds)
+			throws IOException {
+		appendChunk(ADD, objects, objectIds);
+	}
+
+	/**
+	 * Append the current state of Objects that are already stored. All other
+	 * stored Objects are only referenced by their id.
+	 *
+	 * @param objects   - the changed Objects
+	 * @param objectIds - the ids of all stored Objects
+	 * @throws IOException
+	 */
+	void appendUpdate(List<? extends Serializable> objects, Map<? extends Serializable, Long> objectIds)
+			throws IOException {
+		appendChunk(UPDATE, objects, objectIds);
+	}
+
+	private void appendChunk(byte type, List<? extends Serializable> objects,
+			Map<? extends Serializable, Long> objectIds) throws IOException {
+		if (objects.isEmpty()) {
+			return;
+		}
+		// Encoded before anything is written, a failed encoding leaves no record
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream chunk = new DataOutputStream(bytes);
+		BinaryCodec.encodeChunk(chunk, objects, objectIds);
+		chunk.flush();
+		out.writeByte(type);
+		BinaryCodec.writeVarInt(out, objects.size());
+		for (Serializable object : objects) {
+			BinaryCodec.writeVarLong(out, objectIds.get(object));
+		}
+		out.writeInt(bytes.size());
+		bytes.writeTo(out);
+		recordCount += objects.size();
+	}
+
+	/**
+	 * @param sync - force the journal to the disk
+	 * @throws IOException
+	 */
+	void flush(boolean sync) throws IOException {
+		if (out != null) {
+			out.flush();
+			if (sync) {
+				fileOut.getFD().sync();
+			}
+		}
+	}
+
+	void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+			fileOut = null;
+		}
+	}
+
+	/**
+	 * @return the number of written Objects and deletions since the last
+	 *         compaction.
+	 */
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	boolean exists() {
+		return file.exists() && file.length() > 0;
+	}
+
+	/**
+	 * @param snapshotGeneration - the generation of the loaded snapshot
+	 * @return true if the journal contains records for this snapshot
+	 */
+	boolean hasRecords(long snapshotGeneration) {
+		if (!exists()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readLong() != snapshotGeneration) {
+				return false;
+			}
+			in.readByte();
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Apply all records of the journal on the objects of the snapshot. A record
+	 * that was only partly written (e.g. because of a crash) ends the replay.
+	 * Updates are read into the existing Objects, so the references of the other
+	 * Objects stay valid.
+	 *
+	 * @param objects            - the objects of the snapshot by id. This map will
+	 *                           be updated.
+	 * @param snapshotGeneration - the generation of the loaded snapshot
+	 * @return the number of replayed Objects and deletions.
+	 */
+	int replay(Map<Long, Serializable> objects, long snapshotGeneration) {
+		if (!exists()) {
+			return 0;
+		}
+		// Deleted objects can still be referenced by other objects
+		Object[] knownObjects = new Object[0];
+		for (Map.Entry<Long, Serializable> entry : objects.entrySet()) {
+			knownObjects = putKnownObject(knownObjects, entry.getKey(), entry.getValue());
+		}
+		int replayed = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readLong() != snapshotGeneration) {
+				// The journal was already folded into the snapshot
+				return 0;
+			}
+			int type;
+			while ((type = in.read()) >= 0) {
+				if (type == DELETE) {
+					objects.remove(BinaryCodec.readVarLong(in));
+					replayed++;
+					continue;
+				}
+				if (type != ADD && type != UPDATE) {
+					throw new StreamCorruptedException("Unknown journal record " + type);
+				}
+				long[] ids = new long[BinaryCodec.readVarInt(in)];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = BinaryCodec.readVarLong(in);
+				}
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+
+				BinaryCodec.ChunkDecoder chunk = new BinaryCodec.ChunkDecoder(
+						new DataInputStream(new ByteArrayInputStream(bytes)));
+				List<Serializable> stored = chunk.getStoredObjects();
+				if (stored.size() != ids.length) {
+					throw new StreamCorruptedException("The journal record has " + stored.size() + " instead of "
+							+ ids.length + " Objects");
+				}
+				for (int i = 0; i < ids.length; i++) {
+					if (type == ADD) {
+						objects.put(ids[i], stored.get(i));
+						knownObjects = putKnownObject(knownObjects, ids[i], stored.get(i));
+					} else if (objects.get(ids[i]) instanceof BinaryStorable) {
+						chunk.replaceStoredObject(i, (BinaryStorable) objects.get(ids[i]));
+					}
+				}
+				chunk.fill(knownObjects);
+				replayed += ids.length;
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("WARNUNG: The journal " + file + " ends with an incomplete record");
+			e.printStackTrace();
+		}
+		return replayed;
+	}
+
+	/**
+	 * @return the array with the Object at the index id, grown if necessary
+	 */
+	private static Object[] putKnownObject(Object[] knownObjects, long id, Object object) {
+		if (id >= knownObjects.length) {
+			knownObjects = Arrays.copyOf(knownObjects, (int) Math.max(id + 1, 2L * knownObjects.length));
+		}
+		knownObjects[(int) id] = object;
+		return knownObjects;
+	}
+}
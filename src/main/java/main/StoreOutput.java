@@ -0,0 +1,175 @@
+package main;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stream a BinaryStorable writes its fields to. Other Objects are written
+ * as their id. An Object that is referenced for the first time gets the next
+ * id and is written after the current one.
+ *
+ * @see BinaryCodec
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+public final class StoreOutput {
+
+	private final DataOutputStream out;
+	private final Map<?, Long> externalIds;
+	private final Map<Object, Integer> ids = new IdentityHashMap<>();
+	private final List<BinaryStorable> objects = new ArrayList<>();
+
+	/**
+	 * @param out         - the stream to write to
+	 * @param externalIds - the ids of the stored Objects of other chunks, they
+	 *                    are only referenced. Can be null.
+	 */
+	StoreOutput(DataOutputStream out, Map<?, Long> externalIds) {
+		this.out = out;
+		this.externalIds = externalIds;
+	}
+
+	/**
+	 * @return the id of the Object in this chunk, a new one if it has none yet
+	 */
+	int objectId(BinaryStorable object) {
+		Integer id = ids.get(object);
+		if (id == null) {
+			id = objects.size();
+			ids.put(object, id);
+			objects.add(object);
+		}
+		return id;
+	}
+
+	/**
+	 * @return all Objects with an id, the list grows while they are written
+	 */
+	List<BinaryStorable> getObjects() {
+		return objects;
+	}
+
+	public void writeBoolean(boolean value) throws IOException {
+		out.writeBoolean(value);
+	}
+
+	public void writeInt(int value) throws IOException {
+		BinaryCodec.writeVarLong(out, BinaryCodec.zigZag(value));
+	}
+
+	public void writeLong(long value) throws IOException {
+		BinaryCodec.writeVarLong(out, BinaryCodec.zigZag(value));
+	}
+
+	public void writeDouble(double value) throws IOException {
+		out.writeDouble(value);
+	}
+
+	/**
+	 * @param value - can be null
+	 * @throws IOException
+	 */
+	public void writeString(String value) throws IOException {
+		if (value == null) {
+			BinaryCodec.writeVarInt(out, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		BinaryCodec.writeVarInt(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	/**
+	 * Enums are written by their name, so constants can be added or reordered.
+	 *
+	 * @param value - can be null
+	 * @throws IOException
+	 */
+	public void writeEnum(Enum<?> value) throws IOException {
+		writeString(value == null ? null : value.name());
+	}
+
+	/**
+	 * @param object - a BinaryStorable or null
+	 * @throws IOException
+	 */
+	public void writeReference(Object object) throws IOException {
+		if (object == null) {
+			BinaryCodec.writeVarLong(out, 0);
+			return;
+		}
+		if (!(object instanceof BinaryStorable)) {
+			throw new NotSerializableException(object.getClass().getName());
+		}
+		Long externalId = externalIds != null && !ids.containsKey(object) ? externalIds.get(object) : null;
+		if (externalId != null) {
+			BinaryCodec.writeVarLong(out, externalId << 1 | 1);
+		} else {
+			BinaryCodec.writeVarLong(out, (objectId((BinaryStorable) object) + 1L) << 1);
+		}
+	}
+
+	/**
+	 * @param objects - can be null
+	 * @throws IOException
+	 */
+	public void writeReferences(Object[] objects) throws IOException {
+		if (objects == null) {
+			BinaryCodec.writeVarInt(out, 0);
+			return;
+		}
+		BinaryCodec.writeVarInt(out, objects.length + 1);
+		for (Object object : objects) {
+			writeReference(object);
+		}
+	}
+
+	/**
+	 * Written like an array, it is read with StoreInput.readReferences() into a
+	 * Collection.
+	 *
+	 * @param objects - must not change while it is written
+	 * @throws IOException
+	 */
+	public void writeReferences(Collection<?> objects) throws IOException {
+		writeReferences(objects.toArray());
+	}
+
+	/**
+	 * @param values - can be null
+	 * @throws IOException
+	 */
+	public void writeDoubles(double[] values) throws IOException {
+		if (values == null) {
+			BinaryCodec.writeVarInt(out, 0);
+			return;
+		}
+		BinaryCodec.writeVarInt(out, values.length + 1);
+		for (double value : values) {
+			out.writeDouble(value);
+		}
+	}
+
+	/**
+	 * @param values - can be null
+	 * @throws IOException
+	 */
+	public void writeInts(int[] values) throws IOException {
+		if (values == null) {
+			BinaryCodec.writeVarInt(out, 0);
+			return;
+		}
+		BinaryCodec.writeVarInt(out, values.length + 1);
+		for (int value : values) {
+			writeInt(value);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package main;
+
+import java.util.function.Supplier;
+
+/**
+ * Describes a BinaryStorable class for the BinaryCodec. The id is written into
+ * the snapshots instead of the class name, so it must never change or be given
+ * to another class. The version is written once per snapshot for each class,
+ * readFrom() can ask for it with StoreInput.getVersion() when the encoding of
+ * the class has changed.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+public final class StoreType<T extends BinaryStorable> {
+
+	private final int id;
+	private final int version;
+	private final Class<T> type;
+	private final Supplier<T> allocator;
+
+	/**
+	 * @param id        - the stable id of the class, greater than 0
+	 * @param version   - the current version of the encoding
+	 * @param type      - the concrete class
+	 * @param allocator - creates an empty Object, that is not added to the
+	 *                  StoreHandler
+	 */
+	public StoreType(int id, int version, Class<T> type, Supplier<T> allocator) {
+		assert (id > 0);
+		this.id = id;
+		this.version = version;
+		this.type = type;
+		this.allocator = allocator;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	int getVersion() {
+		return version;
+	}
+
+	Class<T> getType() {
+		return type;
+	}
+
+	T allocate() {
+		return allocator.get();
+	}
+}
@@ -1,45 +1,69 @@
 package modelling;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
+import main.BinaryStorable;
 import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 import modelling.Edge.EdgeIterator;
 import modelling.Edge.EdgeIteratorObject;
 
-public class Balise implements MySerializable {
+public class Balise implements MySerializable, BinaryStorable {
 
 	private static final long serialVersionUID = 5217412304697230641L;
-	private static final HashMap<Integer, Balise> allBalises;
-	private final Position position;
-	private final int addressNumber;
+	/**
+	 * The Balises by their address. It is filled on first use, the Balises may
+	 * not be loaded yet when this class is initialized.
+	 */
+	private static HashMap<Integer, Balise> allBalises;
+	private Position position;
+	private int addressNumber;
 
-	static {
-		allBalises = new HashMap<>();
-		try {
+	synchronized private static HashMap<Integer, Balise> getBalisesByAddress() {
+		if (allBalises == null) {
+			allBalises = new HashMap<>();
 			for (Balise balise : StoreHandler.getAllBalises()) {
 				allBalises.put(balise.getAddressNumber(), balise);
 			}
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		}
-
+		return allBalises;
 	}
 
 	public Balise(Position position, int addressNumber) throws Exception {
 		this.position = position;
 		this.addressNumber = addressNumber;
-		allBalises.put(addressNumber, this);
+		getBalisesByAddress().put(addressNumber, this);
 		StoreHandler.addObject(this);
 	}
 
+	/**
+	 * An empty Balise, that is read by readFrom(). It is found by its address
+	 * once the StoreHandler has loaded it.
+	 */
+	Balise() {
+	}
+
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(position);
+		out.writeInt(addressNumber);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		position = in.readReference(Position.class);
+		addressNumber = in.readInt();
+	}
+
 	@Override
 	public void delete() throws Exception {
-		allBalises.remove(addressNumber);
+		getBalisesByAddress().remove(addressNumber);
 		StoreHandler.deleteObject(this);
 		position.delete();
 	}
@@ -53,7 +77,7 @@ public class Balise implements MySerializable {
 	}
 
 	private static Balise getBaliseByAddress(int addressNumber) {
-		return allBalises.get(addressNumber);
+		return getBalisesByAddress().get(addressNumber);
 	}
 
 	private static double calculateMaxSearchDistance(Position position) {
@@ -1,7 +1,12 @@
 package modelling;
 
+import java.io.IOException;
+
+import main.BinaryStorable;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * This class represents a BlockPoint. A BlockPoint can be used in order to stop
@@ -12,11 +17,19 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 18.05.2021
  */
-public class BlockPoint implements MySerializable {
+public class BlockPoint implements MySerializable, BinaryStorable {
 
 	private static final long serialVersionUID = -8684899766541231456L;
-	private final BlockPointProperties properties;
-	private final Position position;
+	/**
+	 * The BlockPoints of a TrainScope are moved in place, see moveTo()
+	 */
+	private BlockPointProperties properties;
+	private Position position;
+	/**
+	 * An ephemeral BlockPoint is not added to the StoreHandler. It is only stored
+	 * as a part of the Object that owns it.
+	 */
+	private boolean ephemeral;
 
 	/**
 	 * @param properties -
@@ -26,22 +39,84 @@ public class BlockPoint implements MySerializable {
 	 * @throws Exception
 	 */
 	public BlockPoint(BlockPointProperties properties, Position position) {
+		this(properties, position, true);
+	}
+
+	/**
+	 * Create a new BlockPoint. Additionally one can decide weather the new
+	 * instance and its Position should be added to the storeHandler or not.
+	 * 
+	 * @param properties -
+	 *                   BLOCK_POSITIVE_DIRECTION,BLOCK_NEGATIVE_DIRECTION,BLOCK_ALL
+	 * @param position   - The Position at witch the BlockPoint should block a track
+	 *                   segment
+	 * @param store      - decide if the BlockPoint should be added to the
+	 *                   storeHandler
+	 */
+	BlockPoint(BlockPointProperties properties, Position position, boolean store) {
 		super();
 		this.properties = properties;
 		this.position = position;
+		this.ephemeral = !store;
 		position.getEdge().addBlockPoint(this);
-		StoreHandler.addObject(this);
-		StoreHandler.addObject(position);
+		if (store) {
+			StoreHandler.addObject(this);
+			StoreHandler.addObject(position);
+		}
+	}
+
+	/**
+	 * An empty BlockPoint, that is read by readFrom(). The Edge already contains
+	 * it.
+	 */
+	BlockPoint() {
+	}
 
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		out.writeEnum(properties);
+		out.writeReference(position);
+		out.writeBoolean(ephemeral);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		properties = in.readEnum(BlockPointProperties.class);
+		position = in.readReference(Position.class);
+		ephemeral = in.readBoolean();
 	}
 
 	@Override
 	public void delete() {
 		this.position.getEdge().removeBlockPoint(this);
-		StoreHandler.deleteObject(this);
+		if (!ephemeral) {
+			StoreHandler.deleteObject(this);
+		}
 		position.delete();
 	}
 
+	/**
+	 * Move an ephemeral BlockPoint instead of replacing it, e.g. the front of a
+	 * TrainScope after a step.
+	 * 
+	 * @param properties
+	 * @param position   - copied, it can be reused by the caller
+	 */
+	void moveTo(BlockPointProperties properties, Position position) {
+		Edge.moveBlockPoint(this, properties, position);
+	}
+
+	/**
+	 * Only called by Edge.moveBlockPoint() while the Edges are locked
+	 * 
+	 * @param properties
+	 * @param position
+	 */
+	void set(BlockPointProperties properties, Position position) {
+		this.properties = properties;
+		this.position.setPosition(position);
+	}
+
 	/**
 	 * A BlockPoint can have these Properties:
 	 * BLOCK_POSITIVE_DIRECTION,BLOCK_NEGATIVE_DIRECTION,BLOCK_ALL
@@ -52,6 +127,14 @@ public class BlockPoint implements MySerializable {
 		return properties;
 	}
 
+	/**
+	 * @return true if the BlockPoint is not stored on its own, e.g. the front of
+	 *         a TrainScope
+	 */
+	boolean isEphemeral() {
+		return ephemeral;
+	}
+
 	/**
 	 * @return the position where the BlockPoint Blocks the TrackSegment
 	 */
@@ -0,0 +1,68 @@
+package modelling;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the BlockPoints on one Edge, taken while the Edge is locked. The
+ * BlockPoints of other TrainScopes are moved in place, so a TrainScope must not
+ * read their Positions later without the lock of the Edge. The buffer is
+ * reused for every Edge and only grows, so copying does not allocate.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+final class BlockPointBuffer {
+
+	private BlockPoint[] blockPoints = new BlockPoint[8];
+	private BlockPointProperties[] properties = new BlockPointProperties[8];
+	private double[] offsets = new double[8];
+	private int size = 0;
+
+	void clear() {
+		// Do not keep deleted BlockPoints alive
+		Arrays.fill(blockPoints, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Only called by the Edge of the BlockPoint while it is locked
+	 *
+	 * @param blockPoint
+	 */
+	void add(BlockPoint blockPoint) {
+		if (size == blockPoints.length) {
+			blockPoints = Arrays.copyOf(blockPoints, size * 2);
+			properties = Arrays.copyOf(properties, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		blockPoints[size] = blockPoint;
+		properties[size] = blockPoint.getProperties();
+		offsets[size] = blockPoint.getPosition().getOffset();
+		size++;
+	}
+
+	int size() {
+		return size;
+	}
+
+	BlockPoint getBlockPoint(int index) {
+		return blockPoints[index];
+	}
+
+	/**
+	 * @param index
+	 * @return the properties of the BlockPoint when it was copied
+	 */
+	BlockPointProperties getProperties(int index) {
+		return properties[index];
+	}
+
+	/**
+	 * @param index
+	 * @return the offset on the Edge of the BlockPoint when it was copied
+	 */
+	double getOffset(int index) {
+		return offsets[index];
+	}
+}
@@ -1,8 +1,13 @@
 package modelling;
 
+import java.io.IOException;
+
+import main.BinaryStorable;
 import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * A Bumper is a specific TrackSegment.
@@ -11,14 +16,14 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 08.06.2021
  */
-public class Bumper implements TrackSegment,MySerializable{
+public class Bumper implements TrackSegment,MySerializable,BinaryStorable{
 	
 	
 	private static final long serialVersionUID = -2158111075326030074L;
-	private final Edge edge;
-	private final Edge[] asscosiatedEdges;
-	private final BlockPoint block;
-	private final Node helperNode;
+	private Edge edge;
+	private Edge[] asscosiatedEdges;
+	private BlockPoint block;
+	private Node helperNode;
 	
 	/**
 	 * A Bumper is a specific TrackSegment.
@@ -49,6 +54,28 @@ public class Bumper implements TrackSegment,MySerializable{
 		StoreHandler.addObject(this);
 	}
 	
+	/**
+	 * An empty Bumper, that is read by readFrom()
+	 */
+	Bumper() {
+	}
+	
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(edge);
+		out.writeReferences(asscosiatedEdges);
+		out.writeReference(block);
+		out.writeReference(helperNode);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		edge = in.readReference(Edge.class);
+		asscosiatedEdges = in.readReferences(Edge.class, Edge[]::new);
+		block = in.readReference(BlockPoint.class);
+		helperNode = in.readReference(Node.class);
+	}
+	
 	@Override
 	public void delete() throws Exception {
 		StoreHandler.deleteObject(this);
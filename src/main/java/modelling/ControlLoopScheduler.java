@@ -0,0 +1,280 @@
+package modelling;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ticks all registered control loops on one timeline. A single Thread waits
+ * for the next deadline of System.nanoTime and hands the due ticks to a pool of
+ * WORKER_THREADS workers, so hundreds of TrainScopes need only a few Threads.
+ * Every control loop has its own period. The deadlines are advanced by the
+ * period and not from the end of the last tick, so the ticks do not drift. What
+ * happens to a deadline that passes while the previous tick of the same loop
+ * still runs is decided by its OverrunPolicy.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class ControlLoopScheduler {
+
+	/**
+	 * Workers of the shared ControlLoopScheduler, read when it is created
+	 */
+	public static volatile int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static ControlLoopScheduler shared;
+
+	/**
+	 * What a control loop does when a tick starts so late that the next deadline
+	 * has already passed. Both count the passed deadlines as missed.
+	 */
+	public enum OverrunPolicy {
+		/**
+		 * Run one tick for every deadline, back to back until the loop is on time
+		 * again
+		 */
+		CATCH_UP,
+		/**
+		 * Drop the passed deadlines and go on with the next one
+		 */
+		SKIP
+	}
+
+	/**
+	 * A registered control loop
+	 */
+	public final class Registration implements Comparable<Registration> {
+		private final Runnable tick;
+		private final long period;
+		private final OverrunPolicy policy;
+		private final TickStatistics statistics;
+		/**
+		 * in ns of System.nanoTime, guarded by the ControlLoopScheduler
+		 */
+		private long deadline;
+		private final AtomicBoolean running = new AtomicBoolean(false);
+		private volatile boolean cancelled = false;
+		private final CompletableFuture<Void> terminated = new CompletableFuture<>();
+		private final AtomicInteger skippedTicks = new AtomicInteger();
+		/**
+		 * Taken from the timeline until the running tick has ended, guarded by the
+		 * ControlLoopScheduler
+		 */
+		private boolean parked = false;
+
+		private Registration(Runnable tick, long period, OverrunPolicy policy, TickStatistics statistics) {
+			this.tick = tick;
+			this.period = period;
+			this.policy = policy;
+			this.statistics = statistics;
+			this.deadline = System.nanoTime() + period;
+		}
+
+		private void run() {
+			long start = System.nanoTime();
+			try {
+				tick.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			} finally {
+				statistics.recordTick(System.nanoTime() - start);
+				synchronized (ControlLoopScheduler.this) {
+					running.set(false);
+					if (parked && !cancelled) {
+						// The tick of the passed deadline runs now
+						parked = false;
+						timeline.add(this);
+						ControlLoopScheduler.this.notifyAll();
+					}
+				}
+				if (cancelled) {
+					terminated.complete(null);
+				}
+			}
+		}
+
+		/**
+		 * Stop the control loop. A tick that was already handed to a worker still
+		 * runs, awaitTermination() waits for it. It may be called by the tick
+		 * itself.
+		 */
+		public void cancel() {
+			cancelled = true;
+			synchronized (ControlLoopScheduler.this) {
+				timeline.remove(this);
+			}
+			if (!running.get()) {
+				terminated.complete(null);
+			}
+		}
+
+		/**
+		 * Wait until the last tick has finished. Never call it from the tick.
+		 */
+		public void awaitTermination() {
+			terminated.join();
+		}
+
+		/**
+		 * @return in ns
+		 */
+		public long getPeriod() {
+			return period;
+		}
+
+		/**
+		 * @return the number of ticks that were dropped by the SKIP policy, because
+		 *         they were due while the previous tick still ran
+		 */
+		public int getSkippedTicks() {
+			return skippedTicks.get();
+		}
+
+		public TickStatistics getStatistics() {
+			return statistics;
+		}
+
+		@Override
+		public int compareTo(Registration other) {
+			return Long.compare(deadline, other.deadline);
+		}
+	}
+
+	// Guarded by this
+	private final PriorityQueue<Registration> timeline = new PriorityQueue<>();
+	private final ExecutorService workers;
+
+	/**
+	 * @return the ControlLoopScheduler of all TrainScopes
+	 */
+	synchronized public static ControlLoopScheduler getShared() {
+		if (shared == null) {
+			shared = new ControlLoopScheduler(WORKER_THREADS);
+		}
+		return shared;
+	}
+
+	public ControlLoopScheduler(int workerThreads) {
+		AtomicInteger workerIndex = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+			Thread worker = new Thread(runnable, "ControlLoop Worker " + workerIndex.getAndIncrement());
+			worker.setDaemon(true);
+			return worker;
+		});
+		Thread timer = new Thread(this::runTimeline, "ControlLoopScheduler");
+		timer.setDaemon(true);
+		timer.start();
+	}
+
+	/**
+	 * Tick a control loop every period, the first time after one period. Passed
+	 * deadlines are skipped.
+	 *
+	 * @param tick
+	 * @param period - in ns
+	 * @return the Registration to cancel the control loop
+	 */
+	public Registration register(Runnable tick, long period) {
+		return register(tick, period, OverrunPolicy.SKIP, new TickStatistics());
+	}
+
+	/**
+	 * Tick a control loop every period, the first time after one period.
+	 *
+	 * @param tick
+	 * @param period     - in ns
+	 * @param policy
+	 * @param statistics - records the ticks and missed deadlines of the loop
+	 * @return the Registration to cancel the control loop
+	 */
+	public Registration register(Runnable tick, long period, OverrunPolicy policy, TickStatistics statistics) {
+		assert (period > 0);
+		Registration registration = new Registration(tick, period, policy, statistics);
+		synchronized (this) {
+			timeline.add(registration);
+			notifyAll();
+		}
+		return registration;
+	}
+
+	synchronized public int getNumberOfRegistrations() {
+		return timeline.size();
+	}
+
+	/**
+	 * Apply the OverrunPolicy to a tick that starts now. A deadline is missed if
+	 * its tick did not start before the next deadline.
+	 *
+	 * @param deadline   - in ns of System.nanoTime, the deadline of the tick
+	 * @param period     - in ns
+	 * @param now        - in ns of System.nanoTime
+	 * @param policy
+	 * @param statistics - counts the missed deadlines
+	 * @return the deadline the tick is run for, the next one is a period later
+	 */
+	static long overrun(long deadline, long period, long now, OverrunPolicy policy, TickStatistics statistics) {
+		long late = now - deadline;
+		if (late < period) {
+			return deadline;
+		}
+		switch (policy) {
+		case CATCH_UP:
+			statistics.addMissedDeadlines(1);
+			return deadline;
+		case SKIP:
+		default:
+			long missed = late / period;
+			statistics.addMissedDeadlines(missed);
+			return deadline + missed * period;
+		}
+	}
+
+	private void runTimeline() {
+		while (true) {
+			Registration due;
+			synchronized (this) {
+				due = timeline.peek();
+				long delay = due == null ? 0 : due.deadline - System.nanoTime();
+				if (due == null || delay > 0) {
+					try {
+						if (due == null) {
+							wait();
+						} else {
+							wait(delay / 1000000, (int) (delay % 1000000));
+						}
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+					continue;
+				}
+				timeline.poll();
+				if (!due.running.compareAndSet(false, true)) {
+					if (due.policy == OverrunPolicy.CATCH_UP) {
+						// Returns to the timeline with the same deadline when the tick ends
+						due.parked = true;
+					} else {
+						due.skippedTicks.incrementAndGet();
+						due.statistics.addMissedDeadlines(1);
+						due.deadline = due.deadline + due.period;
+						timeline.add(due);
+					}
+					continue;
+				}
+				due.deadline = overrun(due.deadline, due.period, System.nanoTime(), due.policy, due.statistics)
+						+ due.period;
+				timeline.add(due);
+			}
+			if (due.cancelled) {
+				due.running.set(false);
+				due.terminated.complete(null);
+			} else {
+				workers.execute(due::run);
+			}
+		}
+	}
+}
@@ -1,10 +1,20 @@
 package modelling;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
+import main.BinaryStorable;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * An Edge is an abstraction from which a rail network is built. TrackSegments consist out of 
@@ -14,15 +24,36 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 26.05.2021
  */
-public class Edge implements MySerializable {
+public class Edge implements MySerializable, BinaryStorable {
 	private static final long serialVersionUID = 8814425580564386974L;
-	private final double length;
-	private final Node firstNode;
-	private final Node secondNode;
-	private final TrackSegment origin;
-	private final double maxSpeed;
-	private final HashSet<BlockPoint> blockPoints;
-	private final HashSet<TrainScope> trainScopes;
+	private static final AtomicReferenceFieldUpdater<Edge, ReentrantLock> LOCK = AtomicReferenceFieldUpdater
+			.newUpdater(Edge.class, ReentrantLock.class, "lock");
+	/**
+	 * Taken before the locks of two Edges, so that BlockPoints can be moved
+	 * between them without a deadlock
+	 */
+	private static final ReentrantLock MOVE_LOCK = new ReentrantLock();
+	/**
+	 * Guards the BlockPoints and TrainScopes on this Edge
+	 * @see ModelLock
+	 */
+	private transient volatile ReentrantLock lock;
+	private double length;
+	private Node firstNode;
+	private Node secondNode;
+	private TrackSegment origin;
+	private double maxSpeed;
+	/**
+	 * The BlockPoints of the layout, e.g. Signals and Bumpers
+	 */
+	private final HashSet<BlockPoint> blockPoints = new HashSet<>();
+	/**
+	 * The BlockPoints of the TrainScopes move with every step. They are not
+	 * stored, the TrainScopes restore them after loading. A List, because there are
+	 * only a few and adding one to it does not allocate.
+	 */
+	private transient List<BlockPoint> trainBlockPoints;
+	private transient Set<TrainScope> trainScopes;
 	private double biasPositiveDirection;
 	private double biasNegativeDirection;
 	
@@ -51,12 +82,46 @@ public class Edge implements MySerializable {
 		this.secondNode = secondNode;
 		this.maxSpeed = maxSpeed;
 		this.origin = origin;
-		this.blockPoints = new HashSet<>();
-		this.trainScopes = new HashSet<>();
 		
 		StoreHandler.addObject(this);
 	}
 	
+	/**
+	 * An empty Edge, that is read by readFrom()
+	 */
+	Edge() {
+	}
+	
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		getLock().lock();
+		try {
+			out.writeDouble(length);
+			out.writeReference(firstNode);
+			out.writeReference(secondNode);
+			out.writeReference(origin);
+			out.writeDouble(maxSpeed);
+			out.writeReferences(blockPoints);
+			out.writeDouble(biasPositiveDirection);
+			out.writeDouble(biasNegativeDirection);
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		length = in.readDouble();
+		firstNode = in.readReference(Node.class);
+		secondNode = in.readReference(Node.class);
+		origin = in.readReference(TrackSegment.class);
+		maxSpeed = in.readDouble();
+		blockPoints.clear();
+		in.readReferences(BlockPoint.class, blockPoints);
+		biasPositiveDirection = in.readDouble();
+		biasNegativeDirection = in.readDouble();
+	}
+	
 	/**
 	 * 
 	 * @return maxSpeed - the maximal Speed that can be driven on this edge in m/s in reality.
@@ -94,26 +159,132 @@ public class Edge implements MySerializable {
 		return origin;
 	}
 	
+	ReentrantLock getLock() {
+		return ModelLock.get(this, LOCK);
+	}
+
 	/**
 	 * This Method will be called by a BlockPoint during instantiation.
 	 * @param blockPoint
 	 */
-	synchronized void addBlockPoint(BlockPoint blockPoint) {
-		assert(blockPoint.getPosition().getEdge() == this);
-		blockPoints.add(blockPoint);
+	void addBlockPoint(BlockPoint blockPoint) {
+		getLock().lock();
+		try {
+			assert(blockPoint.getPosition().getEdge() == this);
+			if (blockPoint.isEphemeral()) {
+				getTrainBlockPoints().add(blockPoint);
+			} else {
+				blockPoints.add(blockPoint);
+				markDirty();
+			}
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
 	/**
 	 * This Method will be called by a BlockPoint during distortion.
 	 * @param blockPoint
 	 */
-	synchronized void removeBlockPoint(BlockPoint blockPoint) {
-		assert(blockPoint.getPosition().getEdge() == this);
-		blockPoints.remove(blockPoint);
+	void removeBlockPoint(BlockPoint blockPoint) {
+		getLock().lock();
+		try {
+			assert(blockPoint.getPosition().getEdge() == this);
+			if (blockPoint.isEphemeral()) {
+				getTrainBlockPoints().remove(blockPoint);
+			} else {
+				blockPoints.remove(blockPoint);
+				markDirty();
+			}
+		} finally {
+			getLock().unlock();
+		}
+	}
+	
+	/**
+	 * Move a BlockPoint of a TrainScope in place. If it changes its Edge, it is
+	 * removed from the old and added to the new Edge while both are locked, so the
+	 * BlockPoint is always found on exactly one Edge.
+	 * 
+	 * @param blockPoint - an ephemeral BlockPoint
+	 * @param properties
+	 * @param position   - copied into the Position of the BlockPoint
+	 */
+	static void moveBlockPoint(BlockPoint blockPoint, BlockPointProperties properties, Position position) {
+		assert (blockPoint.isEphemeral());
+		Edge from = blockPoint.getPosition().getEdge();
+		Edge to = position.getEdge();
+		if (from == to) {
+			from.getLock().lock();
+			try {
+				blockPoint.set(properties, position);
+			} finally {
+				from.getLock().unlock();
+			}
+			return;
+		}
+		MOVE_LOCK.lock();
+		from.getLock().lock();
+		to.getLock().lock();
+		try {
+			from.getTrainBlockPoints().remove(blockPoint);
+			blockPoint.set(properties, position);
+			to.getTrainBlockPoints().add(blockPoint);
+		} finally {
+			to.getLock().unlock();
+			from.getLock().unlock();
+			MOVE_LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Copy all BlockPoints on this Edge with their current properties and
+	 * offsets.
+	 * 
+	 * @param buffer - cleared before
+	 */
+	void copyBlockPoints(BlockPointBuffer buffer) {
+		getLock().lock();
+		try {
+			buffer.clear();
+			if (!blockPoints.isEmpty()) {
+				for (BlockPoint blockPoint : blockPoints) {
+					buffer.add(blockPoint);
+				}
+			}
+			List<BlockPoint> trainBlockPoints = getTrainBlockPoints();
+			for (int i = 0; i < trainBlockPoints.size(); i++) {
+				buffer.add(trainBlockPoints.get(i));
+			}
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of all BlockPoints on this Edge, of the layout and of the TrainScopes
+	 */
+	List<BlockPoint> getBlockPoints() {
+		getLock().lock();
+		try {
+			List<BlockPoint> allBlockPoints = new ArrayList<>(blockPoints);
+			allBlockPoints.addAll(getTrainBlockPoints());
+			return allBlockPoints;
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
-	HashSet<BlockPoint> getBlockPoints() {
-		return blockPoints;
+	private List<BlockPoint> getTrainBlockPoints() {
+		getLock().lock();
+		try {
+			if (trainBlockPoints == null) {
+				trainBlockPoints = new ArrayList<>();
+			}
+			return trainBlockPoints;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -121,28 +292,52 @@ public class Edge implements MySerializable {
 	 * in order to register if a vehicle is on this edge.
 	 * @throws InterruptedException
 	 */
-	synchronized void enter(TrainScope train) {
-		trainScopes.add(train);
+	void enter(TrainScope train) {
+		getLock().lock();
+		try {
+			getTrainScopes().add(train);
+		} finally {
+			getLock().unlock();
+		}
 	}
 	/**
 	 * This method must be called by any train, that leaves this edge,
 	 * in order to register if a Vehicle is on this edge
 	 */
-	synchronized void leave(TrainScope train) {
-		trainScopes.remove(train);
+	void leave(TrainScope train) {
+		getLock().lock();
+		try {
+			getTrainScopes().remove(train);
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
 	/**
 	 * Returns weather there is an train on this edge.
 	 * @return
 	 */
-	synchronized boolean hasTrains() {
-		return ! trainScopes.isEmpty();
+	boolean hasTrains() {
+		getLock().lock();
+		try {
+			return ! getTrainScopes().isEmpty();
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
 	
-	HashSet<TrainScope> getTrainScopes() {
-		return trainScopes;
+	Set<TrainScope> getTrainScopes() {
+		getLock().lock();
+		try {
+			if (trainScopes == null) {
+				// Can be iterated without holding the lock of the Edge
+				trainScopes = new CopyOnWriteArraySet<>();
+			}
+			return trainScopes;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -219,17 +414,18 @@ public class Edge implements MySerializable {
 	
 	
 	/**
-	 * An EdgeIteratorObject is the return type of the EdgeIterator.
+	 * An EdgeIteratorObject is the return type of the EdgeIterator. Each EdgeIterator
+	 * returns the same EdgeIteratorObject, it is updated by every call of next().
 	 * @author David Lieb
 	 * @author david.lieb.00@gmail.com
 	 * @version 20.05.2021
 	 */
 	public class EdgeIteratorObject {
-		private final Edge edge;
-		private final boolean direction;
-		private final double length;
+		private Edge edge;
+		private boolean direction;
+		private double length;
 		
-		private EdgeIteratorObject(Edge edge, boolean direction, double length) {
+		private void set(Edge edge, boolean direction, double length) {
 			this.edge = edge;
 			this.direction = direction;
 			this.length = length;
@@ -267,6 +463,7 @@ public class Edge implements MySerializable {
 		private boolean currentDirection;
 		private Edge currentEdge;
 		private double totalLength;
+		private final EdgeIteratorObject current = new EdgeIteratorObject();
 		
 		/**
 		 * Create a new Edge Iterator and state weather the
@@ -306,6 +503,17 @@ public class Edge implements MySerializable {
 		 * @param startDirection - the direction in which the Iterator should start.
 		 */
 		EdgeIterator (final Position startPoint, final boolean startDirection) {
+			reset(startPoint, startDirection);
+		}
+		
+		/**
+		 * Start the Iterator again at another Position, so that it can be reused.
+		 * 
+		 * @param startPoint - the Position form which the Iterator should start.
+		 * @param startDirection - the direction in which the Iterator should start.
+		 * @return this EdgeIterator
+		 */
+		EdgeIterator reset(final Position startPoint, final boolean startDirection) {
 			this.currentDirection = startDirection;
 			currentEdge = startPoint.getEdge();
 			if(startDirection) {
@@ -313,7 +521,7 @@ public class Edge implements MySerializable {
 			}else {
 				totalLength = startPoint.getOffset();
 			}
-			
+			return this;
 		}
 		
 		
@@ -384,7 +592,8 @@ public class Edge implements MySerializable {
 				//In this case there will be no next Edge
 				currentEdge = null;
 			}
-			return new EdgeIteratorObject(returnEdge, returnDirection, returnLength);
+			current.set(returnEdge, returnDirection, returnLength);
+			return current;
 		}
 		
 	}
@@ -1,11 +1,17 @@
 package modelling;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * This class represents a Locomotive, which is a special Type of Vahicles.
@@ -17,6 +23,13 @@ import main.StoreHandler;
 public class Locomotive extends Vehicle implements MySerializable {
 
 	private static final long serialVersionUID = -5468893304843805237L;
+	private static final AtomicReferenceFieldUpdater<Locomotive, ReentrantLock> LOCK = AtomicReferenceFieldUpdater
+			.newUpdater(Locomotive.class, ReentrantLock.class, "lock");
+	/**
+	 * Guards the speed measurements and the dcc state
+	 * @see ModelLock
+	 */
+	private transient volatile ReentrantLock lock;
 	private int currentDccSpeedLimit;
 	private int currentDccSpeed;
 	/**
@@ -24,28 +37,37 @@ public class Locomotive extends Vehicle implements MySerializable {
 	 * is the speed of the model railway. If you want to obtain the speed the model
 	 * would have in real world, you have to multiply the speed with the SCALE
 	 */
-	private final double[] meterPerSecond = new double[Main.MAX_DCC_VALUES];
+	private double[] meterPerSecond = new double[Main.MAX_DCC_VALUES];
 	/**
 	 * The average velocity is formed using moving averaging. The window width must
 	 * be saved for this. If the window Size is -1, there has already been a value
 	 * from the neighbourhood aplied.
 	 */
-	private final int[] windowSize = new int[Main.MAX_DCC_VALUES];
+	private int[] windowSize = new int[Main.MAX_DCC_VALUES];
 	private final int maxWindowSize = 100;
 
 	private boolean directionDecoder;
-	private final int dccAddress;
-	private static final HashMap<Integer, Locomotive> locomotives;
+	private int dccAddress;
+	/**
+	 * The Locomotives by their dcc address. The map is built on first use and not
+	 * in a static initializer, because this class can be initialized by a
+	 * Thread that loads the layout.
+	 */
+	private static HashMap<Integer, Locomotive> locomotives;
+	private static final ReentrantLock LOCOMOTIVES_LOCK = new ReentrantLock();
 	
-	static {
-		locomotives = new HashMap<Integer, Locomotive>();
+	private static HashMap<Integer, Locomotive> getLocomotivesByDccAddress() {
+		LOCOMOTIVES_LOCK.lock();
 		try {
-			for(Locomotive locomotive : StoreHandler.getAllLocomotives()) {
-				locomotives.put(locomotive.getDccAddress(), locomotive);
+			if (locomotives == null) {
+				locomotives = new HashMap<Integer, Locomotive>();
+				for(Locomotive locomotive : StoreHandler.getAllLocomotives()) {
+					locomotives.put(locomotive.getDccAddress(), locomotive);
+				}
 			}
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			return locomotives;
+		} finally {
+			LOCOMOTIVES_LOCK.unlock();
 		}
 	}
 
@@ -54,123 +76,192 @@ public class Locomotive extends Vehicle implements MySerializable {
 		super(name, lenghtInMeter, maxSpeedInRealMeterPerSecond, initialMiddlePosition);
 
 		this.dccAddress = dccAddress;
-		locomotives.put(dccAddress, this);
-		directionDecoder = Main.controlUnit.getDirection(this);
+		getLocomotivesByDccAddress().put(dccAddress, this);
+		// Both queries are answered by the same response of the control unit
+		CompletableFuture<Boolean> direction = Main.asyncControlUnit.getDirection(this);
+		CompletableFuture<Integer> dccSpeed = Main.asyncControlUnit.getDccSpeed(this);
+		directionDecoder = direction.join();
 		this.meterPerSecond[0] = 0;
 		//TODO vielleicht macht das auch keinen Sinn
 		this.initializeSimpleValues();
 		this.initializeWindowSize();
-		this.currentDccSpeed = Main.controlUnit.getDccSpeed(this);
+		this.currentDccSpeed = dccSpeed.join();
 		this.currentDccSpeedLimit = currentDccSpeed;
+		// The TrainScope was created before the speed limit was known
+		invalidateConstraintsOfTrainScope();
 
 		StoreHandler.addObject(this);
 	}
 
+	/**
+	 * An empty Locomotive, that is read by readFrom(). It is found by its dcc
+	 * address once the StoreHandler has loaded it.
+	 */
+	Locomotive() {
+	}
+
 	@Override
-	synchronized public void delete() throws Exception {
-		if (this.getNextVehicle() != null) {
-			TrainScope.decouple(this, this.getNextVehicle());
-		}
-		if (this.getPreviousVehicle() != null) {
-			TrainScope.decouple(this, this.getPreviousVehicle());
+	public void writeTo(StoreOutput out) throws IOException {
+		super.writeTo(out);
+		getLock().lock();
+		try {
+			out.writeInt(currentDccSpeedLimit);
+			out.writeInt(currentDccSpeed);
+			out.writeDoubles(meterPerSecond);
+			out.writeInts(windowSize);
+			out.writeBoolean(directionDecoder);
+			out.writeInt(dccAddress);
+		} finally {
+			getLock().unlock();
 		}
+	}
 
-		// Im Trainscope darf nur noch dieses Fahrzeug sein.
-		assert (getNextVehicle() == null);
-		assert (getPreviousVehicle() == null);
-		assert (getTrainScope().getFirstVehicle() == this);
-		assert (getTrainScope().getLastVehicle() == this);
-		getTrainScope().delete();
-		this.getMiddlePosition().delete();
-		StoreHandler.deleteObject(this);
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		super.readFrom(in);
+		currentDccSpeedLimit = in.readInt();
+		currentDccSpeed = in.readInt();
+		meterPerSecond = in.readDoubles();
+		windowSize = in.readInts();
+		directionDecoder = in.readBoolean();
+		dccAddress = in.readInt();
+	}
+
+	@Override
+	public void delete() throws Exception {
+		getLock().lock();
+		try {
+			if (this.getNextVehicle() != null) {
+				TrainScope.decouple(this, this.getNextVehicle());
+			}
+			if (this.getPreviousVehicle() != null) {
+				TrainScope.decouple(this, this.getPreviousVehicle());
+			}
+
+			// Im Trainscope darf nur noch dieses Fahrzeug sein.
+			assert (getNextVehicle() == null);
+			assert (getPreviousVehicle() == null);
+			assert (getTrainScope().getFirstVehicle() == this);
+			assert (getTrainScope().getLastVehicle() == this);
+			getTrainScope().delete();
+			this.getMiddlePosition().delete();
+			StoreHandler.deleteObject(this);
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	
-	synchronized private void initializeSimpleValues() {
-		this.meterPerSecond[0] = 0;
-		for(int i = 1; i< Main.MAX_DCC_VALUES; i++) {
-			this.meterPerSecond[i] = (i - 1) /(double) Main.SCALE * 3;
+	private void initializeSimpleValues() {
+		getLock().lock();
+		try {
+			this.meterPerSecond[0] = 0;
+			for(int i = 1; i< Main.MAX_DCC_VALUES; i++) {
+				this.meterPerSecond[i] = (i - 1) /(double) Main.SCALE * 3;
 			
+			}
+		} finally {
+			getLock().unlock();
 		}
 	}
 	
-	synchronized private void initializeWindowSize() {
-		this.windowSize[0] = this.maxWindowSize;
-		for(int i = 1; i< Main.MAX_DCC_VALUES; i++) {
-			windowSize[i] = -1;
+	private void initializeWindowSize() {
+		getLock().lock();
+		try {
+			this.windowSize[0] = this.maxWindowSize;
+			for(int i = 1; i< Main.MAX_DCC_VALUES; i++) {
+				windowSize[i] = -1;
+			}
+		} finally {
+			getLock().unlock();
 		}
 	}
-	synchronized private void movingAveraging(int dccSpeed, double meterPerSecond) {
-		//TODO nicht getestet
-		if (windowSize[dccSpeed] <= 0) {
-			this.meterPerSecond[dccSpeed] = meterPerSecond;
-			windowSize[dccSpeed] = 1;
-		} else if (windowSize[dccSpeed] < maxWindowSize) {
-			this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] * windowSize[dccSpeed] + meterPerSecond;
-			windowSize[dccSpeed]++;
-			this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] / windowSize[dccSpeed];
-		} else {
-			assert (windowSize[dccSpeed] == maxWindowSize);
-			this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] * (maxWindowSize - 1.0) + meterPerSecond;
-			this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] / maxWindowSize;
+	private void movingAveraging(int dccSpeed, double meterPerSecond) {
+		getLock().lock();
+		try {
+			//TODO nicht getestet
+			if (windowSize[dccSpeed] <= 0) {
+				this.meterPerSecond[dccSpeed] = meterPerSecond;
+				windowSize[dccSpeed] = 1;
+			} else if (windowSize[dccSpeed] < maxWindowSize) {
+				this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] * windowSize[dccSpeed] + meterPerSecond;
+				windowSize[dccSpeed]++;
+				this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] / windowSize[dccSpeed];
+			} else {
+				assert (windowSize[dccSpeed] == maxWindowSize);
+				this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] * (maxWindowSize - 1.0) + meterPerSecond;
+				this.meterPerSecond[dccSpeed] = this.meterPerSecond[dccSpeed] / maxWindowSize;
+			}
+		} finally {
+			getLock().unlock();
 		}
 	}
 
-	synchronized private void updateDccNeighbourhoodWithNoMeasuredValues(int dccSpeed, double meterPerSecond) {
-		//TODO nicht getestet
-		double differencePerNeighbour = 0;
-		if (dccSpeed >= 2) {
-			int nextLowerMeasuredValue = dccSpeed - 1;
-			while (this.windowSize[nextLowerMeasuredValue] <= 0) {
-				nextLowerMeasuredValue--;
+	private void updateDccNeighbourhoodWithNoMeasuredValues(int dccSpeed, double meterPerSecond) {
+		getLock().lock();
+		try {
+			//TODO nicht getestet
+			double differencePerNeighbour = 0;
+			if (dccSpeed >= 2) {
+				int nextLowerMeasuredValue = dccSpeed - 1;
+				while (this.windowSize[nextLowerMeasuredValue] <= 0) {
+					nextLowerMeasuredValue--;
+				}
+				int numberOfLowerNeighbours = dccSpeed - nextLowerMeasuredValue;
+				differencePerNeighbour = (meterPerSecond - this.meterPerSecond[nextLowerMeasuredValue])
+						/ numberOfLowerNeighbours;
+				for (int i = 1; i < numberOfLowerNeighbours; i++) {
+					this.meterPerSecond[nextLowerMeasuredValue + i] = this.meterPerSecond[nextLowerMeasuredValue]
+							+ differencePerNeighbour * i;
+					this.windowSize[nextLowerMeasuredValue + i] = -1;
+				}
 			}
-			int numberOfLowerNeighbours = dccSpeed - nextLowerMeasuredValue;
-			differencePerNeighbour = (meterPerSecond - this.meterPerSecond[nextLowerMeasuredValue])
-					/ numberOfLowerNeighbours;
-			for (int i = 1; i < numberOfLowerNeighbours; i++) {
-				this.meterPerSecond[nextLowerMeasuredValue + i] = this.meterPerSecond[nextLowerMeasuredValue]
-						+ differencePerNeighbour * i;
-				this.windowSize[nextLowerMeasuredValue + i] = -1;
+
+			if (dccSpeed >= 1 && dccSpeed < Main.MAX_DCC_VALUES - 1) {
+				boolean existsUpperMeasuredValue = true;
+				int nextUpperMeasuredValue = dccSpeed + 1;
+				while (this.windowSize[nextUpperMeasuredValue] <= 0) {
+					if (nextUpperMeasuredValue == Main.MAX_DCC_VALUES - 1) {
+						existsUpperMeasuredValue = false;
+						break;
+					}
+					nextUpperMeasuredValue++;
+				}
+				int numberOfUpperNeighbours = nextUpperMeasuredValue - dccSpeed;
+				if (existsUpperMeasuredValue) {
+					differencePerNeighbour = (this.meterPerSecond[nextUpperMeasuredValue] - meterPerSecond)
+							/ numberOfUpperNeighbours;
+				} // else use the difference per Neighbour from above
+				for (int i = 1; i < numberOfUpperNeighbours; i++) {
+					this.meterPerSecond[dccSpeed + i] = this.meterPerSecond[dccSpeed] + differencePerNeighbour * i;
+					this.windowSize[dccSpeed + i] = -1;
+				}
 			}
+		} finally {
+			getLock().unlock();
 		}
+	}
 
-		if (dccSpeed >= 1 && dccSpeed < Main.MAX_DCC_VALUES - 1) {
-			boolean existsUpperMeasuredValue = true;
+	private int getNextUpperMeasuredValue(int dccSpeed) {
+		getLock().lock();
+		try {
+			//TODO  nicht getestet
+			if (dccSpeed >= Main.MAX_DCC_VALUES) {
+				return Integer.MAX_VALUE;
+			}
 			int nextUpperMeasuredValue = dccSpeed + 1;
 			while (this.windowSize[nextUpperMeasuredValue] <= 0) {
 				if (nextUpperMeasuredValue == Main.MAX_DCC_VALUES - 1) {
-					existsUpperMeasuredValue = false;
-					break;
+					return Integer.MAX_VALUE;
 				}
 				nextUpperMeasuredValue++;
 			}
-			int numberOfUpperNeighbours = nextUpperMeasuredValue - dccSpeed;
-			if (existsUpperMeasuredValue) {
-				differencePerNeighbour = (this.meterPerSecond[nextUpperMeasuredValue] - meterPerSecond)
-						/ numberOfUpperNeighbours;
-			} // else use the difference per Neighbour from above
-			for (int i = 1; i < numberOfUpperNeighbours; i++) {
-				this.meterPerSecond[dccSpeed + i] = this.meterPerSecond[dccSpeed] + differencePerNeighbour * i;
-				this.windowSize[dccSpeed + i] = -1;
-			}
+			return nextUpperMeasuredValue;
+		} finally {
+			getLock().unlock();
 		}
 	}
 
-	synchronized private int getNextUpperMeasuredValue(int dccSpeed) {
-		//TODO  nicht getestet
-		if (dccSpeed >= Main.MAX_DCC_VALUES) {
-			return Integer.MAX_VALUE;
-		}
-		int nextUpperMeasuredValue = dccSpeed + 1;
-		while (this.windowSize[nextUpperMeasuredValue] <= 0) {
-			if (nextUpperMeasuredValue == Main.MAX_DCC_VALUES - 1) {
-				return Integer.MAX_VALUE;
-			}
-			nextUpperMeasuredValue++;
-		}
-		return nextUpperMeasuredValue;
-	}
-
 	private void bubbleSortSpeeds() {
 		//TODO  nicht getestet
 		int currentDccValue = 0;
@@ -191,36 +282,79 @@ public class Locomotive extends Vehicle implements MySerializable {
 		}
 	}
 
-	synchronized void addSpeedMeasurement(int dccSpeed, double meterPerSecond) {
-		//TODO nicht getestet
-		assert (0 <= dccSpeed);
-		assert (dccSpeed < Main.MAX_DCC_VALUES);
-		assert (windowSize[dccSpeed] >= -1);
-		assert (windowSize[dccSpeed] <= maxWindowSize);
+	void addSpeedMeasurement(int dccSpeed, double meterPerSecond) {
+		getLock().lock();
+		try {
+			//TODO nicht getestet
+			assert (0 <= dccSpeed);
+			assert (dccSpeed < Main.MAX_DCC_VALUES);
+			assert (windowSize[dccSpeed] >= -1);
+			assert (windowSize[dccSpeed] <= maxWindowSize);
 
-		movingAveraging(dccSpeed, meterPerSecond);
-		bubbleSortSpeeds();
-		bubbleSortSpeeds();
-		bubbleSortSpeeds();
-		updateDccNeighbourhoodWithNoMeasuredValues(dccSpeed, meterPerSecond);
+			movingAveraging(dccSpeed, meterPerSecond);
+			bubbleSortSpeeds();
+			bubbleSortSpeeds();
+			bubbleSortSpeeds();
+			updateDccNeighbourhoodWithNoMeasuredValues(dccSpeed, meterPerSecond);
+			markDirty();
+		} finally {
+			getLock().unlock();
+		}
+		// The speed limit in m/s may have changed
+		invalidateConstraintsOfTrainScope();
+	}
 
+	/**
+	 * Not called while the Locomotive is locked, because the speed control locks
+	 * the TrainScope before its Locomotives.
+	 */
+	private void invalidateConstraintsOfTrainScope() {
+		TrainScope trainScope = getTrainScope();
+		if (trainScope != null) {
+			trainScope.invalidateConstraints();
+		}
 	}
 
-	synchronized public boolean isDirectionDecoder() {
-		return directionDecoder;
+	ReentrantLock getLock() {
+		return ModelLock.get(this, LOCK);
 	}
 
-	synchronized void setDirectionDecoder(boolean directionDecoder) {
-		this.directionDecoder = directionDecoder;
-		Main.controlUnit.setDccSpeed(this, (byte) 0);
+	public boolean isDirectionDecoder() {
+		getLock().lock();
+		try {
+			return directionDecoder;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized public int getDccAddress() {
-		return dccAddress;
+	void setDirectionDecoder(boolean directionDecoder) {
+		getLock().lock();
+		try {
+			this.directionDecoder = directionDecoder;
+			Main.asyncControlUnit.setDccSpeed(this, (byte) 0);
+			markDirty();
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized public static Locomotive getLocomotiveByDccAddress(int dccAddress) {
-		return locomotives.get(dccAddress);
+	public int getDccAddress() {
+		getLock().lock();
+		try {
+			return dccAddress;
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	public static Locomotive getLocomotiveByDccAddress(int dccAddress) {
+		LOCOMOTIVES_LOCK.lock();
+		try {
+			return getLocomotivesByDccAddress().get(dccAddress);
+		} finally {
+			LOCOMOTIVES_LOCK.unlock();
+		}
 	}
 	
 	/**
@@ -232,41 +366,63 @@ public class Locomotive extends Vehicle implements MySerializable {
 	 * 
 	 * @param speed - in m/s in the Model
 	 */
-	synchronized void setCurrentSpeed(double speed) {
-		//TODO sehr inneffizient implementiert
-		//TODO falls die aktuelle DCC Geschwindigkeit die selbe ist s
-		//ollte sie nicht nochmals gesendet werden um den Netzwerkverkehr zu entlasten
-		for(int i = 0; i < Main.MAX_DCC_VALUES; i++) {
-			if(meterPerSecond[i] >= speed) {
-				//Die Variable currentDccSpeed wird durch die rckmeldung der ControlUnit aktualisiert.
-				//Daher braucht man sie in dieser Methode nicht zu setzen.
-				Main.controlUnit.setDccSpeed(this, i);
-				return;
+	void setCurrentSpeed(double speed) {
+		getLock().lock();
+		try {
+			//TODO sehr inneffizient implementiert
+			//TODO falls die aktuelle DCC Geschwindigkeit die selbe ist s
+			//ollte sie nicht nochmals gesendet werden um den Netzwerkverkehr zu entlasten
+			for(int i = 0; i < Main.MAX_DCC_VALUES; i++) {
+				if(meterPerSecond[i] >= speed) {
+					//Die Variable currentDccSpeed wird durch die rckmeldung der ControlUnit aktualisiert.
+					//Daher braucht man sie in dieser Methode nicht zu setzen.
+					Main.asyncControlUnit.setDccSpeed(this, i);
+					return;
+				}
 			}
-		}
-		Main.controlUnit.setDccSpeed(this, Main.MAX_DCC_VALUES -1);
+			Main.asyncControlUnit.setDccSpeed(this, Main.MAX_DCC_VALUES -1);
 		
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
 	/**
 	 * @return the current speed in m/s in the Model
 	 */
-	synchronized double getCurrentSpeed() {
-		return this.meterPerSecond[currentDccSpeed];
+	double getCurrentSpeed() {
+		getLock().lock();
+		try {
+			return this.meterPerSecond[currentDccSpeed];
+		} finally {
+			getLock().unlock();
+		}
 	}
 	
 	/**
 	 * 
 	 * @return the current speed Limit in m/s in the Model
 	 */
-	synchronized double getCurrentSpeedLimit() {
-		return this.meterPerSecond[currentDccSpeedLimit];
+	double getCurrentSpeedLimit() {
+		getLock().lock();
+		try {
+			return this.meterPerSecond[currentDccSpeedLimit];
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized public void setDccSpeedLimit(int dccSpeedLimit) {
-		assert (dccSpeedLimit < Main.MAX_DCC_VALUES);
-		assert (0 <= dccSpeedLimit);
-		this.currentDccSpeedLimit = dccSpeedLimit;
+	public void setDccSpeedLimit(int dccSpeedLimit) {
+		getLock().lock();
+		try {
+			assert (dccSpeedLimit < Main.MAX_DCC_VALUES);
+			assert (0 <= dccSpeedLimit);
+			this.currentDccSpeedLimit = dccSpeedLimit;
+			markDirty();
+		} finally {
+			getLock().unlock();
+		}
+		invalidateConstraintsOfTrainScope();
 	}
 
 	/**
@@ -274,20 +430,37 @@ public class Locomotive extends Vehicle implements MySerializable {
 	 * 
 	 * @param direction
 	 */
-	synchronized public void updateDirectionDecoder(boolean direction) {
-		this.directionDecoder = direction;
+	public void updateDirectionDecoder(boolean direction) {
+		getLock().lock();
+		try {
+			this.directionDecoder = direction;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
-	 * Only the controlUnit should use this Method
+	 * Only the controlUnit should use this Method. The TrainScope is updated
+	 * after the Locomotive is unlocked, because the speed control locks the
+	 * TrainScope before its Locomotives.
 	 * 
 	 * @param dccValue
 	 */
-	synchronized public void updateDccSpeed(int dccValue) {
-		assert (0 <= dccValue);
-		assert (dccValue < Main.MAX_DCC_VALUES);
-		this.currentDccSpeed = dccValue;
-		this.getTrainScope().setCurrentSpeedInModel(this.meterPerSecond[dccValue]);
+	public void updateDccSpeed(int dccValue) {
+		double speedInModel;
+		getLock().lock();
+		try {
+			assert (0 <= dccValue);
+			assert (dccValue < Main.MAX_DCC_VALUES);
+			this.currentDccSpeed = dccValue;
+			speedInModel = this.meterPerSecond[dccValue];
+		} finally {
+			getLock().unlock();
+		}
+		TrainScope trainScope = getTrainScope();
+		if (trainScope != null) {
+			trainScope.setCurrentSpeedInModel(speedInModel);
+		}
 	}
 
 }
@@ -0,0 +1,35 @@
+package modelling;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates the ReentrantLocks of the model on first use. They replace the
+ * monitors of TrainScope, Locomotive, Edge and Position, because a virtual
+ * Thread that blocks while it holds a monitor pins its carrier Thread. The lock
+ * is a transient field and the StoreHandler allocates stored Objects without
+ * their constructor, so it can't be created in a field initializer.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+final class ModelLock {
+
+	private ModelLock() {
+	}
+
+	/**
+	 * @param owner
+	 * @param lock  - the updater of the transient volatile lock field of the owner
+	 * @return the lock of the owner, the same for all Threads
+	 */
+	static <T> ReentrantLock get(T owner, AtomicReferenceFieldUpdater<T, ReentrantLock> lock) {
+		ReentrantLock current = lock.get(owner);
+		if (current == null) {
+			lock.compareAndSet(owner, null, new ReentrantLock());
+			current = lock.get(owner);
+		}
+		return current;
+	}
+}
@@ -1,7 +1,12 @@
 package modelling;
 
+import java.io.IOException;
+
+import main.BinaryStorable;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * A Node connects two TrackSegments
@@ -9,7 +14,7 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 18.05.2021
  */
-public class Node implements MySerializable{
+public class Node implements MySerializable, BinaryStorable{
 	
 
 	private static final long serialVersionUID = -778610684749988450L;
@@ -17,7 +22,29 @@ public class Node implements MySerializable{
 	private TrackSegment secondTrackSegment = null;
 	
 	public Node() throws Exception{
-		StoreHandler.addObject(this);
+		this(true);
+	}
+	
+	/**
+	 * @param store - decide if the Node should be added to the storeHandler, a
+	 *              decoded Node is added by the StoreHandler itself
+	 */
+	Node(boolean store) {
+		if (store) {
+			StoreHandler.addObject(this);
+		}
+	}
+	
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(firstTrackSegment);
+		out.writeReference(secondTrackSegment);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		firstTrackSegment = in.readReference(TrackSegment.class);
+		secondTrackSegment = in.readReference(TrackSegment.class);
 	}
 	
 	@Override
@@ -49,6 +76,7 @@ public class Node implements MySerializable{
 		}else {
 			throw new Exception(this.toString() + " is already bound");
 		}
+		markDirty();
 	}
 	
 	void rebind(TrackSegment segment){
@@ -59,5 +87,6 @@ public class Node implements MySerializable{
 		}else {
 			assert(false);
 		}
+		markDirty();
 	}
 }
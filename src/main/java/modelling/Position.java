@@ -1,8 +1,15 @@
 package modelling;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import main.BinaryStorable;
 import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 import modelling.Edge.EdgeIterator;
 import modelling.Edge.EdgeIteratorObject;
 
@@ -11,12 +18,23 @@ import modelling.Edge.EdgeIteratorObject;
  * @author david.lieb.00@gmail.com
  * @version 26.04.2021
  */
-public class Position implements MySerializable{
+public class Position implements MySerializable, BinaryStorable{
 	
 	
 	private static final long serialVersionUID = 2428198363863639357L;
+	private static final AtomicReferenceFieldUpdater<Position, ReentrantLock> LOCK = AtomicReferenceFieldUpdater
+			.newUpdater(Position.class, ReentrantLock.class, "lock");
+	/**
+	 * Guards an overflow onto the next Edge
+	 * @see ModelLock
+	 */
+	private transient volatile ReentrantLock lock;
 	private Edge edge;
 	private double offset;
+	/**
+	 * An ephemeral Position is not added to the StoreHandler.
+	 */
+	private boolean ephemeral;
 	
 	
 	/**
@@ -27,6 +45,7 @@ public class Position implements MySerializable{
 		super();
 		this.edge = edge;
 		this.offset = offset;
+		this.ephemeral = false;
 		this.calculatePositionOverflow();
 		StoreHandler.addObject(this);
 	}
@@ -42,6 +61,7 @@ public class Position implements MySerializable{
 		super();
 		this.edge = other.edge;
 		this.offset = other.offset;
+		this.ephemeral = !store;
 		this.calculatePositionOverflow();
 		if(store) {
 			StoreHandler.addObject(this);
@@ -61,6 +81,7 @@ public class Position implements MySerializable{
 		super();
 		this.edge = edge;
 		this.offset = offset;
+		this.ephemeral = !store;
 		this.calculatePositionOverflow();
 		if(store) {
 			StoreHandler.addObject(this);
@@ -68,9 +89,36 @@ public class Position implements MySerializable{
 		
 	}
 	
+	/**
+	 * An empty Position, that is read by readFrom()
+	 */
+	Position() {
+	}
+	
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		getLock().lock();
+		try {
+			out.writeReference(edge);
+			out.writeDouble(offset);
+			out.writeBoolean(ephemeral);
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		edge = in.readReference(Edge.class);
+		offset = in.readDouble();
+		ephemeral = in.readBoolean();
+	}
+	
 	@Override
 	public void delete() {
-		StoreHandler.deleteObject(this);
+		if(!ephemeral) {
+			StoreHandler.deleteObject(this);
+		}
 	}
 	
 	private boolean checkPositionValid() {
@@ -94,72 +142,101 @@ public class Position implements MySerializable{
 		this.calculatePositionOverflow();
 	}
 	
+	/**
+	 * Move the Position, e.g. a reused helper Position
+	 * @param edge
+	 * @param offset - may lie beyond the Edge
+	 */
+	void set(Edge edge, double offset) {
+		this.edge = edge;
+		setOffset(offset);
+	}
+	
 	/**
 	 * Set the Position with a deep copy of another Position.
 	 * @param other Position
 	 */
 	void setPosition(Position other) {
 		assert(other.checkPositionValid());
-		this.edge = other.edge;
-		this.offset = other.offset;
+		// The Edge and the offset of a stored Position are written together
+		getLock().lock();
+		try {
+			this.edge = other.edge;
+			this.offset = other.offset;
+		} finally {
+			getLock().unlock();
+		}
 		assert(this.checkPositionValid());
 	}
 	
-	synchronized private void calculatePositionOverflow(){
-		if (!checkPositionValid()) {
-			if(offset < 0) {
-				if(edge.hasPreviousEdge()) {
-					Edge newEdge = edge.getPreviousEdge();
+	ReentrantLock getLock() {
+		return ModelLock.get(this, LOCK);
+	}
+
+	private void calculatePositionOverflow(){
+		// Most Positions stay on their Edge and never need the lock
+		if (checkPositionValid()) {
+			return;
+		}
+		getLock().lock();
+		try {
+			if (!checkPositionValid()) {
+				if(offset < 0) {
+					if(edge.hasPreviousEdge()) {
+						Edge newEdge = edge.getPreviousEdge();
 					
-					if(newEdge.getFirstNode() == edge.getFirstNode()) {
-						offset = - offset;
-						edge = newEdge;
-						this.calculatePositionOverflow();
+						if(newEdge.getFirstNode() == edge.getFirstNode()) {
+							offset = - offset;
+							edge = newEdge;
+							this.calculatePositionOverflow();
 						
-					}else if (newEdge.getSecondNode() == edge.getFirstNode()) {
-						offset = newEdge.getLength() + offset - Main.EPSILON;
-						edge = newEdge;
-						this.calculatePositionOverflow();
+						}else if (newEdge.getSecondNode() == edge.getFirstNode()) {
+							offset = newEdge.getLength() + offset - Main.EPSILON;
+							edge = newEdge;
+							this.calculatePositionOverflow();
 						
-					}else {
-						//Dieser Fall kann auftreten z.B bei einer Weiche. Diese Edge zeigt auf eine
-						//nchstes Segment, aber das Segment zeigt nicht zurck.
+						}else {
+							//Dieser Fall kann auftreten z.B bei einer Weiche. Diese Edge zeigt auf eine
+							//nchstes Segment, aber das Segment zeigt nicht zurck.
+							offset = 0;
+						}
+					}else {//has NO previous Edge
+						//Dieser Fall tritt auf, wenn ein Node keinen nchstes Element besitzt.
 						offset = 0;
 					}
-				}else {//has NO previous Edge
-					//Dieser Fall tritt auf, wenn ein Node keinen nchstes Element besitzt.
-					offset = 0;
-				}
 				
 				
-			}else if (offset >= edge.getLength()) {
-				if(edge.hasNextEdge()) {
-					Edge newEdge = edge.getNextEdge();
+				}else if (offset >= edge.getLength()) {
+					if(edge.hasNextEdge()) {
+						Edge newEdge = edge.getNextEdge();
 					
-					if (newEdge.getFirstNode() == edge.getSecondNode()) {
-						offset = offset - edge.getLength();
-						edge = newEdge;
-						this.calculatePositionOverflow();
+						if (newEdge.getFirstNode() == edge.getSecondNode()) {
+							offset = offset - edge.getLength();
+							edge = newEdge;
+							this.calculatePositionOverflow();
 						
-					}else if (newEdge.getSecondNode() == edge.getSecondNode()) {
-						offset = newEdge.getLength() - offset + edge.getLength() - Main.EPSILON;
-						edge = newEdge;
-						this.calculatePositionOverflow();
+						}else if (newEdge.getSecondNode() == edge.getSecondNode()) {
+							offset = newEdge.getLength() - offset + edge.getLength() - Main.EPSILON;
+							edge = newEdge;
+							this.calculatePositionOverflow();
 						
-					}else {
-						//Dieser Fall kann auftreten z.B bei einer Weiche. Diese Edge zeigt auf eine
-						//nchstes Segment, aber das Segment zeigt nicht zurck.
+						}else {
+							//Dieser Fall kann auftreten z.B bei einer Weiche. Diese Edge zeigt auf eine
+							//nchstes Segment, aber das Segment zeigt nicht zurck.
+							offset = edge.getLength() - Main.EPSILON;
+						}
+					}else {//has NO next Edge
+						//Dieser Fall tritt auf, wenn ein Node keinen nchstes Element besitzt.
 						offset = edge.getLength() - Main.EPSILON;
-					}
-				}else {//has NO next Edge
-					//Dieser Fall tritt auf, wenn ein Node keinen nchstes Element besitzt.
-					offset = edge.getLength() - Main.EPSILON;
-				}				
-			}else {
-				assert(false);
+					}				
+				}else {
+					assert(false);
+				}
 			}
+			assert(checkPositionValid());
+		} finally {
+			getLock().unlock();
 		}
-		assert(checkPositionValid());
 	}
 	
 	
@@ -195,6 +272,19 @@ public class Position implements MySerializable{
 	 * @return the distance if it is within the border. Else it returns Double.MAX_VALUE;
 	 */
 	double calculateDistanceTo(Position otherPosition, double border, boolean direction) {
+		return calculateDistanceTo(otherPosition, border, direction, this.iterator(direction));
+	}
+	
+	/**
+	 * Like calculateDistanceTo(otherPosition, border, direction), but the search
+	 * resets and uses the given EdgeIterator instead of creating one.
+	 * @param otherPosition
+	 * @param border
+	 * @param direction - the direction to start.
+	 * @param iterator - any EdgeIterator that is not used otherwise at the moment
+	 * @return the distance if it is within the border. Else it returns Double.MAX_VALUE;
+	 */
+	double calculateDistanceTo(Position otherPosition, double border, boolean direction, EdgeIterator iterator) {
 		assert(this.checkPositionValid());
 		assert(otherPosition.checkPositionValid());
 		
@@ -210,7 +300,7 @@ public class Position implements MySerializable{
 			}
 		}
 		
-		EdgeIterator iterator = this.iterator(direction);
+		iterator.reset(this, direction);
 		EdgeIteratorObject current = iterator.next();
 		assert(current.getEdge() == this.getEdge());
 		double returnValue = Double.MAX_VALUE;
@@ -255,6 +345,18 @@ public class Position implements MySerializable{
 	 * @return the distance if it is within the border. Else it returns Double.MAX_VALUE;
 	 */
 	public double calculateDistanceTo(Position otherPosition, double border) {
+		return calculateDistanceTo(otherPosition, border, this.iterator(true));
+	}
+	
+	/**
+	 * Like calculateDistanceTo(otherPosition, border), but the search resets and
+	 * uses the given EdgeIterator instead of creating one.
+	 * @param otherPosition
+	 * @param border
+	 * @param iterator - any EdgeIterator that is not used otherwise at the moment
+	 * @return the distance if it is within the border. Else it returns Double.MAX_VALUE;
+	 */
+	double calculateDistanceTo(Position otherPosition, double border, EdgeIterator iterator) {
 		assert(this.checkPositionValid());
 		assert(otherPosition.checkPositionValid());
 		
@@ -263,8 +365,8 @@ public class Position implements MySerializable{
 		}
 		
 		double distance = Math.min(
-				calculateDistanceTo(otherPosition, border, false),
-				calculateDistanceTo(otherPosition, border, true));
+				calculateDistanceTo(otherPosition, border, false, iterator),
+				calculateDistanceTo(otherPosition, border, true, iterator));
 		
 		
 		return distance;
@@ -0,0 +1,37 @@
+package modelling;
+
+import java.util.List;
+
+import main.StoreType;
+
+/**
+ * The StoreTypes of all classes of the model that are stored by the
+ * BinaryCodec. The ids are written into the snapshots: never change an id and
+ * never give the id of a removed class to another one.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 18.10.2026
+ */
+public final class StoredTypes {
+
+	private static final List<StoreType<?>> ALL = List.of(
+			new StoreType<>(1, 1, Node.class, () -> new Node(false)),
+			new StoreType<>(2, 1, Edge.class, Edge::new),
+			new StoreType<>(3, 1, Position.class, Position::new),
+			new StoreType<>(4, 1, BlockPoint.class, BlockPoint::new),
+			new StoreType<>(5, 1, Track.class, Track::new),
+			new StoreType<>(6, 1, Switch.class, Switch::new),
+			new StoreType<>(7, 1, Bumper.class, Bumper::new),
+			new StoreType<>(8, 1, Balise.class, Balise::new),
+			new StoreType<>(9, 1, Locomotive.class, Locomotive::new),
+			new StoreType<>(10, 1, Wagon.class, Wagon::new),
+			new StoreType<>(11, 1, TrainScope.class, TrainScope::new));
+
+	private StoredTypes() {
+	}
+
+	public static List<StoreType<?>> getAll() {
+		return ALL;
+	}
+}
@@ -1,7 +1,19 @@
 package modelling;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import main.BinaryStorable;
+import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * A Switch TrackSegment
@@ -9,18 +21,22 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 26.05.2021
  */
-public class Switch implements TrackSegment,MySerializable{
+public class Switch implements TrackSegment,MySerializable,BinaryStorable{
 	
 	private static final long serialVersionUID = 4407187894697135038L;
-	private final Edge leftEdge;
-	private final Edge rightEdge;
-	private final Edge[] asscociatedEdges;
+	private Edge leftEdge;
+	private Edge rightEdge;
+	private Edge[] asscociatedEdges;
 	private SwitchState state;
 	private BlockPoint blockLeft;
 	private BlockPoint blockRight;
+	/**
+	 * The turnout address of the control unit, -1 if the switch has no decoder
+	 */
+	private int dccAddress;
 	
 	/**
-	 * A switch Track Segment
+	 * A switch Track Segment without a decoder
 	 * @param firstNode
 	 * @param leftNode - the secondNode of the left branch
 	 * @param rightNode - the secondNode of the right branch
@@ -31,6 +47,23 @@ public class Switch implements TrackSegment,MySerializable{
 	 * @throws Exception 
 	 */
 	public Switch(Node firstNode, Node leftNode, Node rightNode, double lengthLeft, double lengthRight,double maxSpeedLeft, double maxSpeedRight) throws Exception {
+		this(firstNode, leftNode, rightNode, lengthLeft, lengthRight, maxSpeedLeft, maxSpeedRight, -1);
+	}
+	
+	/**
+	 * A switch Track Segment
+	 * @param firstNode
+	 * @param leftNode - the secondNode of the left branch
+	 * @param rightNode - the secondNode of the right branch
+	 * @param lengthLeft - the length of the left branch
+	 * @param lengthRight - the length of the right branch
+	 * @param maxSpeedLeft - the maximal Speed that can be driven on the left branch m/s in reality
+	 * @param maxSpeedRight - the maximal Speed that can be driven on the right branch m/s in reality
+	 * @param dccAddress - the turnout address of the control unit
+	 * @throws Exception 
+	 */
+	public Switch(Node firstNode, Node leftNode, Node rightNode, double lengthLeft, double lengthRight,double maxSpeedLeft, double maxSpeedRight, int dccAddress) throws Exception {
+		this.dccAddress = dccAddress;
 		leftEdge = new Edge(lengthLeft, firstNode, leftNode, maxSpeedLeft, this);
 		rightEdge = new Edge(lengthRight, firstNode, rightNode, maxSpeedRight, this);
 		asscociatedEdges = new Edge[2];
@@ -50,7 +83,9 @@ public class Switch implements TrackSegment,MySerializable{
 		rightEdge.addBlockPoint(blockRight);
 		leftEdge.removeBlockPoint(blockLeft);
 		
-		//TODO Z21 API must know that the switch is left.
+		if (dccAddress >= 0) {
+			Main.asyncControlUnit.setSwitch(this, false);
+		}
 		
 		firstNode.bind(this);
 		leftNode.bind(this);
@@ -58,6 +93,49 @@ public class Switch implements TrackSegment,MySerializable{
 		StoreHandler.addObject(this);
 	}
 	
+	/**
+	 * An empty Switch, that is read by readFrom(). The turnout is not set again.
+	 */
+	Switch() {
+	}
+	
+	@Override
+	synchronized public void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(leftEdge);
+		out.writeReference(rightEdge);
+		out.writeReferences(asscociatedEdges);
+		out.writeEnum(state);
+		out.writeReference(blockLeft);
+		out.writeReference(blockRight);
+		out.writeInt(dccAddress);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		leftEdge = in.readReference(Edge.class);
+		rightEdge = in.readReference(Edge.class);
+		asscociatedEdges = in.readReferences(Edge.class, Edge[]::new);
+		state = in.readEnum(SwitchState.class);
+		blockLeft = in.readReference(BlockPoint.class);
+		blockRight = in.readReference(BlockPoint.class);
+		dccAddress = in.readInt();
+	}
+	
+	/**
+	 * Switches that were serialized before they had a turnout address have no
+	 * decoder. The default value 0 would be the address of a turnout.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		leftEdge = (Edge) fields.get("leftEdge", null);
+		rightEdge = (Edge) fields.get("rightEdge", null);
+		asscociatedEdges = (Edge[]) fields.get("asscociatedEdges", null);
+		state = (SwitchState) fields.get("state", null);
+		blockLeft = (BlockPoint) fields.get("blockLeft", null);
+		blockRight = (BlockPoint) fields.get("blockRight", null);
+		dccAddress = fields.defaulted("dccAddress") ? -1 : fields.get("dccAddress", -1);
+	}
+	
 	@Override
 	public void delete() throws Exception {
 		leftEdge.getFirstNode().rebind(this);
@@ -117,14 +195,7 @@ public class Switch implements TrackSegment,MySerializable{
 	 * @throws Exception
 	 */
 	synchronized void switchLeft() throws Exception {
-		if(!switchPossible()) {
-			throw new Exception("Currently it is not possible to switch");
-		}
-		rightEdge.addBlockPoint(blockRight);
-		//TODO Z21 API must know that the switch is left.
-		//Wait until Z21 switched
-		state = SwitchState.LEFT;
-		leftEdge.removeBlockPoint(blockLeft);
+		await(switchTo(SwitchState.LEFT));
 	}
 	
 	/**
@@ -132,14 +203,93 @@ public class Switch implements TrackSegment,MySerializable{
 	 * @throws Exception
 	 */
 	synchronized void switchRight() throws Exception {
+		await(switchTo(SwitchState.RIGHT));
+	}
+	
+	/**
+	 * Block the old branch, tell the control unit and open the new branch.
+	 * @param newState
+	 * @return completes when the control unit has switched
+	 * @throws Exception
+	 */
+	synchronized private CompletableFuture<Void> switchTo(SwitchState newState) throws Exception {
+		changeTo(newState);
+		if (dccAddress < 0) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return Main.asyncControlUnit.setSwitch(this, newState == SwitchState.RIGHT);
+	}
+	
+	/**
+	 * Block the old branch and open the new branch, without telling the control
+	 * unit.
+	 * @param newState
+	 * @throws Exception
+	 */
+	synchronized private void changeTo(SwitchState newState) throws Exception {
 		if(!switchPossible()) {
 			throw new Exception("Currently it is not possible to switch");
 		}
-		leftEdge.addBlockPoint(blockLeft);
-		//TODO Z21 API must know that the switch is left.
-		//Wait until Z21 switched
-		state = SwitchState.RIGHT;
-		rightEdge.removeBlockPoint(blockRight);
+		switch (newState) {
+		case LEFT:
+			rightEdge.addBlockPoint(blockRight);
+			state = SwitchState.LEFT;
+			leftEdge.removeBlockPoint(blockLeft);
+			break;
+		case RIGHT:
+			leftEdge.addBlockPoint(blockLeft);
+			state = SwitchState.RIGHT;
+			rightEdge.removeBlockPoint(blockRight);
+			break;
+		}
+		markDirty();
+	}
+	
+	/**
+	 * This Method sets all Switches of a route. The control unit gets all
+	 * turnouts as one route, so the route costs one exchange instead of one per
+	 * Switch.
+	 * @param route - the new state of each Switch
+	 * @throws Exception
+	 */
+	public static void setRoute(Map<Switch, SwitchState> route) throws Exception {
+		List<Switch> turnouts = new ArrayList<>();
+		for (Map.Entry<Switch, SwitchState> entry : route.entrySet()) {
+			Switch switch_ = entry.getKey();
+			switch_.changeTo(entry.getValue());
+			if (switch_.dccAddress >= 0) {
+				turnouts.add(switch_);
+			}
+		}
+		if (turnouts.isEmpty()) {
+			return;
+		}
+		Switch[] switches = turnouts.toArray(new Switch[turnouts.size()]);
+		boolean[] states = new boolean[switches.length];
+		for (int i = 0; i < switches.length; i++) {
+			states[i] = route.get(switches[i]) == SwitchState.RIGHT;
+		}
+		await(Main.asyncControlUnit.setRoute(switches, states));
+	}
+	
+	private static void await(CompletableFuture<Void> switched) throws Exception {
+		try {
+			switched.join();
+		} catch (CompletionException e) {
+			throw new Exception("The control unit did not switch", e.getCause());
+		}
+	}
+	
+	/**
+	 * Not synchronized, the control unit reads it while the Switch waits for it
+	 * @return the turnout address of the control unit, -1 if the switch has no decoder
+	 */
+	public int getDccAddress() {
+		return dccAddress;
+	}
+	
+	synchronized public SwitchState getState() {
+		return state;
 	}
 
 	@Override
@@ -0,0 +1,117 @@
+package modelling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Shows whether a control loop keeps its period: it counts the deadlines that
+ * were missed and records how long the ticks took. The tick durations are
+ * counted in buckets that double in width, bucket i holds durations below 2^i
+ * microseconds and the last bucket all longer ones.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class TickStatistics {
+
+	/**
+	 * The last bucket starts at about 8 s
+	 */
+	public static final int BUCKETS = 25;
+
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong missedDeadlines = new AtomicLong();
+	private final AtomicLong maxTickDuration = new AtomicLong();
+
+	/**
+	 * @param duration - in ns
+	 */
+	public void recordTick(long duration) {
+		long micros = Math.max(0, duration) / 1000;
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+		histogram.incrementAndGet(bucket);
+		ticks.incrementAndGet();
+		maxTickDuration.accumulateAndGet(duration, Math::max);
+	}
+
+	/**
+	 * @param missed - the number of deadlines whose tick did not start before the
+	 *               next deadline
+	 */
+	public void addMissedDeadlines(long missed) {
+		missedDeadlines.addAndGet(missed);
+	}
+
+	public long getTicks() {
+		return ticks.get();
+	}
+
+	public long getMissedDeadlines() {
+		return missedDeadlines.get();
+	}
+
+	/**
+	 * @return in ns
+	 */
+	public long getMaxTickDuration() {
+		return maxTickDuration.get();
+	}
+
+	/**
+	 * @return the number of ticks of each bucket
+	 */
+	public long[] getTickDurationHistogram() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = histogram.get(i);
+		}
+		return copy;
+	}
+
+	/**
+	 * @param bucket
+	 * @return in ns, the durations of the bucket are below it, Long.MAX_VALUE for
+	 *         the last bucket
+	 */
+	public static long getUpperBound(int bucket) {
+		if (bucket >= BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return (1L << bucket) * 1000;
+	}
+
+	/**
+	 * @param percentile - between 0 and 1
+	 * @return in ns, the upper bound of the bucket of the percentile, 0 without
+	 *         ticks
+	 */
+	public long getTickDurationPercentile(double percentile) {
+		assert (0 <= percentile && percentile <= 1);
+		long[] histogram = getTickDurationHistogram();
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile * total);
+		long counted = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counted += histogram[i];
+			if (counted >= rank && counted > 0) {
+				return getUpperBound(i);
+			}
+		}
+		return getUpperBound(BUCKETS - 1);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d ticks, %d missed deadlines, p50 < %.3f ms, p99 < %.3f ms, max %.3f ms", getTicks(),
+				getMissedDeadlines(), getTickDurationPercentile(0.5) / 1e6, getTickDurationPercentile(0.99) / 1e6,
+				getMaxTickDuration() / 1e6);
+	}
+}
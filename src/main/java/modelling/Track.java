@@ -1,8 +1,12 @@
 package modelling;
 
+import java.io.IOException;
 
+import main.BinaryStorable;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 
 /**
  * 
@@ -10,12 +14,12 @@ import main.StoreHandler;
  * @author david.lieb.00@gmail.com
  * @version 26.05.2021
  */
-public class Track implements TrackSegment, MySerializable{
+public class Track implements TrackSegment, MySerializable, BinaryStorable{
 	
 	
 	private static final long serialVersionUID = 2600162178536721956L;
-	private final Edge edge;
-	private final Edge[] asscociatedEdges;
+	private Edge edge;
+	private Edge[] asscociatedEdges;
 	
 	/**
 	 * A Track
@@ -35,6 +39,24 @@ public class Track implements TrackSegment, MySerializable{
 		
 		StoreHandler.addObject(this);
 	}
+	
+	/**
+	 * An empty Track, that is read by readFrom()
+	 */
+	Track() {
+	}
+	
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(edge);
+		out.writeReferences(asscociatedEdges);
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		edge = in.readReference(Edge.class);
+		asscociatedEdges = in.readReferences(Edge.class, Edge[]::new);
+	}
 
 	@Override
 	public void delete() throws Exception {
@@ -1,6 +1,8 @@
 package modelling;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,11 +10,16 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
+import main.BinaryStorable;
 import main.Main;
 import main.MySerializable;
 import main.StoreHandler;
+import main.StoreInput;
+import main.StoreOutput;
 import modelling.Edge.EdgeIterator;
 import modelling.Edge.EdgeIteratorObject;
 
@@ -24,40 +31,144 @@ import modelling.Edge.EdgeIteratorObject;
  * @author david.lieb.00@gmail.com
  * @version 26.05.2021
  */
-public class TrainScope implements MySerializable {
+public class TrainScope implements MySerializable, BinaryStorable {
 
 	private static final long serialVersionUID = -7140613898733525211L;
+	private static final AtomicReferenceFieldUpdater<TrainScope, ReentrantLock> LOCK = AtomicReferenceFieldUpdater
+			.newUpdater(TrainScope.class, ReentrantLock.class, "lock");
+	/**
+	 * Guards the positions and the speed of the TrainScope. Vehicles lock it
+	 * while they move.
+	 * @see ModelLock
+	 */
+	private transient volatile ReentrantLock lock;
+	private static final ReentrantLock DECOUPLE_LOCK = new ReentrantLock();
+
+	/**
+	 * How the speed control of a TrainScope is run
+	 */
+	public enum SpeedControlMode {
+		/**
+		 * Each TrainScope runs its own Thread
+		 */
+		PLATFORM_THREAD,
+		/**
+		 * All TrainScopes are ticked by the shared ControlLoopScheduler
+		 */
+		SCHEDULER,
+		/**
+		 * Each TrainScope runs its own virtual Thread. It needs a Java runtime
+		 * with virtual Threads, otherwise platform Threads are started.
+		 */
+		VIRTUAL_THREAD
+	}
+
+	/**
+	 * The mode of the speed controls started from now on
+	 */
+	public static volatile SpeedControlMode SPEED_CONTROL_MODE = SpeedControlMode.SCHEDULER;
+	/**
+	 * What the speed controls started from now on do when they fall behind their
+	 * deadlines
+	 */
+	public static volatile ControlLoopScheduler.OverrunPolicy OVERRUN_POLICY = ControlLoopScheduler.OverrunPolicy.SKIP;
+	/**
+	 * in ms, of a TrainScope without its own tick period
+	 */
+	public static final int DEFAULT_TICK_PERIOD = 100;
+	/**
+	 * in ms, the interval of the information printed by the speed control
+	 */
+	private static final long INFORMATION_INTERVAL = 5000;
 
 	/**
 	 * The front position of the Brake Curve
 	 */
-	private BlockPoint brakeCurveFront;
+	private transient BlockPoint brakeCurveFront;
 	/**
 	 * The front position of the Scope
 	 */
-	private BlockPoint front;
+	private transient BlockPoint front;
 	/**
 	 * The Back of the Scope
 	 */
-	private BlockPoint back;
-	private final double length;
-	private final Vehicle firstVehicle;
-	private final Vehicle lastVehicle;
-	private volatile boolean alive = false;
-	private volatile boolean closeSpeedControl = false;
+	private transient BlockPoint back;
+	private double length;
+	private Vehicle firstVehicle;
+	private Vehicle lastVehicle;
+	private transient volatile boolean alive = false;
+	private transient volatile boolean closeSpeedControl = false;
 
 	private final HashSet<Locomotive> locomotives = new HashSet<>();
-	private final Set<Edge> enteredEdges;
+	private transient List<Edge> enteredEdges;
+	/**
+	 * The entered Edges of the previous step, swapped with enteredEdges
+	 */
+	private transient List<Edge> spareEnteredEdges;
+	/**
+	 * Moved by the steps of the speed control instead of creating a new Position
+	 * for every intermediate result
+	 */
+	private transient Position stepPosition;
+	/**
+	 * The Position of the BlockPoint in the blockPointBuffer that is checked
+	 */
+	private transient Position blockPointPosition;
+	private transient BlockPointBuffer blockPointBuffer;
+	/**
+	 * Reset by the steps of the speed control instead of creating a new
+	 * EdgeIterator, they never use two at the same time
+	 */
+	private transient EdgeIterator stepIterator;
+	/**
+	 * Used for the distances that are calculated while the stepIterator is in use
+	 */
+	private transient EdgeIterator distanceIterator;
+	/**
+	 * Created from the locomotives by getLocomotiveArray()
+	 */
+	private transient Locomotive[] locomotiveArray;
+	/**
+	 * Created by getConstraints(), null after invalidateConstraints()
+	 */
+	private transient TrainScopeConstraints constraints;
 	private transient Thread speedControlThread;
+	private transient volatile ControlLoopScheduler.Registration speedControlRegistration;
+	/**
+	 * in ms, 0 for the DEFAULT_TICK_PERIOD
+	 */
+	private transient volatile int tickPeriod;
+	/**
+	 * The System.nanoTime of the last tick, only used by the speed control
+	 */
+	private transient long lastTick;
+	/**
+	 * The System.nanoTime of the last checkpoint, only used by the speed control
+	 */
+	private transient long lastCheckpoint;
+	/**
+	 * The System.nanoTime of the last printed information, only used by the
+	 * speed control
+	 */
+	private transient long lastInformation;
+	/**
+	 * Kept over restarts of the speed control, created by the first start
+	 */
+	private transient volatile TickStatistics tickStatistics;
 	private String vehicles;
 	/**
 	 * The current Speed of the TrainScope in the Model
 	 */
-	private double currentSpeedInModel;
+	private transient double currentSpeedInModel;
 
 	private final double brakeAcceleration = 0.7;
 	private final double driveAcceleration = 0.5;
-	private Status status;
+	private transient Status status;
+	/**
+	 * The state of the last checkpoint. Only this state is stored, the positional
+	 * information above is restored from it.
+	 */
+	private volatile TrainScopeState state;
 
 	/**
 	 * Initialize a new TrainScope around one Vehicle
@@ -73,25 +184,20 @@ public class TrainScope implements MySerializable {
 		vehicle.setPreviousVehicle(null);
 		this.firstVehicle = vehicle;
 		this.lastVehicle = vehicle;
-		this.enteredEdges = new HashSet<>();
+		createBuffers(vehicle.getMiddlePosition().getEdge());
 
 		if (vehicle.toString().contains("Locomotive")) {
 			getLocomotives().add((Locomotive) vehicle);
 		}
 
 		// Initialize Positional information
-		Position middlePosition = vehicle.getMiddlePosition();
-		Position frontPosition = new Position(middlePosition.getEdge(), middlePosition.getOffset() + (length / 2));
-		Position backPosition = new Position(middlePosition.getEdge(), middlePosition.getOffset() - (length / 2));
-		Edge startEdge = middlePosition.getEdge();
-		initializeEndPoints(startEdge, true, frontPosition, backPosition);
-		this.brakeCurveFront = new BlockPoint(front.getProperties(), new Position(front.getPosition(), true));
-		this.organiseTrainScope(front);
+		initializePositions(vehicle.getMiddlePosition());
 		this.currentSpeedInModel = 0;
+		publishState();
 		printInformation();
 
 		try {
-			this.speedControlThread = startSpeedControlThread();
+			startSpeedControlThread();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -103,6 +209,129 @@ public class TrainScope implements MySerializable {
 		StoreHandler.addObject(this);
 	}
 
+	/**
+	 * An empty TrainScope, that is read by readFrom(). Its positions and speed
+	 * control are started by restore().
+	 */
+	TrainScope() {
+	}
+
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		getLock().lock();
+		try {
+			out.writeDouble(length);
+			out.writeReference(firstVehicle);
+			out.writeReference(lastVehicle);
+			out.writeReferences(locomotives);
+			out.writeString(vehicles);
+			TrainScopeState state = this.state;
+			out.writeBoolean(state != null);
+			if (state != null) {
+				state.writeTo(out);
+			}
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		length = in.readDouble();
+		firstVehicle = in.readReference(Vehicle.class);
+		lastVehicle = in.readReference(Vehicle.class);
+		locomotives.clear();
+		in.readReferences(Locomotive.class, locomotives);
+		vehicles = in.readString();
+		if (in.readBoolean()) {
+			state = TrainScopeState.readFrom(in);
+		}
+	}
+
+	/**
+	 * Create the Objects that are reused by every step of the speed control.
+	 * 
+	 * @param edge - any Edge, the Positions are moved before they are read
+	 */
+	private void createBuffers(Edge edge) {
+		this.enteredEdges = new ArrayList<>();
+		this.spareEnteredEdges = new ArrayList<>();
+		this.stepPosition = new Position(edge, 0, false);
+		this.blockPointPosition = new Position(edge, 0, false);
+		this.blockPointBuffer = new BlockPointBuffer();
+		this.stepIterator = stepPosition.iterator(true);
+		this.distanceIterator = stepPosition.iterator(true);
+	}
+
+	/**
+	 * Initialize the front, back and brake curve around the middle Position of a
+	 * single Vehicle.
+	 * 
+	 * @param middlePosition
+	 * @throws Exception
+	 */
+	private void initializePositions(Position middlePosition) throws Exception {
+		getLock().lock();
+		try {
+			Position frontPosition = new Position(middlePosition.getEdge(), middlePosition.getOffset() + (length / 2),
+					false);
+			Position backPosition = new Position(middlePosition.getEdge(), middlePosition.getOffset() - (length / 2),
+					false);
+			Edge startEdge = middlePosition.getEdge();
+			initializeEndPoints(startEdge, true, frontPosition, backPosition);
+			this.brakeCurveFront = new BlockPoint(front.getProperties(), new Position(front.getPosition(), false), false);
+			this.organiseTrainScope(front);
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	/**
+	 * Restore the positional information from the stored TrainScopeState after
+	 * loading.
+	 */
+	@Override
+	public void restore() {
+		getLock().lock();
+		try {
+			createBuffers(firstVehicle.getMiddlePosition().getEdge());
+			TrainScopeState state = this.state;
+			try {
+				if (state == null) {
+					// TrainScopes of older versions have no TrainScopeState
+					this.status = Status.READY;
+					initializePositions(firstVehicle.getMiddlePosition());
+				} else {
+					this.status = state.getStatus();
+					this.currentSpeedInModel = state.getCurrentSpeedInModel();
+					Position frontPosition = new Position(state.getFrontEdge(), state.getFrontOffset(), false);
+					this.front = new BlockPoint(state.getFrontProperties(), frontPosition, false);
+					// back and brakeCurveFront are replaced by organiseTrainScope()
+					this.back = new BlockPoint(front.getProperties(), new Position(frontPosition, false), false);
+					this.brakeCurveFront = new BlockPoint(front.getProperties(), new Position(frontPosition, false), false);
+					this.organiseTrainScope(front);
+				}
+				publishState();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	/**
+	 * Publish the current state, so that it can be stored.
+	 */
+	private void publishState() {
+		getLock().lock();
+		try {
+			this.state = new TrainScopeState(front, currentSpeedInModel, status);
+		} finally {
+			getLock().unlock();
+		}
+	}
+
 	static TrainScope couple(TrainScope firstScope, TrainScope secondScope) {
 		// TODO
 		assert (false);
@@ -147,13 +376,20 @@ public class TrainScope implements MySerializable {
 		return null;
 	}
 
-	synchronized public void invertDirection() throws Exception {
-		if (currentSpeedInModel != 0) {
-			throw new Exception("You cannot invert the direction while the TrainScope drives at a speed");
+	public void invertDirection() throws Exception {
+		getLock().lock();
+		try {
+			if (currentSpeedInModel != 0) {
+				throw new Exception("You cannot invert the direction while the TrainScope drives at a speed");
+			}
+			BlockPoint buffer = back;
+			back = front;
+			front = buffer;
+			publishState();
+			markDirty();
+		} finally {
+			getLock().unlock();
 		}
-		BlockPoint buffer = back;
-		back = front;
-		front = buffer;
 	}
 
 	/**
@@ -166,152 +402,312 @@ public class TrainScope implements MySerializable {
 	 * @param backPosition
 	 * @throws Exception
 	 */
-	synchronized private void initializeEndPoints(Edge startEdge, boolean directionStartEdge, Position frontPosition,
+	private void initializeEndPoints(Edge startEdge, boolean directionStartEdge, Position frontPosition,
 			Position backPosition) throws Exception {
+		getLock().lock();
+		try {
 
-		BlockPointProperties frontPropertie;
-		BlockPointProperties backPropertie;
-		if (directionStartEdge) {
-			frontPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
-			backPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
-		} else {
-			frontPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
-			backPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
-		}
+			BlockPointProperties frontPropertie;
+			BlockPointProperties backPropertie;
+			if (directionStartEdge) {
+				frontPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
+				backPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
+			} else {
+				frontPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
+				backPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
+			}
 
-		// Iterate forward in order to find the FrontPosition
-		Edge currentEdge = startEdge;
-		Edge nextEdge;
-		while (frontPosition.getEdge() != currentEdge) {
-			switch (frontPropertie) {
-			case BLOCK_ALL:
-				assert (false);
-				break;
-			case BLOCK_NEGATIVE_DIRECTION:
-				nextEdge = currentEdge.getNextEdge();
-				if (nextEdge.getNextEdge() == currentEdge) {
-					frontPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
+			// Iterate forward in order to find the FrontPosition
+			Edge currentEdge = startEdge;
+			Edge nextEdge;
+			while (frontPosition.getEdge() != currentEdge) {
+				switch (frontPropertie) {
+				case BLOCK_ALL:
+					assert (false);
+					break;
+				case BLOCK_NEGATIVE_DIRECTION:
+					nextEdge = currentEdge.getNextEdge();
+					if (nextEdge.getNextEdge() == currentEdge) {
+						frontPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
+					}
+					currentEdge = nextEdge;
+					break;
+				case BLOCK_POSITIVE_DIRECTION:
+					nextEdge = currentEdge.getPreviousEdge();
+					if (nextEdge.getPreviousEdge() == currentEdge) {
+						frontPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
+					}
+					currentEdge = nextEdge;
+					break;
+				default:
+					assert (false);
+					break;
 				}
-				currentEdge = nextEdge;
-				break;
-			case BLOCK_POSITIVE_DIRECTION:
-				nextEdge = currentEdge.getPreviousEdge();
-				if (nextEdge.getPreviousEdge() == currentEdge) {
-					frontPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
+			}
+			assert (front == null);
+			BlockPoint oldFront = front;
+			this.front = new BlockPoint(frontPropertie, frontPosition, false);
+
+			// Iterate Backwards in order to find the BackPosition
+			currentEdge = startEdge;
+			nextEdge = null;
+			while (backPosition.getEdge() != currentEdge) {
+				switch (backPropertie) {
+				case BLOCK_ALL:
+					assert (false);
+					break;
+				case BLOCK_NEGATIVE_DIRECTION:
+					nextEdge = currentEdge.getNextEdge();
+					if (nextEdge.getNextEdge() == currentEdge) {
+						backPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
+					}
+					currentEdge = nextEdge;
+					break;
+				case BLOCK_POSITIVE_DIRECTION:
+					nextEdge = currentEdge.getPreviousEdge();
+					if (nextEdge.getPreviousEdge() == currentEdge) {
+						backPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
+					}
+					currentEdge = nextEdge;
+					break;
+				default:
+					assert (false);
+					break;
 				}
-				currentEdge = nextEdge;
-				break;
-			default:
-				assert (false);
-				break;
 			}
+			assert (back == null);
+			BlockPoint oldBack = back;
+			this.back = new BlockPoint(backPropertie, backPosition, false);
+
+			if (oldFront != null) {
+				oldFront.delete();
+			}
+			if (oldBack != null) {
+				oldBack.delete();
+			}
+		} finally {
+			getLock().unlock();
 		}
-		assert (front == null);
-		BlockPoint oldFront = front;
-		this.front = new BlockPoint(frontPropertie, frontPosition);
-
-		// Iterate Backwards in order to find the BackPosition
-		currentEdge = startEdge;
-		nextEdge = null;
-		while (backPosition.getEdge() != currentEdge) {
-			switch (backPropertie) {
-			case BLOCK_ALL:
-				assert (false);
-				break;
-			case BLOCK_NEGATIVE_DIRECTION:
-				nextEdge = currentEdge.getNextEdge();
-				if (nextEdge.getNextEdge() == currentEdge) {
-					backPropertie = BlockPointProperties.BLOCK_POSITIVE_DIRECTION;
-				}
-				currentEdge = nextEdge;
+	}
+
+	double getCurrentSpeedInModel() {
+		getLock().lock();
+		try {
+			return currentSpeedInModel;
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	void setCurrentSpeedInModel(double currentSpeedInModel) {
+		getLock().lock();
+		try {
+			this.currentSpeedInModel = currentSpeedInModel;
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	/**
+	 * Start the speed control of the TrainScope in the SPEED_CONTROL_MODE
+	 * 
+	 * @throws Exception - if there is already a speed control running
+	 */
+	public void startSpeedControlThread() throws Exception {
+		getLock().lock();
+		try {
+			if (alive) {
+				throw new Exception("The TrainScope with Vehicles " + vehicles + " already runs a SpeedControl Thread");
+			}
+			// If there is no locomotive in the TrainScope, then the Scope can't drive any
+			// speed.
+			if (getLocomotives().isEmpty()) {
+				closeSpeedControl = true;
+				alive = false;
+			} else {
+				closeSpeedControl = false;
+				alive = true;
+			}
+
+			speedControlThread = null;
+			speedControlRegistration = null;
+			lastTick = System.nanoTime();
+			lastCheckpoint = lastTick;
+			lastInformation = lastTick;
+			if (tickStatistics == null) {
+				tickStatistics = new TickStatistics();
+			}
+			SpeedControl speedControl = new SpeedControl(this);
+			switch (SPEED_CONTROL_MODE) {
+			case PLATFORM_THREAD:
+				speedControlThread = new Thread(speedControl);
+				speedControlThread.start();
 				break;
-			case BLOCK_POSITIVE_DIRECTION:
-				nextEdge = currentEdge.getPreviousEdge();
-				if (nextEdge.getPreviousEdge() == currentEdge) {
-					backPropertie = BlockPointProperties.BLOCK_NEGATIVE_DIRECTION;
-				}
-				currentEdge = nextEdge;
+			case VIRTUAL_THREAD:
+				speedControlThread = newVirtualThread(speedControl);
+				speedControlThread.start();
 				break;
-			default:
-				assert (false);
+			case SCHEDULER:
+				speedControl.printStartMessage();
+				speedControlRegistration = ControlLoopScheduler.getShared().register(speedControl::tick,
+						TimeUnit.MILLISECONDS.toNanos(getTickPeriod()), OVERRUN_POLICY, tickStatistics);
 				break;
 			}
+		} finally {
+			getLock().unlock();
 		}
-		assert (back == null);
-		BlockPoint oldBack = back;
-		this.back = new BlockPoint(backPropertie, backPosition);
+	}
 
-		if (oldFront != null) {
-			oldFront.delete();
+	/**
+	 * The virtual Threads are created by reflection, so it still runs on Java
+	 * runtimes without them.
+	 * 
+	 * @param runnable
+	 * @return an unstarted virtual Thread, or a platform Thread if the Java
+	 *         runtime has no virtual Threads
+	 */
+	private static Thread newVirtualThread(Runnable runnable) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (Thread) Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class)
+					.invoke(builder, runnable);
+		} catch (ReflectiveOperationException e) {
+			System.out.println("WARNUNG: This Java runtime has no virtual Threads, start a platform Thread instead");
+			return new Thread(runnable);
 		}
-		if (oldBack != null) {
-			oldBack.delete();
+	}
+
+	public void closeSpeedControlThread() throws InterruptedException {
+		Thread thread;
+		ControlLoopScheduler.Registration registration;
+		getLock().lock();
+		try {
+			closeSpeedControl = true;
+			thread = speedControlThread;
+			registration = speedControlRegistration;
+		} finally {
+			getLock().unlock();
+		}
+		if (thread != null) {
+			thread.join();
+		}
+		if (registration != null) {
+			registration.cancel();
+			registration.awaitTermination();
+			// Unless the last tick has already ended it
+			if (alive) {
+				alive = false;
+				System.out.println("SpeedControl of " + vehicles + " terminated");
+				System.out.println();
+			}
 		}
+		assert (!alive);
+		// The state is only published at checkpoints, store where it stopped
+		checkpoint();
 	}
 
-	synchronized double getCurrentSpeedInModel() {
-		return currentSpeedInModel;
+	/**
+	 * @return the ticks and missed deadlines of the speed control, null if it was
+	 *         never started
+	 */
+	public TickStatistics getTickStatistics() {
+		return tickStatistics;
 	}
 
-	synchronized void setCurrentSpeedInModel(double currentSpeedInModel) {
-		this.currentSpeedInModel = currentSpeedInModel;
+	/**
+	 * @return in ms, the period of the speed control
+	 */
+	public int getTickPeriod() {
+		int tickPeriod = this.tickPeriod;
+		return tickPeriod > 0 ? tickPeriod : DEFAULT_TICK_PERIOD;
 	}
 
 	/**
-	 * Start the SpeedControl Thread of a Vehicle
+	 * Set the period of the speed control. A running speed control keeps its
+	 * period until it is started again.
 	 * 
-	 * @return Thread
-	 * @throws Exception - if there is already a Thread
+	 * @param tickPeriod - in ms
 	 */
-	synchronized public Thread startSpeedControlThread() throws Exception {
-		if (alive) {
-			throw new Exception("The TrainScope with Vehicles " + vehicles + " already runs a SpeedControl Thread");
-		}
-		// If there is no locomotive in the TrainScope, then the Scope can't drive any
-		// speed.
-		if (getLocomotives().isEmpty()) {
-			closeSpeedControl = true;
-			alive = false;
-		} else {
-			closeSpeedControl = false;
-			alive = true;
-		}
-
-		// Start SpeedControl Thread
-		Runnable speedControl = new SpeedControl(this);
-		speedControlThread = new Thread(speedControl);
-		speedControlThread.start();
-		return speedControlThread;
+	public void setTickPeriod(int tickPeriod) {
+		assert (tickPeriod > 0);
+		this.tickPeriod = tickPeriod;
 	}
 
-	public void closeSpeedControlThread() throws InterruptedException {
-		synchronized (this) {
-			closeSpeedControl = true;
+	/**
+	 * One step of the speed control: move the TrainScope by the time passed since
+	 * the last step and set the speed of its locomotives for the new position.
+	 */
+	private void tick() {
+		long now = System.nanoTime();
+		long passedTime = (now - lastTick) / 1000000;
+		// The fraction of a ms is passed with the next step
+		lastTick = lastTick + passedTime * 1000000;
+
+		getLock().lock();
+		try {
+			// UpdatePosition
+			updatePosition(passedTime);
+
+			// Set new Speed for the new Environment/Position
+			currentSpeedInModel = calculateMaxPossibleSpeed(passedTime);
+			for (Locomotive locomotive : getLocomotiveArray()) {
+				locomotive.setCurrentSpeed(currentSpeedInModel);
+			}
+			// Durch das setzten der Geschwindigkeit entsteht ein anderer Bremsweg
+			organizeBrakeCurveFront(front);
+		} finally {
+			getLock().unlock();
+		}
+		// Alle fnf Sekunden
+		if (now - lastInformation >= TimeUnit.MILLISECONDS.toNanos(INFORMATION_INTERVAL)) {
+			lastInformation = now;
+			printInformation();
+		}
+		if (now - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(StoreHandler.CHECKPOINT_INTERVAL)) {
+			lastCheckpoint = now;
+			checkpoint();
 		}
-		speedControlThread.join();
-		assert (!alive);
 	}
 
 	@Override
-	synchronized public void delete() throws Exception {
-		assert (closeSpeedControl);
-		assert (!alive);
-		for (Edge edge : this.enteredEdges) {
-			edge.leave(this);
+	public void delete() throws Exception {
+		getLock().lock();
+		try {
+			assert (closeSpeedControl);
+			assert (!alive);
+			for (Edge edge : this.enteredEdges) {
+				edge.leave(this);
+			}
+			StoreHandler.deleteObject(this);
+			front.delete();
+			back.delete();
+			brakeCurveFront.delete();
+			alive = false;
+		} finally {
+			getLock().unlock();
 		}
-		StoreHandler.deleteObject(this);
-		front.delete();
-		back.delete();
-		brakeCurveFront.delete();
-		alive = false;
 	}
 
-	synchronized BlockPoint getFront() {
-		return front;
+	ReentrantLock getLock() {
+		return ModelLock.get(this, LOCK);
+	}
+
+	BlockPoint getFront() {
+		getLock().lock();
+		try {
+			return front;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized BlockPoint getBack() {
-		return back;
+	BlockPoint getBack() {
+		getLock().lock();
+		try {
+			return back;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	double getBrakeAcceleration() {
@@ -322,45 +718,111 @@ public class TrainScope implements MySerializable {
 		return driveAcceleration;
 	}
 
-	synchronized public void printInformation() {
-		Iterator<Vehicle> iterator = this.iterator();
-		vehicles = iterator.next().getName();
-		while (iterator.hasNext()) {
-			vehicles += " # " + iterator.next().getName();
+	/**
+	 * @return the constraints of the current Vehicles, only computed again after
+	 *         they were invalidated
+	 */
+	private TrainScopeConstraints getConstraints() {
+		getLock().lock();
+		try {
+			if (constraints == null) {
+				constraints = new TrainScopeConstraints(getMaxSpeedOfVehicles(),
+						getMaxSpeedBecauseOfCurrentSpeedLimitOfLocomoitves(), brakeAcceleration, driveAcceleration);
+			}
+			return constraints;
+		} finally {
+			getLock().unlock();
 		}
+	}
 
-		System.out.println("TrainScope Message of " + vehicles + ":");
-		if (alive) {
-			System.out.println("      SpeedControl Thread is running");
-			System.out.println("      Speed: " + currentSpeedInModel + "m/s in the model");
-			System.out.println("             " + currentSpeedInModel * Main.SCALE + "m/s --- "
-					+ ((int) (currentSpeedInModel * Main.SCALE * 3.6)) + "km/h");
+	/**
+	 * Has to be called whenever a Vehicle joins or leaves the TrainScope, which
+	 * Vehicle.setTrainScope() does, and whenever the speed limit of one of its
+	 * locomotives changes.
+	 */
+	void invalidateConstraints() {
+		getLock().lock();
+		try {
+			constraints = null;
+			locomotiveArray = null;
+		} finally {
+			getLock().unlock();
 		}
-		System.out.println("      BrakeCurveFront: Object: " + brakeCurveFront.toString());
-		System.out.println("                       Position(" + brakeCurveFront.getPosition().getEdge().getOrigin()
-				+ "," + brakeCurveFront.getPosition().getOffset() + ")");
-		System.out.println("                       Propertie: " + brakeCurveFront.getProperties());
-
-		System.out.println("      Front Position:  Object: " + front.toString());
-		System.out.println("                       Position(" + front.getPosition().getEdge().getOrigin() + ","
-				+ front.getPosition().getOffset() + ") ");
-		System.out.println("                       Propertie: " + front.getProperties());
-
-		System.out.println("      Back Position:   Object: " + back.toString());
-		System.out.println("                       Position(" + back.getPosition().getEdge().getOrigin() + ","
-				+ back.getPosition().getOffset() + ") ");
-		System.out.println("                       Propertie: " + back.getProperties());
-		System.out.println();
+	}
 
+	/**
+	 * Mark the durable state of the TrainScope as dirty, so that the StoreHandler
+	 * writes it with the next flush. The front, back and brake curve are not
+	 * stored, they are restored from the TrainScopeState.
+	 */
+	void checkpoint() {
+		getLock().lock();
+		try {
+			publishState();
+			markDirty();
+			Iterator<Vehicle> iterator = this.iterator();
+			while (iterator.hasNext()) {
+				Vehicle vehicle = iterator.next();
+				vehicle.getMiddlePosition().markDirty();
+				if (vehicle instanceof MySerializable) {
+					((MySerializable) vehicle).markDirty();
+				}
+			}
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized List<Vehicle> getListOfVehicles() {
-		List<Vehicle> vehicles = new LinkedList<>();
-		Iterator<Vehicle> iterator = this.iterator();
-		while (iterator.hasNext()) {
-			vehicles.add(iterator.next());
+	public void printInformation() {
+		getLock().lock();
+		try {
+			Iterator<Vehicle> iterator = this.iterator();
+			vehicles = iterator.next().getName();
+			while (iterator.hasNext()) {
+				vehicles += " # " + iterator.next().getName();
+			}
+
+			System.out.println("TrainScope Message of " + vehicles + ":");
+			if (alive) {
+				System.out.println("      SpeedControl Thread is running");
+				System.out.println("      Speed: " + currentSpeedInModel + "m/s in the model");
+				System.out.println("             " + currentSpeedInModel * Main.SCALE + "m/s --- "
+						+ ((int) (currentSpeedInModel * Main.SCALE * 3.6)) + "km/h");
+				System.out.println("      Ticks: " + tickStatistics);
+			}
+			System.out.println("      BrakeCurveFront: Object: " + brakeCurveFront.toString());
+			System.out.println("                       Position(" + brakeCurveFront.getPosition().getEdge().getOrigin()
+					+ "," + brakeCurveFront.getPosition().getOffset() + ")");
+			System.out.println("                       Propertie: " + brakeCurveFront.getProperties());
+
+			System.out.println("      Front Position:  Object: " + front.toString());
+			System.out.println("                       Position(" + front.getPosition().getEdge().getOrigin() + ","
+					+ front.getPosition().getOffset() + ") ");
+			System.out.println("                       Propertie: " + front.getProperties());
+
+			System.out.println("      Back Position:   Object: " + back.toString());
+			System.out.println("                       Position(" + back.getPosition().getEdge().getOrigin() + ","
+					+ back.getPosition().getOffset() + ") ");
+			System.out.println("                       Propertie: " + back.getProperties());
+			System.out.println();
+
+		} finally {
+			getLock().unlock();
+		}
+	}
+
+	List<Vehicle> getListOfVehicles() {
+		getLock().lock();
+		try {
+			List<Vehicle> vehicles = new LinkedList<>();
+			Iterator<Vehicle> iterator = this.iterator();
+			while (iterator.hasNext()) {
+				vehicles.add(iterator.next());
+			}
+			return vehicles;
+		} finally {
+			getLock().unlock();
 		}
-		return vehicles;
 	}
 
 	/**
@@ -369,41 +831,99 @@ public class TrainScope implements MySerializable {
 	 * @param firstVehicle
 	 * @param secondVehicle
 	 */
-	synchronized static void decouple(Vehicle firstVehicle, Vehicle secondVehicle) {
-		// TODO
-		assert (false);
+	static void decouple(Vehicle firstVehicle, Vehicle secondVehicle) {
+		DECOUPLE_LOCK.lock();
+		try {
+			// TODO
+			assert (false);
+		} finally {
+			DECOUPLE_LOCK.unlock();
+		}
 	}
 
-	synchronized Vehicle getFirstVehicle() {
-		return firstVehicle;
+	Vehicle getFirstVehicle() {
+		getLock().lock();
+		try {
+			return firstVehicle;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized Vehicle getLastVehicle() {
-		return lastVehicle;
+	Vehicle getLastVehicle() {
+		getLock().lock();
+		try {
+			return lastVehicle;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	public HashSet<Locomotive> getLocomotives() {
 		return locomotives;
 	}
 
+	/**
+	 * The steps iterate over this copy of the locomotives, because an Iterator of
+	 * the HashSet would be allocated with every step.
+	 * 
+	 * @return the locomotives of the TrainScope
+	 */
+	private Locomotive[] getLocomotiveArray() {
+		getLock().lock();
+		try {
+			if (locomotiveArray == null || locomotiveArray.length != locomotives.size()) {
+				locomotiveArray = locomotives.toArray(new Locomotive[0]);
+			}
+			return locomotiveArray;
+		} finally {
+			getLock().unlock();
+		}
+	}
+
 	/**
 	 * This Method checks weather all Vehicles in the TrainScope have the
 	 * rightPosition respectively to each other
 	 * 
 	 * @return true - if everything seems to be right.
 	 */
-	synchronized boolean checkValid() {
-		if (firstVehicle == null || lastVehicle == null) {
-			return false;
-		}
-		Position helperPosition;
-		VehicleIterator iterator = this.iterator();
-		Vehicle currentVehicle = null;
-		double offset = 0;
-
-		while (iterator.hasNext()) {
-			currentVehicle = iterator.next();
-			offset += currentVehicle.getLengthInMeter() * 0.5;
+	boolean checkValid() {
+		getLock().lock();
+		try {
+			if (firstVehicle == null || lastVehicle == null) {
+				return false;
+			}
+			Position helperPosition;
+			VehicleIterator iterator = this.iterator();
+			Vehicle currentVehicle = null;
+			double offset = 0;
+
+			while (iterator.hasNext()) {
+				currentVehicle = iterator.next();
+				offset += currentVehicle.getLengthInMeter() * 0.5;
+				helperPosition = new Position(front.getPosition(), false);
+				switch (front.getProperties()) {
+				case BLOCK_ALL:
+					return false;
+				case BLOCK_NEGATIVE_DIRECTION:
+					helperPosition.setOffset(helperPosition.getOffset() - offset);
+					break;
+				case BLOCK_POSITIVE_DIRECTION:
+					helperPosition.setOffset(helperPosition.getOffset() + offset);
+					break;
+				}
+
+				if (!currentVehicle.getMiddlePosition().equals(helperPosition)) {
+					return false;
+				}
+				offset += currentVehicle.getLengthInMeter() * 0.5;
+
+			}
+
+			if (currentVehicle != lastVehicle) {
+				return false;
+			}
+
 			helperPosition = new Position(front.getPosition(), false);
 			switch (front.getProperties()) {
 			case BLOCK_ALL:
@@ -415,34 +935,14 @@ public class TrainScope implements MySerializable {
 				helperPosition.setOffset(helperPosition.getOffset() + offset);
 				break;
 			}
-
-			if (!currentVehicle.getMiddlePosition().equals(helperPosition)) {
+			if (!back.getPosition().equals(helperPosition)) {
 				return false;
 			}
-			offset += currentVehicle.getLengthInMeter() * 0.5;
 
+			return true;
+		} finally {
+			getLock().unlock();
 		}
-
-		if (currentVehicle != lastVehicle) {
-			return false;
-		}
-
-		helperPosition = new Position(front.getPosition(), false);
-		switch (front.getProperties()) {
-		case BLOCK_ALL:
-			return false;
-		case BLOCK_NEGATIVE_DIRECTION:
-			helperPosition.setOffset(helperPosition.getOffset() - offset);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			helperPosition.setOffset(helperPosition.getOffset() + offset);
-			break;
-		}
-		if (!back.getPosition().equals(helperPosition)) {
-			return false;
-		}
-
-		return true;
 	}
 
 	/**
@@ -451,66 +951,72 @@ public class TrainScope implements MySerializable {
 	 * @param newFront
 	 * @return length of the TrainScope.
 	 */
-	synchronized private double organizeVehicles(BlockPoint newFront) {
-		Position helperPosition;
-		VehicleIterator vehicleIterator = this.iterator();
-		Vehicle currentVehicle = null;
-		double offset = 0;
-		EdgeIterator edgeIterator = null;
-		EdgeIteratorObject currentEdge;
-		switch (newFront.getProperties()) {
-		case BLOCK_ALL:
-			// Dieser Fall darf nicht auftreten.
-			assert (false);
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			edgeIterator = front.getPosition().iterator(false);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			edgeIterator = front.getPosition().iterator(true);
-			break;
-		}
-		currentEdge = edgeIterator.next();
-
-		while (vehicleIterator.hasNext()) {
-			currentVehicle = vehicleIterator.next();
-			offset += currentVehicle.getLengthInMeter() * 0.5;
-			helperPosition = new Position(newFront.getPosition(), false);
+	private double organizeVehicles(BlockPoint newFront) {
+		getLock().lock();
+		try {
+			Position helperPosition;
+			Vehicle currentVehicle = null;
+			double offset = 0;
+			EdgeIterator edgeIterator = null;
+			EdgeIteratorObject currentEdge;
 			switch (newFront.getProperties()) {
 			case BLOCK_ALL:
 				// Dieser Fall darf nicht auftreten.
 				assert (false);
 				break;
 			case BLOCK_NEGATIVE_DIRECTION:
-				helperPosition.setOffset(helperPosition.getOffset() - offset);
+				edgeIterator = stepIterator.reset(front.getPosition(), false);
 				break;
 			case BLOCK_POSITIVE_DIRECTION:
-				helperPosition.setOffset(helperPosition.getOffset() + offset);
+				edgeIterator = stepIterator.reset(front.getPosition(), true);
 				break;
 			}
+			currentEdge = edgeIterator.next();
+
+			// Without a VehicleIterator, that would be allocated with every step
+			for (Vehicle vehicle = firstVehicle; vehicle != null; vehicle = vehicle.getPreviousVehicle()) {
+				currentVehicle = vehicle;
+				offset += currentVehicle.getLengthInMeter() * 0.5;
+				helperPosition = stepPosition;
+				helperPosition.setPosition(newFront.getPosition());
+				switch (newFront.getProperties()) {
+				case BLOCK_ALL:
+					// Dieser Fall darf nicht auftreten.
+					assert (false);
+					break;
+				case BLOCK_NEGATIVE_DIRECTION:
+					helperPosition.setOffset(helperPosition.getOffset() - offset);
+					break;
+				case BLOCK_POSITIVE_DIRECTION:
+					helperPosition.setOffset(helperPosition.getOffset() + offset);
+					break;
+				}
 
-			currentVehicle.getMiddlePosition().setPosition(helperPosition);
+				currentVehicle.getMiddlePosition().setPosition(helperPosition);
 
-			// Set countDirection of Vehicle by using the EdgeIterator
-			int i = 0;
-			while (currentEdge.getEdge() != currentVehicle.getMiddlePosition().getEdge()) {
-				currentEdge = edgeIterator.next();
-				i++;
-				// Es ist sehr unwarscheinlich, dass sich ein Fahrzeug sich ber 10 Edges
-				// erstreckt.
-				assert (i < 10);
-			}
-			if (currentEdge.isDirection()) {
-				currentVehicle.setCountDirection(false);
-			} else {
-				currentVehicle.setCountDirection(true);
-			}
+				// Set countDirection of Vehicle by using the EdgeIterator
+				int i = 0;
+				while (currentEdge.getEdge() != currentVehicle.getMiddlePosition().getEdge()) {
+					currentEdge = edgeIterator.next();
+					i++;
+					// Es ist sehr unwarscheinlich, dass sich ein Fahrzeug sich ber 10 Edges
+					// erstreckt.
+					assert (i < 10);
+				}
+				if (currentEdge.isDirection()) {
+					currentVehicle.setCountDirection(false);
+				} else {
+					currentVehicle.setCountDirection(true);
+				}
 
-			offset += currentVehicle.getLengthInMeter() * 0.5;
+				offset += currentVehicle.getLengthInMeter() * 0.5;
 
+			}
+			assert (currentVehicle == lastVehicle);
+			return offset;
+		} finally {
+			getLock().unlock();
 		}
-		assert (currentVehicle == lastVehicle);
-		return offset;
 	}
 
 	/**
@@ -519,48 +1025,52 @@ public class TrainScope implements MySerializable {
 	 * @param newFront
 	 * @param scopeLength
 	 */
-	synchronized private void organizeBack(BlockPoint newFront, double scopeLength) {
-		// Calculate Position of Back
-		Position newBackPosition = new Position(newFront.getPosition(), false);
-		EdgeIterator edgeIterator = null;
-		EdgeIteratorObject current = null;
-		switch (newFront.getProperties()) {
-		case BLOCK_ALL:
-			// Dieser Fall darf nicht auftreten
-			assert (false);
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			newBackPosition.setOffset(newBackPosition.getOffset() - scopeLength);
-			edgeIterator = newFront.getPosition().iterator(false);
-			current = edgeIterator.next();
-			assert (!current.isDirection());
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			newBackPosition.setOffset(newBackPosition.getOffset() + scopeLength);
-			edgeIterator = newFront.getPosition().iterator(true);
-			current = edgeIterator.next();
-			assert (current.isDirection());
-			break;
-		}
+	private void organizeBack(BlockPoint newFront, double scopeLength) {
+		getLock().lock();
+		try {
+			// Calculate Position of Back
+			Position newBackPosition = stepPosition;
+			newBackPosition.setPosition(newFront.getPosition());
+			EdgeIterator edgeIterator = null;
+			EdgeIteratorObject current = null;
+			switch (newFront.getProperties()) {
+			case BLOCK_ALL:
+				// Dieser Fall darf nicht auftreten
+				assert (false);
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				newBackPosition.setOffset(newBackPosition.getOffset() - scopeLength);
+				edgeIterator = stepIterator.reset(newFront.getPosition(), false);
+				current = edgeIterator.next();
+				assert (!current.isDirection());
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				newBackPosition.setOffset(newBackPosition.getOffset() + scopeLength);
+				edgeIterator = stepIterator.reset(newFront.getPosition(), true);
+				current = edgeIterator.next();
+				assert (current.isDirection());
+				break;
+			}
 
-		// Calculate Blocking direction of Back
-		while (current.getEdge() != newBackPosition.getEdge()) {
-			current = edgeIterator.next();
-		}
-		BlockPoint oldBack = back;
-		if (current.isDirection()) {
-			back = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newBackPosition);
-		} else {
-			back = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newBackPosition);
-		}
+			// Calculate Blocking direction of Back
+			while (current.getEdge() != newBackPosition.getEdge()) {
+				current = edgeIterator.next();
+			}
+			if (current.isDirection()) {
+				back.moveTo(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newBackPosition);
+			} else {
+				back.moveTo(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newBackPosition);
+			}
 
-		if (newFront != front) {
-			BlockPoint oldFront = front;
-			front = newFront;
-			oldFront.delete();
-		}
-		oldBack.delete();
+			if (newFront != front) {
+				BlockPoint oldFront = front;
+				front = newFront;
+				oldFront.delete();
+			}
 
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	private double calculateIntendedDistanceFrontToBrakeCurveFront() {
@@ -572,78 +1082,93 @@ public class TrainScope implements MySerializable {
 	 * 
 	 * @param newFront
 	 */
-	synchronized private void organizeBrakeCurveFront(BlockPoint newFront) {
-		// Distance to front is the BrakeDistance + ToleranceDistance
-		double distanceToFront = calculateIntendedDistanceFrontToBrakeCurveFront();
-		if (this.currentSpeedInModel == 0) {
-			assert distanceToFront == Main.TOLERANCE_DISTANCE;
-		}
+	private void organizeBrakeCurveFront(BlockPoint newFront) {
+		getLock().lock();
+		try {
+			// Distance to front is the BrakeDistance + ToleranceDistance
+			double distanceToFront = calculateIntendedDistanceFrontToBrakeCurveFront();
+			if (this.currentSpeedInModel == 0) {
+				assert distanceToFront == Main.TOLERANCE_DISTANCE;
+			}
 
-		Position newBrakeCurveFrontPosition = new Position(newFront.getPosition(), true);
-		EdgeIterator iterator = null;
-		switch (newFront.getProperties()) {
-		case BLOCK_ALL:
-			assert false;
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			iterator = newBrakeCurveFrontPosition.iterator(true);
-			newBrakeCurveFrontPosition.setOffset(newBrakeCurveFrontPosition.getOffset() + distanceToFront);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			iterator = newBrakeCurveFrontPosition.iterator(false);
-			newBrakeCurveFrontPosition.setOffset(newBrakeCurveFrontPosition.getOffset() - distanceToFront);
-			break;
-		}
-		EdgeIteratorObject current = iterator.next();
-		while (current.getEdge() != newBrakeCurveFrontPosition.getEdge()) {
-			current = iterator.next();
-		}
-		BlockPoint oldBrakeCurveFront = brakeCurveFront;
-		if (current.isDirection()) {
-			brakeCurveFront = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newBrakeCurveFrontPosition);
-		} else {
-			brakeCurveFront = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newBrakeCurveFrontPosition);
+			Position newBrakeCurveFrontPosition = stepPosition;
+			newBrakeCurveFrontPosition.setPosition(newFront.getPosition());
+			EdgeIterator iterator = null;
+			switch (newFront.getProperties()) {
+			case BLOCK_ALL:
+				assert false;
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				iterator = stepIterator.reset(newBrakeCurveFrontPosition, true);
+				newBrakeCurveFrontPosition.setOffset(newBrakeCurveFrontPosition.getOffset() + distanceToFront);
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				iterator = stepIterator.reset(newBrakeCurveFrontPosition, false);
+				newBrakeCurveFrontPosition.setOffset(newBrakeCurveFrontPosition.getOffset() - distanceToFront);
+				break;
+			}
+			EdgeIteratorObject current = iterator.next();
+			while (current.getEdge() != newBrakeCurveFrontPosition.getEdge()) {
+				current = iterator.next();
+			}
+			if (current.isDirection()) {
+				brakeCurveFront.moveTo(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newBrakeCurveFrontPosition);
+			} else {
+				brakeCurveFront.moveTo(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newBrakeCurveFrontPosition);
+			}
+		} finally {
+			getLock().unlock();
 		}
-		oldBrakeCurveFront.delete();
 	}
 
 	/**
 	 * Enter and Leave Edges that are used by the TrainScope
 	 */
-	synchronized private void organizeEnteredEdges() {
-		EdgeIterator iterator = null;
-		switch (brakeCurveFront.getProperties()) {
-		case BLOCK_ALL:
-			// Dieser Fall darf nicht auftreten
-			assert (false);
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			iterator = brakeCurveFront.getPosition().iterator(false);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			iterator = brakeCurveFront.getPosition().iterator(true);
-			break;
-		}
+	private void organizeEnteredEdges() {
+		getLock().lock();
+		try {
+			EdgeIterator iterator = null;
+			switch (brakeCurveFront.getProperties()) {
+			case BLOCK_ALL:
+				// Dieser Fall darf nicht auftreten
+				assert (false);
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				iterator = stepIterator.reset(brakeCurveFront.getPosition(), false);
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				iterator = stepIterator.reset(brakeCurveFront.getPosition(), true);
+				break;
+			}
 
-		EdgeIteratorObject current = null;
-		Set<Edge> oldEnteredEdges = new HashSet<>();
-		oldEnteredEdges.addAll(enteredEdges);
-		this.enteredEdges.clear();
+			EdgeIteratorObject current = null;
+			List<Edge> oldEnteredEdges = enteredEdges;
+			this.enteredEdges = spareEnteredEdges;
+			this.spareEnteredEdges = oldEnteredEdges;
+			this.enteredEdges.clear();
 
-		do {
-			current = iterator.next();
-			this.enteredEdges.add(current.getEdge());
-		} while (current.getEdge() != back.getPosition().getEdge());
+			do {
+				current = iterator.next();
+				if (!this.enteredEdges.contains(current.getEdge())) {
+					this.enteredEdges.add(current.getEdge());
+				}
+			} while (current.getEdge() != back.getPosition().getEdge());
 
-		// Enter all Edges that are used by this TrainScope
-		for (Edge edge : enteredEdges) {
-			edge.enter(this);
-		}
+			// Enter the Edges that are newly used by this TrainScope
+			for (int i = 0; i < enteredEdges.size(); i++) {
+				if (!oldEnteredEdges.contains(enteredEdges.get(i))) {
+					enteredEdges.get(i).enter(this);
+				}
+			}
 
-		// Leave Edges that are no longer in the set of enteredEdges
-		oldEnteredEdges.removeAll(enteredEdges);
-		for (Edge edge : oldEnteredEdges) {
-			edge.leave(this);
+			// Leave Edges that are no longer in the list of enteredEdges
+			for (int i = 0; i < oldEnteredEdges.size(); i++) {
+				if (!enteredEdges.contains(oldEnteredEdges.get(i))) {
+					oldEnteredEdges.get(i).leave(this);
+				}
+			}
+		} finally {
+			getLock().unlock();
 		}
 	}
 
@@ -651,18 +1176,23 @@ public class TrainScope implements MySerializable {
 	 * Update all positional information in the the TrainScope according to the
 	 * front.
 	 */
-	synchronized void organiseTrainScope(BlockPoint newFront) {
-
-		// organize all Middle Positions of the Vehicles
-		double scopeLength = organizeVehicles(newFront);
-		// organize the Back BlockPoint with the information about the length of the
-		// scope
-		organizeBack(newFront, scopeLength);
-		// set the brakeCurve BlockPoint
-		organizeBrakeCurveFront(newFront);
-		// Notify Edges that are covered by this TrainScope
-		organizeEnteredEdges();
-		assert (checkValid());
+	void organiseTrainScope(BlockPoint newFront) {
+		getLock().lock();
+		try {
+
+			// organize all Middle Positions of the Vehicles
+			double scopeLength = organizeVehicles(newFront);
+			// organize the Back BlockPoint with the information about the length of the
+			// scope
+			organizeBack(newFront, scopeLength);
+			// set the brakeCurve BlockPoint
+			organizeBrakeCurveFront(newFront);
+			// Notify Edges that are covered by this TrainScope
+			organizeEnteredEdges();
+			assert (checkValid());
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -768,72 +1298,94 @@ public class TrainScope implements MySerializable {
 		return accelerationDistance;
 	}
 
-	synchronized private double getMaxSpeedOfVehicles() {
-		double maxSpeed = Double.MAX_VALUE;
-		for (Vehicle vehicle : getListOfVehicles()) {
-			maxSpeed = Math.min(maxSpeed, vehicle.getMaxSpeedInRealMeterPerSecond() / (double) Main.SCALE);
+	/**
+	 * Iterates over all Vehicles, the speed control reads the result from
+	 * getConstraints()
+	 * 
+	 * @return in m/s in the model
+	 */
+	private double getMaxSpeedOfVehicles() {
+		getLock().lock();
+		try {
+			double maxSpeed = Double.MAX_VALUE;
+			for (Vehicle vehicle = firstVehicle; vehicle != null; vehicle = vehicle.getPreviousVehicle()) {
+				maxSpeed = Math.min(maxSpeed, vehicle.getMaxSpeedInRealMeterPerSecond() / (double) Main.SCALE);
+			}
+			assert (maxSpeed != Double.MAX_VALUE);
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
 		}
-		assert (maxSpeed != Double.MAX_VALUE);
-		return maxSpeed;
 	}
 
-	synchronized private double getMaxSpeedBecauseOfCurrentSpeedLimitOfLocomoitves() {
-		double maxSpeed = Double.MAX_VALUE;
-		for (Locomotive locomotive : this.locomotives) {
-			maxSpeed = Math.min(maxSpeed, locomotive.getCurrentSpeedLimit());
+	private double getMaxSpeedBecauseOfCurrentSpeedLimitOfLocomoitves() {
+		getLock().lock();
+		try {
+			double maxSpeed = Double.MAX_VALUE;
+			for (Locomotive locomotive : getLocomotiveArray()) {
+				maxSpeed = Math.min(maxSpeed, locomotive.getCurrentSpeedLimit());
+			}
+			assert (maxSpeed != Double.MAX_VALUE);
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
 		}
-		assert (maxSpeed != Double.MAX_VALUE);
-		return maxSpeed;
 	}
 
-	synchronized private double getMaxSpeedBecauseOfSpeedLimitOnEdges() {
-		double maxSpeed = Double.MAX_VALUE;
-		// MaxSpeed on Edges
-		EdgeIterator iterator = null;
-		switch (back.getProperties()) {
-		case BLOCK_ALL:
-			assert false;
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			iterator = back.getPosition().iterator(false);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			iterator = back.getPosition().iterator(true);
-			break;
-
-		}
-		EdgeIteratorObject current;
-		do {
-			current = iterator.next();
-			maxSpeed = Math.min(maxSpeed, current.getEdge().getMaxSpeed() / (double) Main.SCALE);
-		} while (current.getEdge() != front.getPosition().getEdge());
-		assert (current.getEdge() == front.getPosition().getEdge());
-
-		if (front.getPosition().getEdge() == brakeCurveFront.getPosition().getEdge()) {
-			assert (current.getEdge() == brakeCurveFront.getPosition().getEdge());
-			return maxSpeed;
-		}
+	private double getMaxSpeedBecauseOfSpeedLimitOnEdges() {
+		getLock().lock();
+		try {
+			double maxSpeed = Double.MAX_VALUE;
+			// MaxSpeed on Edges
+			EdgeIterator iterator = null;
+			switch (back.getProperties()) {
+			case BLOCK_ALL:
+				assert false;
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				iterator = stepIterator.reset(back.getPosition(), false);
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				iterator = stepIterator.reset(back.getPosition(), true);
+				break;
 
-		// MaxSpeed on Edges in the BrakeCurve
-		double border = accelerationDistance(currentSpeedInModel, 0, getBrakeAcceleration());
-		border += Main.EPSILON;
-		do {
-			current = iterator.next();
-			Position helperPosition;
-			if (current.isDirection()) {
-				helperPosition = new Position(current.getEdge(), 0, false);
-			} else {
-				helperPosition = new Position(current.getEdge(), current.getEdge().getLength() - Main.EPSILON, false);
+			}
+			EdgeIteratorObject current;
+			do {
+				current = iterator.next();
+				maxSpeed = Math.min(maxSpeed, current.getEdge().getMaxSpeed() / (double) Main.SCALE);
+			} while (current.getEdge() != front.getPosition().getEdge());
+			assert (current.getEdge() == front.getPosition().getEdge());
+
+			if (front.getPosition().getEdge() == brakeCurveFront.getPosition().getEdge()) {
+				assert (current.getEdge() == brakeCurveFront.getPosition().getEdge());
+				return maxSpeed;
 			}
 
-			double speed = brakeCurve(helperPosition.calculateDistanceTo(front.getPosition(), border),
-					helperPosition.getEdge().getMaxSpeed() / (double) Main.SCALE, getBrakeAcceleration());
-			maxSpeed = Math.min(maxSpeed, speed);
+			// MaxSpeed on Edges in the BrakeCurve
+			double border = accelerationDistance(currentSpeedInModel, 0, getBrakeAcceleration());
+			border += Main.EPSILON;
+			do {
+				current = iterator.next();
+				Position helperPosition = stepPosition;
+				if (current.isDirection()) {
+					helperPosition.set(current.getEdge(), 0);
+				} else {
+					helperPosition.set(current.getEdge(), current.getEdge().getLength() - Main.EPSILON);
+				}
+
+				double distance = helperPosition.calculateDistanceTo(front.getPosition(), border, distanceIterator);
+				double speed = brakeCurve(distance,
+						helperPosition.getEdge().getMaxSpeed() / (double) Main.SCALE, getBrakeAcceleration());
+				maxSpeed = Math.min(maxSpeed, speed);
 
-		} while (current.getEdge() != brakeCurveFront.getPosition().getEdge());
-		assert (current.getEdge() == brakeCurveFront.getPosition().getEdge());
+			} while (current.getEdge() != brakeCurveFront.getPosition().getEdge());
+			assert (current.getEdge() == brakeCurveFront.getPosition().getEdge());
 
-		return maxSpeed;
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -843,23 +1395,28 @@ public class TrainScope implements MySerializable {
 	 * @param position
 	 * @return
 	 */
-	synchronized private double getRemainingDistanceFromFrontTo(Position position) {
-		double border = calculateIntendedDistanceFrontToBrakeCurveFront();
-		border += Main.TOLERANCE_DISTANCE;
-		border += Main.TOLERANCE_DISTANCE;
-
-		switch (front.getProperties()) {
-		case BLOCK_ALL:
-			assert false;
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			return front.getPosition().calculateDistanceTo(position, border, true);
-		case BLOCK_POSITIVE_DIRECTION:
-			return front.getPosition().calculateDistanceTo(position, border, false);
-		}
-		assert (false);
-		return 0;
+	private double getRemainingDistanceFromFrontTo(Position position) {
+		getLock().lock();
+		try {
+			double border = calculateIntendedDistanceFrontToBrakeCurveFront();
+			border += Main.TOLERANCE_DISTANCE;
+			border += Main.TOLERANCE_DISTANCE;
+
+			switch (front.getProperties()) {
+			case BLOCK_ALL:
+				assert false;
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				return front.getPosition().calculateDistanceTo(position, border, true, distanceIterator);
+			case BLOCK_POSITIVE_DIRECTION:
+				return front.getPosition().calculateDistanceTo(position, border, false, distanceIterator);
+			}
+			assert (false);
+			return 0;
 
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -868,138 +1425,170 @@ public class TrainScope implements MySerializable {
 	 * @param block
 	 * @return
 	 */
-	synchronized private double getMaxSpeedInOrderToBrakeUntil(Position position) {
-		double remainingBrakeDistance = getRemainingDistanceFromFrontTo(position) - Main.TOLERANCE_DISTANCE;
+	private double getMaxSpeedInOrderToBrakeUntil(Position position) {
+		getLock().lock();
+		try {
+			double remainingBrakeDistance = getRemainingDistanceFromFrontTo(position) - Main.TOLERANCE_DISTANCE;
 
-		double maxSpeed = brakeCurve(remainingBrakeDistance, 0, getBrakeAcceleration());
+			double maxSpeed = brakeCurve(remainingBrakeDistance, 0, getBrakeAcceleration());
 
-		return maxSpeed;
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
 	 * Helper Method for getMaxSpeedBecauseOfBlockPoints()
 	 * 
 	 * @param block
+	 * @param properties - of the block when it was copied from its Edge
+	 * @param position   - of the block when it was copied from its Edge
 	 * @return maxSpeed - calculated with brakeCurve
 	 */
-	synchronized private double getMaxSpeedBecauseOfTheSpecificBlockPoint(BlockPoint block,
-			EdgeIteratorObject current) {
+	private double getMaxSpeedBecauseOfTheSpecificBlockPoint(BlockPoint block, BlockPointProperties properties,
+			Position position, EdgeIteratorObject current) {
+		getLock().lock();
+		try {
 
-		assert block.getPosition().getEdge() == current.getEdge();
-		if (block == brakeCurveFront) {
+			assert position.getEdge() == current.getEdge();
+			if (block == brakeCurveFront) {
 
-			/*
-			 * Wenn BrakeCurve Front nher an der Front ist, als eigentlich vorgesehen, dann
-			 * entwickelt sich diser BlockPoint auch zum "Hindernis". Dieser Fall tritt auf,
-			 * wenn der BrakeCurveFront aus verschiedenen Grnden nicht so weit nach vorne
-			 * "geschoben" werden kann wie eigentlich erwartet. Z.B. bei einer Switch, nicht
-			 * verbundene Nodes, Bumper, etc.
-			 */
-			double intendedDistance = calculateIntendedDistanceFrontToBrakeCurveFront();
-			if (intendedDistance > getRemainingDistanceFromFrontTo(brakeCurveFront.getPosition()) + Main.EPSILON) {
-				return getMaxSpeedInOrderToBrakeUntil(brakeCurveFront.getPosition());
-			} else {
-				return Double.MAX_VALUE;
+				/*
+				 * Wenn BrakeCurve Front nher an der Front ist, als eigentlich vorgesehen, dann
+				 * entwickelt sich diser BlockPoint auch zum "Hindernis". Dieser Fall tritt auf,
+				 * wenn der BrakeCurveFront aus verschiedenen Grnden nicht so weit nach vorne
+				 * "geschoben" werden kann wie eigentlich erwartet. Z.B. bei einer Switch, nicht
+				 * verbundene Nodes, Bumper, etc.
+				 */
+				double intendedDistance = calculateIntendedDistanceFrontToBrakeCurveFront();
+				if (intendedDistance > getRemainingDistanceFromFrontTo(brakeCurveFront.getPosition()) + Main.EPSILON) {
+					return getMaxSpeedInOrderToBrakeUntil(brakeCurveFront.getPosition());
+				} else {
+					return Double.MAX_VALUE;
+				}
 			}
-		}
 
-		// BlockPoints werden erst dann zum "Hinderniss", wenn sie in die Edge in die
-		// richtige Richtung sperren.
-		switch (block.getProperties()) {
-		case BLOCK_ALL:
-			return getMaxSpeedInOrderToBrakeUntil(block.getPosition());
-		case BLOCK_NEGATIVE_DIRECTION:
-			if (!current.isDirection()) {
-				return getMaxSpeedInOrderToBrakeUntil(block.getPosition());
-			}
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			if (current.isDirection()) {
-				return getMaxSpeedInOrderToBrakeUntil(block.getPosition());
+			// BlockPoints werden erst dann zum "Hinderniss", wenn sie in die Edge in die
+			// richtige Richtung sperren.
+			switch (properties) {
+			case BLOCK_ALL:
+				return getMaxSpeedInOrderToBrakeUntil(position);
+			case BLOCK_NEGATIVE_DIRECTION:
+				if (!current.isDirection()) {
+					return getMaxSpeedInOrderToBrakeUntil(position);
+				}
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				if (current.isDirection()) {
+					return getMaxSpeedInOrderToBrakeUntil(position);
+				}
+				break;
 			}
-			break;
-		}
-		return Double.MAX_VALUE;
+			return Double.MAX_VALUE;
 
+		} finally {
+			getLock().unlock();
+		}
 	}
 
-	synchronized private boolean brakeCurveFrontIsBehindFront() {
-		assert brakeCurveFront.getPosition().getEdge() == front.getPosition().getEdge();
-		switch (front.getProperties()) {
-		case BLOCK_ALL:
-			assert false;
-			return false;
-		case BLOCK_NEGATIVE_DIRECTION:
-			if (brakeCurveFront.getPosition().getOffset() <= front.getPosition().getOffset()) {
-				return true;
-			}
-			return false;
-		case BLOCK_POSITIVE_DIRECTION:
-			if (brakeCurveFront.getPosition().getOffset() >= front.getPosition().getOffset()) {
-				return true;
+	private boolean brakeCurveFrontIsBehindFront() {
+		getLock().lock();
+		try {
+			assert brakeCurveFront.getPosition().getEdge() == front.getPosition().getEdge();
+			switch (front.getProperties()) {
+			case BLOCK_ALL:
+				assert false;
+				return false;
+			case BLOCK_NEGATIVE_DIRECTION:
+				if (brakeCurveFront.getPosition().getOffset() <= front.getPosition().getOffset()) {
+					return true;
+				}
+				return false;
+			case BLOCK_POSITIVE_DIRECTION:
+				if (brakeCurveFront.getPosition().getOffset() >= front.getPosition().getOffset()) {
+					return true;
+				}
+				return false;
 			}
 			return false;
+		} finally {
+			getLock().unlock();
 		}
-		return false;
 	}
 
-	synchronized private double getMaxSpeedBecauseOfBlockPoints() {
-		double maxSpeed = Double.MAX_VALUE;
-		Iterator<EdgeIteratorObject> iterator = null;
-		EdgeIteratorObject current = null;
-		switch (front.getProperties()) {
-		case BLOCK_ALL:
-			assert false;
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			iterator = front.getPosition().iterator(true);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			iterator = front.getPosition().iterator(false);
-			break;
-		}
-
-		boolean brakeCurveFrontReached = false;
-		assert (iterator.hasNext());
-		current = iterator.next();
-		for (BlockPoint block : current.getEdge().getBlockPoints()) {
-
-			if (block == brakeCurveFront && brakeCurveFrontIsBehindFront()) {
-				/*
-				 * Sonderfall: bei einer Zyklischen Strecke kommt es vor, dass ab einer
-				 * bestimmten Geschwindigkeit die BrakeCurveFront hinter Back stehen kann. Das
-				 * tritt auf, sobald der Bremsweg lnger als die Zyklische Strecke wird. In
-				 * diesem Fall sind beide auf der gleichen Edge, was dazu fhrt, dass die while
-				 * Schleife frhzeitig abgebrochen wrde, wenn man diesen Fall nicht beachtet.
-				 */
-			} else if (block == back) {
-				// Do Nothing
-			} else {
-				maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfTheSpecificBlockPoint(block, current));
-				if (block == brakeCurveFront) {
-					brakeCurveFrontReached = true;
-				}
+	private double getMaxSpeedBecauseOfBlockPoints() {
+		getLock().lock();
+		try {
+			double maxSpeed = Double.MAX_VALUE;
+			Iterator<EdgeIteratorObject> iterator = null;
+			EdgeIteratorObject current = null;
+			switch (front.getProperties()) {
+			case BLOCK_ALL:
+				assert false;
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				iterator = stepIterator.reset(front.getPosition(), true);
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				iterator = stepIterator.reset(front.getPosition(), false);
+				break;
 			}
-		}
 
-		/*
-		 * Sobald der vorderste Punkt der Bremskurve erreicht wird, ist kein Hinderniss
-		 * mehr im Weg, das den Zug zum Bremsen veranlassen wrde und Sobald ein
-		 * BlockPoint im Weg steht, wird maxSpeed wohl nicht mehr Double.MAX_VALUE
-		 * besitzen
-		 */
-		while (!brakeCurveFrontReached && maxSpeed == Double.MAX_VALUE) {
+			boolean brakeCurveFrontReached = false;
 			assert (iterator.hasNext());
 			current = iterator.next();
-			for (BlockPoint block : current.getEdge().getBlockPoints()) {
-				maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfTheSpecificBlockPoint(block, current));
-				if (block == brakeCurveFront) {
-					brakeCurveFrontReached = true;
+			// The BlockPoints of other TrainScopes move, so only their copies are read
+			BlockPointBuffer blocks = blockPointBuffer;
+			current.getEdge().copyBlockPoints(blocks);
+			for (int i = 0; i < blocks.size(); i++) {
+				BlockPoint block = blocks.getBlockPoint(i);
+
+				if (block == brakeCurveFront && brakeCurveFrontIsBehindFront()) {
+					/*
+					 * Sonderfall: bei einer Zyklischen Strecke kommt es vor, dass ab einer
+					 * bestimmten Geschwindigkeit die BrakeCurveFront hinter Back stehen kann. Das
+					 * tritt auf, sobald der Bremsweg lnger als die Zyklische Strecke wird. In
+					 * diesem Fall sind beide auf der gleichen Edge, was dazu fhrt, dass die while
+					 * Schleife frhzeitig abgebrochen wrde, wenn man diesen Fall nicht beachtet.
+					 */
+				} else if (block == back) {
+					// Do Nothing
+				} else {
+					blockPointPosition.set(current.getEdge(), blocks.getOffset(i));
+					maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfTheSpecificBlockPoint(block, blocks.getProperties(i),
+							blockPointPosition, current));
+					if (block == brakeCurveFront) {
+						brakeCurveFrontReached = true;
+					}
 				}
 			}
-		}
 
-		return maxSpeed;
+			/*
+			 * Sobald der vorderste Punkt der Bremskurve erreicht wird, ist kein Hinderniss
+			 * mehr im Weg, das den Zug zum Bremsen veranlassen wrde und Sobald ein
+			 * BlockPoint im Weg steht, wird maxSpeed wohl nicht mehr Double.MAX_VALUE
+			 * besitzen
+			 */
+			while (!brakeCurveFrontReached && maxSpeed == Double.MAX_VALUE) {
+				assert (iterator.hasNext());
+				current = iterator.next();
+				current.getEdge().copyBlockPoints(blocks);
+				for (int i = 0; i < blocks.size(); i++) {
+					BlockPoint block = blocks.getBlockPoint(i);
+					blockPointPosition.set(current.getEdge(), blocks.getOffset(i));
+					maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfTheSpecificBlockPoint(block, blocks.getProperties(i),
+							blockPointPosition, current));
+					if (block == brakeCurveFront) {
+						brakeCurveFrontReached = true;
+					}
+				}
+			}
+
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -1008,25 +1597,31 @@ public class TrainScope implements MySerializable {
 	 * 
 	 * @return maxSpeed in m/s in the model
 	 */
-	synchronized private double calculateMaxPossibleSpeed(long passedTime) {
-
-		double maxSpeed = this.currentSpeedInModel;
-		// MaxSpeed after positive acceleration
-		maxSpeed = maxSpeed * Main.SCALE;
-		maxSpeed += getDriveAcceleration() * ((double) passedTime / 1000.0);
-		maxSpeed = maxSpeed / (double) Main.SCALE;
-
-		// MaxSpeed because of maxSpeed of a Vehicle
-		maxSpeed = Math.min(maxSpeed, getMaxSpeedOfVehicles());
-		// MaxSpeed because of DCC Limit of Locomotive
-		maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfCurrentSpeedLimitOfLocomoitves());
-		// MaxSpeed because speedLimit on Edges
-		maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfSpeedLimitOnEdges());
-		// MexSpeed because of BlockPoints
-		maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfBlockPoints());
-
-		assert (maxSpeed < 100);
-		return maxSpeed;
+	private double calculateMaxPossibleSpeed(long passedTime) {
+		getLock().lock();
+		try {
+
+			TrainScopeConstraints constraints = getConstraints();
+			double maxSpeed = this.currentSpeedInModel;
+			// MaxSpeed after positive acceleration
+			maxSpeed = maxSpeed * Main.SCALE;
+			maxSpeed += constraints.getDriveAcceleration() * ((double) passedTime / 1000.0);
+			maxSpeed = maxSpeed / (double) Main.SCALE;
+
+			// MaxSpeed because of maxSpeed of a Vehicle
+			maxSpeed = Math.min(maxSpeed, constraints.getMaxSpeedOfVehicles());
+			// MaxSpeed because of DCC Limit of Locomotive
+			maxSpeed = Math.min(maxSpeed, constraints.getMaxSpeedOfLocomotives());
+			// MaxSpeed because speedLimit on Edges
+			maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfSpeedLimitOnEdges());
+			// MexSpeed because of BlockPoints
+			maxSpeed = Math.min(maxSpeed, getMaxSpeedBecauseOfBlockPoints());
+
+			assert (maxSpeed < 100);
+			return maxSpeed;
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
@@ -1036,50 +1631,60 @@ public class TrainScope implements MySerializable {
 	 * @param passedTime - the time traveled.
 	 * @return the new front.
 	 */
-	synchronized private BlockPoint updateFront(long passedTime) {
-		double distanceTraveled = ((double) passedTime / 1000.0) * this.currentSpeedInModel;
-
-		// Set Front
-		Position newFrontPosition = new Position(front.getPosition(), true);
-		EdgeIterator iterator = null;
-		switch (front.getProperties()) {
-		case BLOCK_ALL:
-			assert (false);
-			break;
-		case BLOCK_NEGATIVE_DIRECTION:
-			iterator = newFrontPosition.iterator(true);
-			newFrontPosition.setOffset(newFrontPosition.getOffset() + distanceTraveled);
-			break;
-		case BLOCK_POSITIVE_DIRECTION:
-			iterator = newFrontPosition.iterator(false);
-			newFrontPosition.setOffset(newFrontPosition.getOffset() - distanceTraveled);
-			break;
-		default:
-			break;
-		}
-		BlockPoint oldFront = front;
-		EdgeIteratorObject current = iterator.next();
-		while (current.getEdge() != newFrontPosition.getEdge()) {
-			current = iterator.next();
-		}
-		if (current.isDirection()) {
-			front = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition);
-		} else {
-			front = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition);
+	private BlockPoint updateFront(long passedTime) {
+		getLock().lock();
+		try {
+			double distanceTraveled = ((double) passedTime / 1000.0) * this.currentSpeedInModel;
+
+			// Set Front
+			Position newFrontPosition = stepPosition;
+			newFrontPosition.setPosition(front.getPosition());
+			EdgeIterator iterator = null;
+			switch (front.getProperties()) {
+			case BLOCK_ALL:
+				assert (false);
+				break;
+			case BLOCK_NEGATIVE_DIRECTION:
+				iterator = stepIterator.reset(newFrontPosition, true);
+				newFrontPosition.setOffset(newFrontPosition.getOffset() + distanceTraveled);
+				break;
+			case BLOCK_POSITIVE_DIRECTION:
+				iterator = stepIterator.reset(newFrontPosition, false);
+				newFrontPosition.setOffset(newFrontPosition.getOffset() - distanceTraveled);
+				break;
+			default:
+				break;
+			}
+			EdgeIteratorObject current = iterator.next();
+			while (current.getEdge() != newFrontPosition.getEdge()) {
+				current = iterator.next();
+			}
+			if (current.isDirection()) {
+				front.moveTo(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition);
+			} else {
+				front.moveTo(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition);
+			}
+			return front;
+		} finally {
+			getLock().unlock();
 		}
-		oldFront.delete();
-		return front;
 	}
 
-	synchronized private void updatePosition(long passedTime) {
-		// Calculate new Front
-		BlockPoint newFront = updateFront(passedTime);
-		// organize TrainScope
-		organiseTrainScope(newFront);
+	private void updatePosition(long passedTime) {
+		getLock().lock();
+		try {
+			// Calculate new Front
+			BlockPoint newFront = updateFront(passedTime);
+			// organize TrainScope
+			organiseTrainScope(newFront);
+		} finally {
+			getLock().unlock();
+		}
 	}
 
 	/**
-	 * Each TrainScope has a speed control Thread that controls the behavior.
+	 * Each TrainScope has a speed control that controls the behavior. It runs in
+	 * its own Thread or is ticked by the ControlLoopScheduler.
 	 * 
 	 * @author David Lieb
 	 * @author david.lieb.00@gmail.com
@@ -1109,35 +1714,28 @@ public class TrainScope implements MySerializable {
 			speedControlThread = Thread.currentThread();
 			printStartMessage();
 
-			int sleepIntervall = 100;
-			long lastTime = System.currentTimeMillis();
-			long currentTime;
+			long period = TimeUnit.MILLISECONDS.toNanos(getTickPeriod());
+			ControlLoopScheduler.OverrunPolicy policy = OVERRUN_POLICY;
+			// The deadlines are a fixed grid, so the time of the ticks does not add up
+			long deadline = System.nanoTime() + period;
 
 			while (!scope.getLocomotives().isEmpty() && !closeSpeedControl) {
 				try {
 					// Time Pause
-					Thread.sleep(sleepIntervall);
-					currentTime = System.currentTimeMillis();
-					long passedTime = currentTime - lastTime;
-					lastTime = currentTime;
-
-					synchronized (this.scope) {
-						// UpdatePosition
-						updatePosition(passedTime);
-
-						// Set new Speed for the new Environment/Position
-						currentSpeedInModel = calculateMaxPossibleSpeed(passedTime);
-						for (Locomotive locomotive : locomotives) {
-							locomotive.setCurrentSpeed(currentSpeedInModel);
-						}
-						// Durch das setzten der Geschwindigkeit entsteht ein anderer Bremsweg
-						organizeBrakeCurveFront(front);
-						// Alle fnf Sekunden
-						
+					long delay = deadline - System.nanoTime();
+					if (delay > 0) {
+						TimeUnit.NANOSECONDS.sleep(delay);
 					}
-					if (currentTime % 5000 < passedTime) {
-						printInformation();
+					long start = System.nanoTime();
+					deadline = ControlLoopScheduler.overrun(deadline, period, start, policy, tickStatistics);
+					try {
+						scope.tick();
+					} catch (RuntimeException e) {
+						// A failed tick must not end the speed control, like in the ControlLoopScheduler
+						e.printStackTrace();
 					}
+					tickStatistics.recordTick(System.nanoTime() - start);
+					deadline = deadline + period;
 				} catch (InterruptedException e) {
 					e.printStackTrace();
 				}
@@ -1145,5 +1743,18 @@ public class TrainScope implements MySerializable {
 			alive = false;
 			printEndMessage();
 		}
+
+		/**
+		 * Called by the ControlLoopScheduler every tick period
+		 */
+		private void tick() {
+			if (scope.getLocomotives().isEmpty() || closeSpeedControl) {
+				speedControlRegistration.cancel();
+				alive = false;
+				printEndMessage();
+				return;
+			}
+			scope.tick();
+		}
 	}
 }
@@ -0,0 +1,51 @@
+package modelling;
+
+/**
+ * The limits of a TrainScope that only depend on its Vehicles. They change
+ * with coupling, decoupling and the speed limits of the locomotives, not while
+ * the TrainScope drives, so the speed control reads them from this record
+ * instead of iterating over all Vehicles in every step.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+final class TrainScopeConstraints {
+
+	private final double maxSpeedOfVehicles;
+	private final double maxSpeedOfLocomotives;
+	private final double brakeAcceleration;
+	private final double driveAcceleration;
+
+	/**
+	 * @param maxSpeedOfVehicles    - in m/s in the model, the smallest max speed
+	 *                              of all Vehicles
+	 * @param maxSpeedOfLocomotives - in m/s in the model, the smallest current
+	 *                              speed limit of all locomotives
+	 * @param brakeAcceleration     - in m/s^2 in reality
+	 * @param driveAcceleration     - in m/s^2 in reality
+	 */
+	TrainScopeConstraints(double maxSpeedOfVehicles, double maxSpeedOfLocomotives, double brakeAcceleration,
+			double driveAcceleration) {
+		this.maxSpeedOfVehicles = maxSpeedOfVehicles;
+		this.maxSpeedOfLocomotives = maxSpeedOfLocomotives;
+		this.brakeAcceleration = brakeAcceleration;
+		this.driveAcceleration = driveAcceleration;
+	}
+
+	double getMaxSpeedOfVehicles() {
+		return maxSpeedOfVehicles;
+	}
+
+	double getMaxSpeedOfLocomotives() {
+		return maxSpeedOfLocomotives;
+	}
+
+	double getBrakeAcceleration() {
+		return brakeAcceleration;
+	}
+
+	double getDriveAcceleration() {
+		return driveAcceleration;
+	}
+}
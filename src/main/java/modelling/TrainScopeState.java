@@ -0,0 +1,81 @@
+package modelling;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import main.StoreInput;
+import main.StoreOutput;
+
+/**
+ * The durable state of a TrainScope at a point in time. A TrainScope publishes
+ * a new TrainScopeState at every checkpoint of its SpeedControl. The
+ * StoreHandler only stores this state, so it never reads a TrainScope that is
+ * changed at the same time. All other positional information is restored from
+ * it after loading.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+final class TrainScopeState implements Serializable {
+
+	private static final long serialVersionUID = -2273470981361420946L;
+	private final Edge frontEdge;
+	private final double frontOffset;
+	private final BlockPointProperties frontProperties;
+	private final double currentSpeedInModel;
+	private final Status status;
+
+	TrainScopeState(BlockPoint front, double currentSpeedInModel, Status status) {
+		this(front.getPosition().getEdge(), front.getPosition().getOffset(), front.getProperties(),
+				currentSpeedInModel, status);
+	}
+
+	private TrainScopeState(Edge frontEdge, double frontOffset, BlockPointProperties frontProperties,
+			double currentSpeedInModel, Status status) {
+		this.frontEdge = frontEdge;
+		this.frontOffset = frontOffset;
+		this.frontProperties = frontProperties;
+		this.currentSpeedInModel = currentSpeedInModel;
+		this.status = status;
+	}
+
+	/**
+	 * The state is written as a part of its TrainScope, it has no id of its own.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	void writeTo(StoreOutput out) throws IOException {
+		out.writeReference(frontEdge);
+		out.writeDouble(frontOffset);
+		out.writeEnum(frontProperties);
+		out.writeDouble(currentSpeedInModel);
+		out.writeEnum(status);
+	}
+
+	static TrainScopeState readFrom(StoreInput in) throws IOException {
+		return new TrainScopeState(in.readReference(Edge.class), in.readDouble(),
+				in.readEnum(BlockPointProperties.class), in.readDouble(), in.readEnum(Status.class));
+	}
+
+	Edge getFrontEdge() {
+		return frontEdge;
+	}
+
+	double getFrontOffset() {
+		return frontOffset;
+	}
+
+	BlockPointProperties getFrontProperties() {
+		return frontProperties;
+	}
+
+	double getCurrentSpeedInModel() {
+		return currentSpeedInModel;
+	}
+
+	Status getStatus() {
+		return status;
+	}
+}
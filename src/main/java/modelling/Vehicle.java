@@ -1,8 +1,13 @@
 package modelling;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.locks.ReentrantLock;
 
+import main.BinaryStorable;
 import main.Main;
+import main.StoreInput;
+import main.StoreOutput;
 import modelling.Edge.EdgeIterator;
 import modelling.Edge.EdgeIteratorObject;
 
@@ -13,12 +18,12 @@ import modelling.Edge.EdgeIteratorObject;
  * @author david.lieb.00@gmail.com
  * @version 10.05.2021
  */
-public abstract class Vehicle implements Serializable {
+public abstract class Vehicle implements Serializable, BinaryStorable {
 
 	private static final long serialVersionUID = 3904414231848213575L;
-	private final String name;
-	private final double lengthInMeter;
-	private final double maxSpeedInRealMeterPerSecond;
+	private String name;
+	private double lengthInMeter;
+	private double maxSpeedInRealMeterPerSecond;
 	private TrainScope trainScope;
 	private Vehicle previousVehicle;
 	private Vehicle nextVehicle;
@@ -37,6 +42,63 @@ public abstract class Vehicle implements Serializable {
 		this.trainScope = new TrainScope(this);
 	}
 
+	/**
+	 * An empty Vehicle, that is read by readFrom()
+	 */
+	Vehicle() {
+	}
+
+	@Override
+	public void writeTo(StoreOutput out) throws IOException {
+		TrainScope scope = lockTrainScope();
+		try {
+			out.writeString(name);
+			out.writeDouble(lengthInMeter);
+			out.writeDouble(maxSpeedInRealMeterPerSecond);
+			out.writeReference(trainScope);
+			out.writeReference(previousVehicle);
+			out.writeReference(nextVehicle);
+			out.writeReference(middlePosition);
+			out.writeBoolean(countDirection);
+		} finally {
+			if (scope != null) {
+				scope.getLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * The coupling is guarded by the TrainScope, which may change until it is
+	 * locked. The TrainScope is stored before the constructor of the Vehicle has
+	 * set it, so it may already write the Vehicle.
+	 * 
+	 * @return the locked TrainScope, null while the Vehicle is constructed
+	 */
+	private TrainScope lockTrainScope() {
+		TrainScope scope = trainScope;
+		while (scope != null) {
+			scope.getLock().lock();
+			if (scope == trainScope) {
+				return scope;
+			}
+			scope.getLock().unlock();
+			scope = trainScope;
+		}
+		return null;
+	}
+
+	@Override
+	public void readFrom(StoreInput in) throws IOException {
+		name = in.readString();
+		lengthInMeter = in.readDouble();
+		maxSpeedInRealMeterPerSecond = in.readDouble();
+		trainScope = in.readReference(TrainScope.class);
+		previousVehicle = in.readReference(Vehicle.class);
+		nextVehicle = in.readReference(Vehicle.class);
+		middlePosition = in.readReference(Position.class);
+		countDirection = in.readBoolean();
+	}
+
 	double getLengthInMeter() {
 		return lengthInMeter;
 	}
@@ -49,9 +111,26 @@ public abstract class Vehicle implements Serializable {
 		return trainScope;
 	}
 
+	/**
+	 * Move the Vehicle into another TrainScope. Both TrainScopes compute their
+	 * constraints again, the old one has lost the Vehicle and the new one has
+	 * gained it.
+	 * 
+	 * @param trainScope
+	 */
 	void setTrainScope(TrainScope trainScope) {
-		synchronized (trainScope) {
+		TrainScope oldTrainScope;
+		trainScope.getLock().lock();
+		try {
+			oldTrainScope = this.trainScope;
 			this.trainScope = trainScope;
+			trainScope.invalidateConstraints();
+		} finally {
+			trainScope.getLock().unlock();
+		}
+		// Never lock two TrainScopes at once
+		if (oldTrainScope != null && oldTrainScope != trainScope) {
+			oldTrainScope.invalidateConstraints();
 		}
 	}
 
@@ -87,7 +166,10 @@ public abstract class Vehicle implements Serializable {
 	 * @param newPosition
 	 */
 	void updateMiddlePosition(Position newPosition) {
-		synchronized (trainScope) {
+		// The TrainScope may be reorganized while it is locked
+		ReentrantLock lock = trainScope.getLock();
+		lock.lock();
+		try {
 
 			double differenceIntoCountDirection = this.middlePosition.calculateDistanceTo(newPosition,
 					Main.TOLERANCE_DISTANCE * 10, countDirection);
@@ -108,12 +190,12 @@ public abstract class Vehicle implements Serializable {
 					break;
 				case BLOCK_NEGATIVE_DIRECTION:
 					newFrontPosition = new Position(this.trainScope.getFront().getPosition().getEdge(),
-							this.trainScope.getFront().getPosition().getOffset() + differenceIntoCountDirection);
+							this.trainScope.getFront().getPosition().getOffset() + differenceIntoCountDirection, false);
 					iterator = this.trainScope.getFront().getPosition().iterator(true);
 					break;
 				case BLOCK_POSITIVE_DIRECTION:
 					newFrontPosition = new Position(this.trainScope.getFront().getPosition().getEdge(),
-							this.trainScope.getFront().getPosition().getOffset() - differenceIntoCountDirection);
+							this.trainScope.getFront().getPosition().getOffset() - differenceIntoCountDirection, false);
 					iterator = this.trainScope.getFront().getPosition().iterator(false);
 					break;
 				}
@@ -124,9 +206,9 @@ public abstract class Vehicle implements Serializable {
 				}while(current.getEdge() != newFrontPosition.getEdge());
 				
 				if(current.isDirection()) {
-					newFront = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition);
+					newFront = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition, false);
 				}else {
-					newFront = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition);
+					newFront = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition, false);
 				}
 				
 			} else if (differenceIntoCountDirection > differenceAgainstCountDirection) {
@@ -138,12 +220,12 @@ public abstract class Vehicle implements Serializable {
 					break;
 				case BLOCK_NEGATIVE_DIRECTION:
 					newFrontPosition = new Position(this.trainScope.getFront().getPosition().getEdge(),
-							this.trainScope.getFront().getPosition().getOffset() - differenceAgainstCountDirection);
+							this.trainScope.getFront().getPosition().getOffset() - differenceAgainstCountDirection, false);
 					iterator = this.trainScope.getFront().getPosition().iterator(false);
 					break;
 				case BLOCK_POSITIVE_DIRECTION:
 					newFrontPosition = new Position(this.trainScope.getFront().getPosition().getEdge(),
-							this.trainScope.getFront().getPosition().getOffset() + differenceAgainstCountDirection);
+							this.trainScope.getFront().getPosition().getOffset() + differenceAgainstCountDirection, false);
 					iterator = this.trainScope.getFront().getPosition().iterator(true);
 					break;
 				}
@@ -154,9 +236,9 @@ public abstract class Vehicle implements Serializable {
 				}while(current.getEdge() != newFrontPosition.getEdge());
 				
 				if(current.isDirection()) {
-					newFront = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition);
+					newFront = new BlockPoint(BlockPointProperties.BLOCK_POSITIVE_DIRECTION, newFrontPosition, false);
 				}else {
-					newFront = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition);
+					newFront = new BlockPoint(BlockPointProperties.BLOCK_NEGATIVE_DIRECTION, newFrontPosition, false);
 				}
 			}
 			this.trainScope.organiseTrainScope(newFront);
@@ -164,6 +246,8 @@ public abstract class Vehicle implements Serializable {
 			
 			//Nachdem der Trainscope neu zusammengesetzt wurde muss die Postition dieses Fahrzeugs dort sein wo sie angegeben wurde.
 			assert(this.middlePosition.equals(newPosition));
+		} finally {
+			lock.unlock();
 		}
 	}
 
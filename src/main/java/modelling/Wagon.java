@@ -13,6 +13,12 @@ public class Wagon extends Vehicle implements MySerializable{
 		StoreHandler.addObject(this);
 	}
 	
+	/**
+	 * An empty Wagon, that is read by readFrom()
+	 */
+	Wagon() {
+	}
+	
 	@Override
 	public void delete() throws Exception {
 		if(this.getNextVehicle() != null) {
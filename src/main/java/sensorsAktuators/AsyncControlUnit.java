@@ -0,0 +1,125 @@
+package sensorsAktuators;
+
+import java.util.concurrent.CompletableFuture;
+
+import modelling.Locomotive;
+import modelling.Switch;
+
+/**
+ * The asynchronous variant of the ControlUnit. No method waits for the
+ * network. Queries complete with the response of the control unit, commands
+ * complete as soon as they are sent or acknowledged. Commands may be batched
+ * until the next flush(). A failed or unanswered command completes
+ * exceptionally, usually with an IOException.
+ * 
+ * @see BlockingControlUnit
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public interface AsyncControlUnit {
+
+	/**
+	 * With this command the track voltage is switched off
+	 * 
+	 * @return completes when the control unit reports the track power off
+	 */
+	public CompletableFuture<Void> setTrackPowerOff();
+
+	/**
+	 * With this command the track voltage is switched on
+	 * 
+	 * @return completes when the control unit reports the track power on
+	 */
+	public CompletableFuture<Void> setTrackPowerOn();
+
+	/**
+	 * With this command the emergency stop is activated, i.e. the locomotives
+	 * are stopped but the track voltage remains switched on.
+	 * 
+	 * @return completes when the control unit reports the emergency stop
+	 */
+	public CompletableFuture<Void> stop();
+
+	/**
+	 * This Method sets the Speed of a locomotive
+	 * 
+	 * @param locomotive
+	 * @param dccSpeed
+	 * @return completes when the command is sent
+	 */
+	public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed);
+
+	public CompletableFuture<Void> setLightsOn(Locomotive locomotive);
+
+	public CompletableFuture<Void> setLightsOff(Locomotive locomotive);
+
+	/**
+	 * With the following command a single function of a locomotive decoder can
+	 * be switched.
+	 * 
+	 * @param locomotive
+	 * @param functionIndex
+	 * @param switchType
+	 * @return completes when the command is sent
+	 */
+	public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+			FunctionSwitchingType switchType);
+
+	public CompletableFuture<Boolean> isLightOn(Locomotive locomotive);
+
+	/**
+	 * @param locomotive
+	 * @return the current dcc drive level.
+	 */
+	public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive);
+
+	/**
+	 * @param locomotive
+	 * @return the current direction of the Decoder
+	 */
+	public CompletableFuture<Boolean> getDirection(Locomotive locomotive);
+
+	/**
+	 * @param switch_
+	 * @return true if the turnout is set to the right branch
+	 */
+	public CompletableFuture<Boolean> getSwitchState(Switch switch_);
+
+	/**
+	 * @param switch_
+	 * @param SwitchState - true for the right branch, false for the left one
+	 * @return completes when the control unit reports the new position
+	 */
+	public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState);
+
+	/**
+	 * Set all turnouts of a route together. A control unit that batches
+	 * commands sends them in one exchange, a scheduler queues them as one
+	 * command.
+	 * 
+	 * @param switches
+	 * @param states   - the state of the Switch with the same index, true for the
+	 *                 right branch
+	 * @return completes when the control unit reports all new positions
+	 */
+	default public CompletableFuture<Void> setRoute(Switch[] switches, boolean[] states) {
+		assert (switches.length == states.length);
+		CompletableFuture<?>[] switched = new CompletableFuture<?>[switches.length];
+		for (int i = 0; i < switches.length; i++) {
+			switched[i] = setSwitch(switches[i], states[i]);
+		}
+		flush();
+		return CompletableFuture.allOf(switched);
+	}
+
+	/**
+	 * Send the commands that are still held back, e.g. at the end of a control
+	 * tick. Only a control unit that batches commands has to implement this.
+	 */
+	default public void flush() {
+	}
+
+	public void close();
+
+}
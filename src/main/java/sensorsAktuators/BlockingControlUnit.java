@@ -0,0 +1,111 @@
+package sensorsAktuators;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import modelling.Locomotive;
+import modelling.Switch;
+
+/**
+ * Adapts an AsyncControlUnit to the blocking ControlUnit. Every method waits
+ * until the future of the AsyncControlUnit is completed. A failed IOException
+ * is thrown as UncheckedIOException.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class BlockingControlUnit implements ControlUnit {
+
+	private final AsyncControlUnit controlUnit;
+
+	public BlockingControlUnit(AsyncControlUnit controlUnit) {
+		this.controlUnit = controlUnit;
+	}
+
+	public AsyncControlUnit getAsyncControlUnit() {
+		return controlUnit;
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void setTrackPowerOff() {
+		join(controlUnit.setTrackPowerOff());
+	}
+
+	@Override
+	public void setTrackPowerOn() {
+		join(controlUnit.setTrackPowerOn());
+	}
+
+	@Override
+	public void stop() {
+		join(controlUnit.stop());
+	}
+
+	@Override
+	public void setDccSpeed(Locomotive locomotive, int dccSpeed) {
+		join(controlUnit.setDccSpeed(locomotive, dccSpeed));
+	}
+
+	@Override
+	public void setLightsOn(Locomotive locomotive) {
+		join(controlUnit.setLightsOn(locomotive));
+	}
+
+	@Override
+	public void setLightsOff(Locomotive locomotive) {
+		join(controlUnit.setLightsOff(locomotive));
+	}
+
+	@Override
+	public void setLocoFunction(Locomotive locomotive, byte functionIndex, FunctionSwitchingType switchType) {
+		join(controlUnit.setLocoFunction(locomotive, functionIndex, switchType));
+	}
+
+	@Override
+	public boolean isLightOn(Locomotive locomotive) {
+		return join(controlUnit.isLightOn(locomotive));
+	}
+
+	@Override
+	public int getDccSpeed(Locomotive locomotive) {
+		return join(controlUnit.getDccSpeed(locomotive));
+	}
+
+	@Override
+	public boolean getDirection(Locomotive locomotive) {
+		return join(controlUnit.getDirection(locomotive));
+	}
+
+	@Override
+	public boolean getSwitchState(Switch switch_) {
+		return join(controlUnit.getSwitchState(switch_));
+	}
+
+	@Override
+	public void setSwitch(Switch switch_, boolean SwitchState) {
+		join(controlUnit.setSwitch(switch_, SwitchState));
+	}
+
+	@Override
+	public void close() {
+		controlUnit.close();
+	}
+
+}
@@ -0,0 +1,169 @@
+package sensorsAktuators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects LAN_X commands and sends them concatenated in one datagram. A batch
+ * is sent when it is flushed, when the next command does not fit into the
+ * datagram any more or when the deadline after the first command of the batch
+ * has passed. The commands are written directly into a reused direct
+ * ByteBuffer, so a batched command allocates nothing.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class CommandBatcher {
+
+	/**
+	 * The payload of one UDP datagram in an Ethernet frame without
+	 * fragmentation
+	 */
+	static final int MAX_DATAGRAM_SIZE = 1472;
+
+	private static final CompletableFuture<Void> SENT = CompletableFuture.completedFuture(null);
+
+	interface Sender {
+		/**
+		 * @param datagram - from position 0 to the limit
+		 */
+		void send(ByteBuffer datagram) throws IOException;
+	}
+
+	private final Sender sender;
+	private final long deadline;
+	private final ByteBuffer datagram = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+	/**
+	 * Completes when the current batch is sent, null if the batch is empty. All
+	 * commands of a batch share this future.
+	 */
+	private CompletableFuture<Void> batchSent = null;
+	/**
+	 * Counts the batches, so a deadline only flushes the batch it was
+	 * scheduled for
+	 */
+	private long batch = 0;
+
+	private long commands = 0;
+	private long packets = 0;
+	private long windowStart = System.nanoTime();
+	private long windowCommands = 0;
+	private long windowPackets = 0;
+	private double commandsPerSecond = 0;
+	private double packetsPerSecond = 0;
+
+	/**
+	 * @param sender   - sends a datagram
+	 * @param deadline - in ms after the first command of a batch
+	 */
+	CommandBatcher(Sender sender, long deadline) {
+		this.sender = sender;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Start a command. The caller has to hold the lock of the CommandBatcher
+	 * until the command is written and end() is called.
+	 * 
+	 * @param length - of the command
+	 * @return the buffer to write the command into
+	 */
+	ByteBuffer begin(int length) {
+		assert (Thread.holdsLock(this));
+		if (datagram.remaining() < length) {
+			flush();
+		}
+		return datagram;
+	}
+
+	/**
+	 * End the command written since begin()
+	 * 
+	 * @return completes when the batch of the command is sent
+	 */
+	CompletableFuture<Void> end() {
+		assert (Thread.holdsLock(this));
+		commands++;
+		windowCommands++;
+		if (batchSent == null) {
+			batchSent = new CompletableFuture<>();
+			long scheduledBatch = batch;
+			CompletableFuture.delayedExecutor(deadline, TimeUnit.MILLISECONDS).execute(() -> flush(scheduledBatch));
+		}
+		return batchSent;
+	}
+
+	private synchronized void flush(long scheduledBatch) {
+		if (batch == scheduledBatch) {
+			flush();
+		}
+	}
+
+	/**
+	 * Send all batched commands now
+	 * 
+	 * @return completes when the batched commands are sent
+	 */
+	synchronized CompletableFuture<Void> flush() {
+		if (batchSent == null) {
+			return SENT;
+		}
+		CompletableFuture<Void> sent = batchSent;
+		IOException failure = null;
+		datagram.flip();
+		try {
+			sender.send(datagram);
+			packets++;
+			windowPackets++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			failure = e;
+		}
+		datagram.clear();
+		batchSent = null;
+		batch++;
+		updateRates();
+
+		if (failure == null) {
+			sent.complete(null);
+		} else {
+			sent.completeExceptionally(failure);
+		}
+		return sent;
+	}
+	/**
+	 * Compute the rates of the last window, if it lasted at least one second
+	 */
+	private void updateRates() {
+		long now = System.nanoTime();
+		long passedTime = now - windowStart;
+		if (passedTime >= 1000000000L) {
+			commandsPerSecond = windowCommands * 1e9 / passedTime;
+			packetsPerSecond = windowPackets * 1e9 / passedTime;
+			windowStart = now;
+			windowCommands = 0;
+			windowPackets = 0;
+		}
+	}
+
+	synchronized long getCommands() {
+		return commands;
+	}
+
+	synchronized long getPackets() {
+		return packets;
+	}
+
+	synchronized double getCommandsPerSecond() {
+		updateRates();
+		return commandsPerSecond;
+	}
+
+	synchronized double getPacketsPerSecond() {
+		updateRates();
+		return packetsPerSecond;
+	}
+}
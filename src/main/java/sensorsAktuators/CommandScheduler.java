@@ -0,0 +1,484 @@
+package sensorsAktuators;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import modelling.Locomotive;
+import modelling.Switch;
+
+/**
+ * Sends the commands of all Threads in the order of their Priority instead of
+ * their call order. Every Priority has a rate limit and all of them together
+ * are limited to the capacity of the control unit, so a burst of speed
+ * commands can not delay a braking locomotive or a turnout for long. Emergency
+ * commands do not wait at all: they are sent by the calling Thread and the
+ * speed commands that are still queued are cancelled.
+ * <p>
+ * A queued speed command is replaced by the next speed command for the same
+ * locomotive, only the latest drive level is sent. A speed command that lowers
+ * the last sent drive level is a braking command, so is a 0 while the sent
+ * drive level is unknown. A queued command moves to the queue of the latest
+ * drive level.
+ * <p>
+ * Unchanged drive levels still take tokens, so put a DeduplicatingControlUnit
+ * in front of the CommandScheduler.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class CommandScheduler implements AsyncControlUnit {
+
+	/**
+	 * The classes of commands from the highest to the lowest priority, with
+	 * their default rate limit in commands per second
+	 */
+	public enum Priority {
+		/**
+		 * Stop and track power, never queued or limited
+		 */
+		EMERGENCY(0),
+		/**
+		 * Speed commands that lower the drive level
+		 */
+		SAFETY_BRAKING(200),
+		TURNOUT(50),
+		SPEED(150),
+		FUNCTION(50),
+		QUERY(100);
+
+		private final int defaultRate;
+
+		private Priority(int defaultRate) {
+			this.defaultRate = defaultRate;
+		}
+	}
+
+	/**
+	 * A token bucket that holds the tokens of BURST ms
+	 */
+	private static final class RateLimit {
+		private static final int BURST = 100;
+
+		private double rate;
+		private double tokens;
+		private long lastRefill = System.nanoTime();
+
+		private RateLimit(double rate) {
+			this.rate = rate;
+			this.tokens = getCapacity();
+		}
+
+		private double getCapacity() {
+			return Math.max(1, rate * BURST / 1000);
+		}
+
+		private void refill(long now) {
+			tokens = Math.min(getCapacity(), tokens + (now - lastRefill) * rate / 1e9);
+			lastRefill = now;
+		}
+
+		/**
+		 * @return the ns until the next token is available, 0 if a token is
+		 *         available now
+		 */
+		private long getDelay(long now) {
+			refill(now);
+			if (tokens >= 1) {
+				return 0;
+			}
+			return (long) Math.ceil((1 - tokens) * 1e9 / rate);
+		}
+
+		/**
+		 * The tokens may become negative, then the following commands wait until
+		 * they are paid back
+		 */
+		private void take(int number) {
+			tokens = tokens - number;
+		}
+	}
+
+	private static class Command {
+		/**
+		 * The queue of the command, a speed command may move to a higher one
+		 */
+		Priority priority;
+		private final Supplier<CompletableFuture<?>> sender;
+		/**
+		 * The number of commands the control unit sends to the track, e.g. the
+		 * turnouts of a route
+		 */
+		final int weight;
+		final CompletableFuture<Object> result = new CompletableFuture<>();
+		long queued = System.nanoTime();
+
+		private Command(Priority priority, int weight, Supplier<CompletableFuture<?>> sender) {
+			this.priority = priority;
+			this.weight = weight;
+			this.sender = sender;
+		}
+
+		void send() {
+			try {
+				sender.get().whenComplete((value, e) -> {
+					if (e != null) {
+						result.completeExceptionally(e);
+					} else {
+						result.complete(value);
+					}
+				});
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	private final class SpeedCommand extends Command {
+		private final int dccAddress;
+		// Replaced by the next speed command while the command is queued
+		private Locomotive locomotive;
+		private int dccSpeed;
+
+		/**
+		 * @param dccAddress - read before, because it takes the lock of the
+		 *                   locomotive, which must not be taken while the
+		 *                   CommandScheduler is locked
+		 */
+		private SpeedCommand(Priority priority, Locomotive locomotive, int dccAddress, int dccSpeed) {
+			super(priority, 1, null);
+			this.dccAddress = dccAddress;
+			this.locomotive = locomotive;
+			this.dccSpeed = dccSpeed;
+		}
+
+		/**
+		 * Only called after the command has left its queue, so it is not replaced
+		 * anymore
+		 */
+		@Override
+		void send() {
+			try {
+				controlUnit.setDccSpeed(locomotive, dccSpeed).whenComplete((v, e) -> {
+					if (e != null) {
+						result.completeExceptionally(e);
+					} else {
+						result.complete(null);
+					}
+				});
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * in commands per second, that the control unit sends to the track
+	 */
+	public static volatile int CAPACITY = 200;
+
+	private final AsyncControlUnit controlUnit;
+	// Guarded by this
+	private final Map<Priority, ArrayDeque<Command>> queues = new EnumMap<>(Priority.class);
+	private final Map<Priority, RateLimit> rateLimits = new EnumMap<>(Priority.class);
+	private final RateLimit capacity = new RateLimit(CAPACITY);
+	/**
+	 * The queued speed command of each dcc address
+	 */
+	private final SpeedCommand[] pendingSpeeds = new SpeedCommand[Z21Encoder.MAX_DCC_ADDRESS + 1];
+	/**
+	 * The last sent drive level of each dcc address, -1 if unknown
+	 */
+	private final int[] sentSpeeds = new int[Z21Encoder.MAX_DCC_ADDRESS + 1];
+	private final long[] sentCommands = new long[Priority.values().length];
+	private final long[] maxWait = new long[Priority.values().length];
+	private long coalescedCommands = 0;
+	private boolean closed = false;
+
+	public CommandScheduler(AsyncControlUnit controlUnit) {
+		this.controlUnit = controlUnit;
+		for (Priority priority : Priority.values()) {
+			queues.put(priority, new ArrayDeque<>());
+			rateLimits.put(priority, new RateLimit(priority.defaultRate));
+		}
+		for (int i = 0; i < sentSpeeds.length; i++) {
+			sentSpeeds[i] = -1;
+		}
+		Thread dispatcher = new Thread(this::dispatch, "CommandScheduler");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * @param priority
+	 * @param rate     - in commands per second
+	 */
+	synchronized public void setRateLimit(Priority priority, int rate) {
+		assert (priority != Priority.EMERGENCY && rate > 0);
+		RateLimit rateLimit = rateLimits.get(priority);
+		rateLimit.refill(System.nanoTime());
+		rateLimit.rate = rate;
+		notifyAll();
+	}
+
+	synchronized public long getSentCommands(Priority priority) {
+		return sentCommands[priority.ordinal()];
+	}
+
+	/**
+	 * @return the number of speed commands that were replaced by a later one
+	 *         while they were queued
+	 */
+	synchronized public long getCoalescedCommands() {
+		return coalescedCommands;
+	}
+
+	/**
+	 * @return the longest time in ms, that a command of the priority was queued
+	 */
+	synchronized public double getMaxWait(Priority priority) {
+		return maxWait[priority.ordinal()] / 1e6;
+	}
+
+	synchronized public int getQueueLength(Priority priority) {
+		return queues.get(priority).size();
+	}
+
+	private <T> CompletableFuture<T> schedule(Priority priority, Supplier<CompletableFuture<?>> sender) {
+		return schedule(priority, 1, sender);
+	}
+
+	/**
+	 * @param weight - the number of commands sent to the track, they take their
+	 *               tokens together
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> CompletableFuture<T> schedule(Priority priority, int weight, Supplier<CompletableFuture<?>> sender) {
+		Command command = new Command(priority, weight, sender);
+		synchronized (this) {
+			if (closed) {
+				command.result.completeExceptionally(new IllegalStateException("The CommandScheduler is closed"));
+			} else {
+				queues.get(priority).add(command);
+				notifyAll();
+			}
+		}
+		return (CompletableFuture<T>) (CompletableFuture<?>) command.result;
+	}
+
+	/**
+	 * Send an emergency command right away. The queued speed commands would
+	 * move the locomotives again, so they are cancelled.
+	 */
+	private CompletableFuture<Void> sendEmergency(Supplier<CompletableFuture<Void>> sender) {
+		synchronized (this) {
+			cancelSpeedCommands(Priority.SAFETY_BRAKING);
+			cancelSpeedCommands(Priority.SPEED);
+			for (int i = 0; i < sentSpeeds.length; i++) {
+				sentSpeeds[i] = -1;
+			}
+			sentCommands[Priority.EMERGENCY.ordinal()]++;
+		}
+		return sender.get();
+	}
+
+	// Guarded by this
+	private void cancelSpeedCommands(Priority priority) {
+		for (Command command : queues.get(priority)) {
+			SpeedCommand speedCommand = (SpeedCommand) command;
+			pendingSpeeds[speedCommand.dccAddress] = null;
+			speedCommand.result.cancel(false);
+		}
+		queues.get(priority).clear();
+	}
+
+	private void dispatch() {
+		boolean flushed = true;
+		while (true) {
+			Command command;
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				long now = System.nanoTime();
+				long delay = Long.MAX_VALUE;
+				command = null;
+				long capacityDelay = capacity.getDelay(now);
+				for (Priority priority : Priority.values()) {
+					ArrayDeque<Command> queue = queues.get(priority);
+					if (queue.isEmpty()) {
+						continue;
+					}
+					long priorityDelay = Math.max(capacityDelay, rateLimits.get(priority).getDelay(now));
+					if (priorityDelay == 0) {
+						command = queue.poll();
+						break;
+					}
+					delay = Math.min(delay, priorityDelay);
+				}
+				if (command == null) {
+					if (flushed) {
+						try {
+							if (delay == Long.MAX_VALUE) {
+								wait();
+							} else {
+								wait(delay / 1000000, (int) (delay % 1000000));
+							}
+						} catch (InterruptedException e) {
+							e.printStackTrace();
+						}
+						continue;
+					}
+				} else {
+					capacity.take(command.weight);
+					rateLimits.get(command.priority).take(command.weight);
+					sentCommands[command.priority.ordinal()] += command.weight;
+					maxWait[command.priority.ordinal()] = Math.max(maxWait[command.priority.ordinal()],
+							now - command.queued);
+					if (command instanceof SpeedCommand) {
+						SpeedCommand speedCommand = (SpeedCommand) command;
+						pendingSpeeds[speedCommand.dccAddress] = null;
+						sentSpeeds[speedCommand.dccAddress] = speedCommand.dccSpeed;
+					}
+				}
+			}
+			if (command == null) {
+				// Nothing can be sent right now, so the held back commands leave
+				controlUnit.flush();
+				flushed = true;
+			} else {
+				command.send();
+				flushed = false;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed) {
+		int dccAddress = locomotive.getDccAddress();
+		synchronized (this) {
+			if (closed) {
+				return CompletableFuture.failedFuture(new IllegalStateException("The CommandScheduler is closed"));
+			}
+			int sentSpeed = sentSpeeds[dccAddress];
+			// A parked locomotive repeats its 0, only an unknown drive level may still move
+			boolean braking = dccSpeed < sentSpeed || (sentSpeed < 0 && dccSpeed == 0);
+			Priority priority = braking ? Priority.SAFETY_BRAKING : Priority.SPEED;
+			SpeedCommand pending = pendingSpeeds[dccAddress];
+			if (pending != null) {
+				pending.locomotive = locomotive;
+				pending.dccSpeed = dccSpeed;
+				coalescedCommands++;
+				// A braking command that accelerates again is no longer safety critical
+				if (pending.priority != priority) {
+					queues.get(pending.priority).remove(pending);
+					pending.priority = priority;
+					pending.queued = System.nanoTime();
+					queues.get(priority).add(pending);
+					notifyAll();
+				}
+			} else {
+				pending = new SpeedCommand(priority, locomotive, dccAddress, dccSpeed);
+				pendingSpeeds[dccAddress] = pending;
+				queues.get(pending.priority).add(pending);
+				notifyAll();
+			}
+			return (CompletableFuture<Void>) (CompletableFuture<?>) pending.result;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOff() {
+		return sendEmergency(controlUnit::setTrackPowerOff);
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOn() {
+		return sendEmergency(controlUnit::setTrackPowerOn);
+	}
+
+	@Override
+	public CompletableFuture<Void> stop() {
+		return sendEmergency(controlUnit::stop);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOn(Locomotive locomotive) {
+		return schedule(Priority.FUNCTION, () -> controlUnit.setLightsOn(locomotive));
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOff(Locomotive locomotive) {
+		return schedule(Priority.FUNCTION, () -> controlUnit.setLightsOff(locomotive));
+	}
+
+	@Override
+	public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+			FunctionSwitchingType switchType) {
+		return schedule(Priority.FUNCTION, () -> controlUnit.setLocoFunction(locomotive, functionIndex, switchType));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> isLightOn(Locomotive locomotive) {
+		return schedule(Priority.QUERY, () -> controlUnit.isLightOn(locomotive));
+	}
+
+	@Override
+	public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive) {
+		return schedule(Priority.QUERY, () -> controlUnit.getDccSpeed(locomotive));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getDirection(Locomotive locomotive) {
+		return schedule(Priority.QUERY, () -> controlUnit.getDirection(locomotive));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getSwitchState(Switch switch_) {
+		return schedule(Priority.QUERY, () -> controlUnit.getSwitchState(switch_));
+	}
+
+	@Override
+	public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState) {
+		return schedule(Priority.TURNOUT, () -> controlUnit.setSwitch(switch_, SwitchState));
+	}
+
+	/**
+	 * The route is queued as one command, so it is sent at once instead of
+	 * turnout by turnout. It takes a token for each turnout, the following
+	 * commands wait until the route is paid back.
+	 */
+	@Override
+	public CompletableFuture<Void> setRoute(Switch[] switches, boolean[] states) {
+		return schedule(Priority.TURNOUT, switches.length, () -> controlUnit.setRoute(switches, states));
+	}
+
+	/**
+	 * The queued commands are sent as fast as their rate limits allow, the
+	 * control unit is flushed as soon as the queues are empty or limited.
+	 */
+	@Override
+	synchronized public void flush() {
+		notifyAll();
+	}
+
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			for (ArrayDeque<Command> queue : queues.values()) {
+				for (Command command : queue) {
+					command.result.cancel(false);
+				}
+				queue.clear();
+			}
+			notifyAll();
+		}
+		controlUnit.close();
+	}
+
+}
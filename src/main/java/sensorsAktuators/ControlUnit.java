@@ -55,8 +55,18 @@ public interface ControlUnit {
 	 */
 	public boolean getDirection(Locomotive locomotive);
 	
+	/**
+	 * 
+	 * @param switch_
+	 * @return true if the turnout is set to the right branch
+	 */
 	public boolean getSwitchState(Switch switch_);
 	
+	/**
+	 * 
+	 * @param switch_
+	 * @param SwitchState - true for the right branch, false for the left one
+	 */
 	public void setSwitch(Switch switch_, boolean SwitchState);
 	
 	public void close();
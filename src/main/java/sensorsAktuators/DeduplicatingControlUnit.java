@@ -0,0 +1,171 @@
+package sensorsAktuators;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import modelling.Locomotive;
+import modelling.Switch;
+
+/**
+ * Drops setDccSpeed commands that would set the same drive level and direction
+ * that was already sent to a locomotive. The same command is sent again after
+ * KEEPALIVE_INTERVAL, so a lost or overridden command is corrected. All other
+ * commands are passed to the wrapped AsyncControlUnit.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class DeduplicatingControlUnit implements AsyncControlUnit {
+
+	/**
+	 * in ms, after that an unchanged drive level is sent again
+	 */
+	public static volatile int KEEPALIVE_INTERVAL = 2000;
+
+	private static final class SpeedCommand {
+		private final int dccSpeed;
+		private final boolean direction;
+		private final long time;
+		private final CompletableFuture<Void> sent;
+
+		private SpeedCommand(int dccSpeed, boolean direction, CompletableFuture<Void> sent) {
+			this.dccSpeed = dccSpeed;
+			this.direction = direction;
+			this.time = System.nanoTime();
+			this.sent = sent;
+		}
+
+		private boolean isSame(int dccSpeed, boolean direction) {
+			return this.dccSpeed == dccSpeed && this.direction == direction && !sent.isCompletedExceptionally()
+					&& (System.nanoTime() - time) / 1000000 < KEEPALIVE_INTERVAL;
+		}
+	}
+
+	private final AsyncControlUnit controlUnit;
+	/**
+	 * The last sent or sending speed command of each dcc address. An array
+	 * avoids boxing the address of every command.
+	 */
+	private final AtomicReferenceArray<SpeedCommand> speedCommands = new AtomicReferenceArray<>(
+			Z21Encoder.MAX_DCC_ADDRESS + 1);
+	private final LongAdder sentCommands = new LongAdder();
+	private final LongAdder droppedCommands = new LongAdder();
+
+	public DeduplicatingControlUnit(AsyncControlUnit controlUnit) {
+		this.controlUnit = controlUnit;
+	}
+
+	@Override
+	public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed) {
+		int dccAddress = locomotive.getDccAddress();
+		boolean direction = locomotive.isDirectionDecoder();
+		SpeedCommand last = speedCommands.get(dccAddress);
+		if (last != null && last.isSame(dccSpeed, direction)) {
+			droppedCommands.increment();
+			return last.sent;
+		}
+		sentCommands.increment();
+		// A failed command is sent again next time
+		CompletableFuture<Void> sent = controlUnit.setDccSpeed(locomotive, dccSpeed);
+		speedCommands.set(dccAddress, new SpeedCommand(dccSpeed, direction, sent));
+		return sent;
+	}
+
+	private void clear() {
+		for (int i = 0; i < speedCommands.length(); i++) {
+			speedCommands.set(i, null);
+		}
+	}
+
+	/**
+	 * @return the number of speed commands passed to the wrapped control unit
+	 */
+	public long getSentCommands() {
+		return sentCommands.sum();
+	}
+
+	/**
+	 * @return the number of dropped speed commands
+	 */
+	public long getDroppedCommands() {
+		return droppedCommands.sum();
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOff() {
+		return controlUnit.setTrackPowerOff();
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOn() {
+		// The locomotives may have lost their drive levels
+		clear();
+		return controlUnit.setTrackPowerOn();
+	}
+
+	@Override
+	public CompletableFuture<Void> stop() {
+		// The emergency stop sets all drive levels to 0
+		clear();
+		return controlUnit.stop();
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOn(Locomotive locomotive) {
+		return controlUnit.setLightsOn(locomotive);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOff(Locomotive locomotive) {
+		return controlUnit.setLightsOff(locomotive);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+			FunctionSwitchingType switchType) {
+		return controlUnit.setLocoFunction(locomotive, functionIndex, switchType);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> isLightOn(Locomotive locomotive) {
+		return controlUnit.isLightOn(locomotive);
+	}
+
+	@Override
+	public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive) {
+		return controlUnit.getDccSpeed(locomotive);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getDirection(Locomotive locomotive) {
+		return controlUnit.getDirection(locomotive);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getSwitchState(Switch switch_) {
+		return controlUnit.getSwitchState(switch_);
+	}
+
+	@Override
+	public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState) {
+		return controlUnit.setSwitch(switch_, SwitchState);
+	}
+
+	@Override
+	public CompletableFuture<Void> setRoute(Switch[] switches, boolean[] states) {
+		return controlUnit.setRoute(switches, states);
+	}
+
+	@Override
+	public void flush() {
+		controlUnit.flush();
+	}
+
+	@Override
+	public void close() {
+		controlUnit.close();
+	}
+
+}
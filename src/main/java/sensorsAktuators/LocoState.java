@@ -0,0 +1,132 @@
+package sensorsAktuators;
+
+/**
+ * The state of a locomotive decoder as reported by a LAN_X_LOCO_INFO message
+ * of the Z21. A LocoState is immutable, a newer message creates a new
+ * LocoState.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public final class LocoState {
+
+	private final int dccAddress;
+	private final int dccSpeed;
+	private final boolean direction;
+	private final int speedSteps;
+	private final boolean controlledByHandRegulator;
+	/**
+	 * Bit i is set, if the function Fi is on
+	 */
+	private final long functions;
+	/**
+	 * System.nanoTime() when the message was received
+	 */
+	private final long lastUpdate;
+
+	private LocoState(int dccAddress, int dccSpeed, boolean direction, int speedSteps,
+			boolean controlledByHandRegulator, long functions, long lastUpdate) {
+		this.dccAddress = dccAddress;
+		this.dccSpeed = dccSpeed;
+		this.direction = direction;
+		this.speedSteps = speedSteps;
+		this.controlledByHandRegulator = controlledByHandRegulator;
+		this.functions = functions;
+		this.lastUpdate = lastUpdate;
+	}
+
+	/**
+	 * @param response   - a LAN_X_LOCO_INFO message
+	 * @param dccAddress - the demarshalled address of the message
+	 * @param lastUpdate - System.nanoTime() when the message was received
+	 * @return the state of the message
+	 */
+	static LocoState of(byte[] response, int dccAddress, long lastUpdate) {
+		assert (response[4] == (byte) (0xef));
+		// DB2
+		boolean controlledByHandRegulator = ((0x08) & response[7]) == (0x08);
+		int speedSteps;
+		if (((0x04) & response[7]) == (0x04)) {
+			speedSteps = 128;
+		} else if (((0x02) & response[7]) == (0x02)) {
+			speedSteps = 28;
+		} else {
+			speedSteps = 14;
+		}
+
+		// DB3
+		boolean direction = ((byte) (0x80) & response[8]) == (byte) (0x80);
+		int dccSpeed = response[8] & ((byte) (0x7f));
+
+		// DB4: F0 is bit 4, F1 to F4 are bits 0 to 3
+		long functions = (response[9] >> 4) & 0x01;
+		functions = functions | ((response[9] & 0x0f) << 1);
+		// DB5, DB6, DB7: F5 to F28
+		for (int i = 10; i < 13; i++) {
+			functions = functions | ((long) (response[i] & 0xff) << (5 + (i - 10) * 8));
+		}
+		return new LocoState(dccAddress, dccSpeed, direction, speedSteps, controlledByHandRegulator, functions,
+				lastUpdate);
+	}
+
+	public int getDccAddress() {
+		return dccAddress;
+	}
+
+	/**
+	 * @return the current dcc drive level.
+	 */
+	public int getDccSpeed() {
+		return dccSpeed;
+	}
+
+	/**
+	 * @return the current direction of the Decoder
+	 */
+	public boolean getDirection() {
+		return direction;
+	}
+
+	/**
+	 * @return 14, 28 or 128
+	 */
+	public int getSpeedSteps() {
+		return speedSteps;
+	}
+
+	/**
+	 * @return true, if another device like a hand regulator controls the
+	 *         locomotive
+	 */
+	public boolean isControlledByHandRegulator() {
+		return controlledByHandRegulator;
+	}
+
+	/**
+	 * @param functionIndex - from 0 to 28
+	 * @return true, if the function is on
+	 */
+	public boolean isFunctionOn(int functionIndex) {
+		assert (0 <= functionIndex && functionIndex <= 28);
+		return (functions & (1L << functionIndex)) != 0;
+	}
+
+	public boolean isLightOn() {
+		return isFunctionOn(0);
+	}
+
+	/**
+	 * @return System.nanoTime() when the state was received
+	 */
+	public long getLastUpdate() {
+		return lastUpdate;
+	}
+
+	/**
+	 * @return the age of the state in ms
+	 */
+	public long getAge() {
+		return (System.nanoTime() - lastUpdate) / 1000000;
+	}
+}
@@ -0,0 +1,111 @@
+package sensorsAktuators;
+
+/**
+ * Estimates the round trip time of one type of request and derives its
+ * timeout, like TCP does (RFC 6298): the timeout is the smoothed round trip
+ * time plus four times its variance. A timeout doubles the timeout until the
+ * next sample. Only requests that were not retransmitted may be sampled,
+ * otherwise it is unknown which transmission was answered.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class RttEstimator {
+
+	private static final double ALPHA = 1.0 / 8;
+	private static final double BETA = 1.0 / 4;
+	private static final int K = 4;
+
+	private final long minTimeout;
+	private final long maxTimeout;
+	/**
+	 * in ns, -1 before the first sample
+	 */
+	private double smoothedRtt = -1;
+	private double rttVariance = 0;
+	private long timeout;
+	private long samples = 0;
+	private long timeouts = 0;
+
+	/**
+	 * All times in ns
+	 *
+	 * @param initialTimeout - until the first sample
+	 * @param minTimeout
+	 * @param maxTimeout
+	 */
+	public RttEstimator(long initialTimeout, long minTimeout, long maxTimeout) {
+		assert (0 < minTimeout && minTimeout <= initialTimeout && initialTimeout <= maxTimeout);
+		this.timeout = initialTimeout;
+		this.minTimeout = minTimeout;
+		this.maxTimeout = maxTimeout;
+	}
+
+	/**
+	 * @param rtt - in ns, of a request that was sent only once
+	 */
+	synchronized public void addSample(long rtt) {
+		if (smoothedRtt < 0) {
+			smoothedRtt = rtt;
+			rttVariance = rtt / 2.0;
+		} else {
+			rttVariance = (1 - BETA) * rttVariance + BETA * Math.abs(smoothedRtt - rtt);
+			smoothedRtt = (1 - ALPHA) * smoothedRtt + ALPHA * rtt;
+		}
+		timeout = clamp((long) (smoothedRtt + K * rttVariance));
+		samples++;
+	}
+
+	/**
+	 * Back off after a request timed out. Requests that were sent with the same
+	 * timeout and time out as well do not back off again.
+	 *
+	 * @param usedTimeout - in ns, the timeout of the request
+	 */
+	synchronized public void timedOut(long usedTimeout) {
+		timeouts++;
+		if (usedTimeout >= timeout) {
+			timeout = clamp(usedTimeout * 2);
+		}
+	}
+
+	private long clamp(long timeout) {
+		return Math.max(minTimeout, Math.min(maxTimeout, timeout));
+	}
+
+	/**
+	 * @return in ns
+	 */
+	synchronized public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return in ns, -1 before the first sample
+	 */
+	synchronized public double getSmoothedRtt() {
+		return smoothedRtt;
+	}
+
+	/**
+	 * @return in ns
+	 */
+	synchronized public double getRttVariance() {
+		return rttVariance;
+	}
+
+	synchronized public long getSamples() {
+		return samples;
+	}
+
+	synchronized public long getTimeouts() {
+		return timeouts;
+	}
+
+	@Override
+	synchronized public String toString() {
+		return String.format("srtt %.2f ms, rttvar %.2f ms, timeout %.2f ms, %d samples, %d timeouts", smoothedRtt / 1e6,
+				rttVariance / 1e6, timeout / 1e6, samples, timeouts);
+	}
+}
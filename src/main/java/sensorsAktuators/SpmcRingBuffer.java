@@ -0,0 +1,158 @@
+package sensorsAktuators;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free ring buffer with a single producer and multiple consumers. Every
+ * Cursor reads every element in the order it was offered. The producer never
+ * overwrites an element that a Cursor has not read yet. If the buffer is full,
+ * offer() fails and put() waits for the slowest Cursor.
+ * 
+ * @param <E> - the type of the elements
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public final class SpmcRingBuffer<E> {
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final Object[] elements;
+	private final int mask;
+	/**
+	 * The sequence of the last offered element
+	 */
+	private final AtomicLong published = new AtomicLong(-1);
+	private final List<Cursor> cursors = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The read position of a single consumer. Only one Thread may use a Cursor.
+	 */
+	public final class Cursor {
+
+		/**
+		 * The sequence of the last read element
+		 */
+		private final AtomicLong sequence;
+		private volatile Thread waiting = null;
+
+		private Cursor(long sequence) {
+			this.sequence = new AtomicLong(sequence);
+		}
+
+		/**
+		 * @return the next element or null if there is none
+		 */
+		@SuppressWarnings("unchecked")
+		public E poll() {
+			long next = sequence.get() + 1;
+			if (next > published.get()) {
+				return null;
+			}
+			E element = (E) elements[(int) next & mask];
+			sequence.lazySet(next);
+			return element;
+		}
+
+		/**
+		 * Wait for the next element
+		 * 
+		 * @param timeout
+		 * @param unit
+		 * @return the next element or null if the timeout has passed
+		 * @throws InterruptedException
+		 */
+		public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			E element = poll();
+			while (element == null) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return null;
+				}
+				waiting = Thread.currentThread();
+				// The producer unparks the waiting Thread after it published
+				if (sequence.get() == published.get()) {
+					LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+				}
+				waiting = null;
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				element = poll();
+			}
+			return element;
+		}
+
+		/**
+		 * Stop reading. The producer no longer waits for this Cursor.
+		 */
+		public void close() {
+			cursors.remove(this);
+		}
+	}
+
+	/**
+	 * @param capacity - is rounded up to a power of two
+	 */
+	public SpmcRingBuffer(int capacity) {
+		assert (capacity > 0);
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		elements = new Object[size];
+		mask = size - 1;
+	}
+
+	public int getCapacity() {
+		return elements.length;
+	}
+
+	/**
+	 * @return a new Cursor, which reads all elements offered from now on
+	 */
+	public Cursor newCursor() {
+		Cursor cursor = new Cursor(published.get());
+		cursors.add(cursor);
+		return cursor;
+	}
+
+	/**
+	 * Only the producer Thread may call this method.
+	 * 
+	 * @param element
+	 * @return false, if the buffer is full
+	 */
+	public boolean offer(E element) {
+		long next = published.get() + 1;
+		for (Cursor cursor : cursors) {
+			if (next - cursor.sequence.get() > elements.length) {
+				return false;
+			}
+		}
+		elements[(int) next & mask] = element;
+		published.set(next);
+		for (Cursor cursor : cursors) {
+			Thread waiting = cursor.waiting;
+			if (waiting != null) {
+				LockSupport.unpark(waiting);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Only the producer Thread may call this method. If the buffer is full, it
+	 * waits until the slowest Cursor has read an element.
+	 * 
+	 * @param element
+	 */
+	public void put(E element) {
+		while (!offer(element)) {
+			Thread.onSpinWait();
+			LockSupport.parkNanos(this, 1000);
+		}
+	}
+}
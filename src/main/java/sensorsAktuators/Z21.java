@@ -1,156 +1,313 @@
 package sensorsAktuators;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 import main.Main;
 import modelling.Locomotive;
 import modelling.Switch;
 
-public class Z21 implements ControlUnit, Runnable {
+public class Z21 implements AsyncControlUnit {
+
+	/**
+	 * in ms. A cached LocoState that is older is queried again from the Z21.
+	 */
+	public static volatile int LOCO_STATE_MAX_AGE = 2000;
+	/**
+	 * Print every received message. Only for debugging, the console is much
+	 * slower than the messages of a busy Z21.
+	 */
+	public static volatile boolean PRINT_BROADCASTS = false;
 
 	// ------------------------------------------------------------
-	private final int timeout = 20;
+	/**
+	 * in ms, the timeout of a request type until its round trip time is measured
+	 */
+	private final int initialTimeout = 20;
+	private final int minTimeout = 2;
+	private final int maxTimeout = 500;
+	/**
+	 * Retransmissions of an unanswered request
+	 */
+	private final int maxRetries = 2;
+	/**
+	 * in ms, that a turnout output stays activated after the Z21 reported the
+	 * new position
+	 */
+	private final int turnoutPulse = 100;
+	/**
+	 * in ms, that a command waits at most for other commands to share its
+	 * datagram
+	 */
+	private final int batchDeadline = 5;
+	/**
+	 * Threads that apply the received loco infos to the model
+	 */
+	private final int modelUpdateThreads = 2;
+	private final int modelUpdateCapacity = 4096;
 	// ------------------------------------------------------------
-	private final DatagramSocket broadcastSocket;
-	private final InetAddress ip_addr;
-	private boolean closed = true;
+	/**
+	 * Connected to the Z21. All messages are sent and received on this channel.
+	 */
+	private final DatagramChannel channel;
+	private final Z21Receiver receiver;
+	private volatile boolean closed = true;
+	/**
+	 * Requests waiting for their response, keyed by the LAN_X header and the
+	 * address of the response. They are completed by the Z21Receiver, which
+	 * receives all messages of the Z21 on the channel.
+	 */
+	private final Map<Integer, CompletableFuture<byte[]>> pendingRequests = new ConcurrentHashMap<>();
+	/**
+	 * The Z21 answers each type of request at its own speed
+	 */
+	private final RttEstimator trackPowerRtt = newRttEstimator();
+	private final RttEstimator stopRtt = newRttEstimator();
+	private final RttEstimator locoInfoRtt = newRttEstimator();
+	private final RttEstimator turnoutRtt = newRttEstimator();
+	/**
+	 * Owns the buffer all messages are written into. Lock it while writing a
+	 * message.
+	 */
+	private final CommandBatcher batcher;
+	/**
+	 * The latest LocoState of each dcc address, updated by the Z21Receiver
+	 */
+	private final Map<Integer, LocoState> locoStates = new ConcurrentHashMap<>();
+	/**
+	 * The latest reported position of each turnout address, true for output 2.
+	 * A turnout that was not switched since the Z21 started has no position.
+	 * Updated by the LAN_X_TURNOUT_INFO broadcasts.
+	 */
+	private final Map<Integer, Boolean> turnoutStates = new ConcurrentHashMap<>();
+	/**
+	 * The received loco infos on their way to the model. The Z21Receiver only
+	 * publishes them, so it never waits for the lock of a Locomotive or a
+	 * TrainScope.
+	 */
+	private final SpmcRingBuffer<LocoState> modelUpdates = new SpmcRingBuffer<>(modelUpdateCapacity);
 
 	public Z21() throws Exception {
 		closed = false;
-		broadcastSocket = new DatagramSocket();
-		System.out.println("Socket for communication to Z21 opened at port " + broadcastSocket.getLocalPort());
-		ip_addr = InetAddress.getByAddress(Main.S21_IP4);
+		channel = DatagramChannel.open();
+		channel.connect(new InetSocketAddress(InetAddress.getByAddress(Main.S21_IP4), Main.S21_PORT));
+		System.out.println("Socket for communication to Z21 opened at port "
+				+ ((InetSocketAddress) channel.getLocalAddress()).getPort());
+		batcher = new CommandBatcher(this::sendDatagram, batchDeadline);
+		receiver = new Z21Receiver(channel);
+		receiver.setLanXHandler((byte) (0xef), this::handleLocoInfo);
+		receiver.setLanXHandler((byte) (0x61), this::handleTrackPower);
+		receiver.setLanXHandler((byte) (0x43), this::handleTurnoutInfo);
+		receiver.setDefaultHandler(this::handleOtherMessage);
+		for (int i = 0; i < modelUpdateThreads; i++) {
+			startModelUpdateThread(modelUpdates.newCursor(), i);
+		}
 		sendSetBroadcastFlag();
-		new Thread(this).start();
+		new Thread(receiver).start();
+	}
+
+	/**
+	 * Each Thread applies the loco infos of its share of the dcc addresses, so
+	 * the loco infos of a locomotive are applied in order.
+	 */
+	private void startModelUpdateThread(SpmcRingBuffer<LocoState>.Cursor cursor, int index) {
+		new Thread(() -> {
+			while (!closed) {
+				try {
+					LocoState state = cursor.poll(100, TimeUnit.MILLISECONDS);
+					if (state != null && state.getDccAddress() % modelUpdateThreads == index) {
+						resolveLocoInfo(state);
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			cursor.close();
+		}, "Z21 Model Update " + index).start();
+	}
+
+	private void sendDatagram(ByteBuffer datagram) throws IOException {
+		// The channel is non-blocking, it does not send if its buffer is full
+		if (channel.write(datagram) == 0) {
+			throw new IOException("The send buffer of the channel to the Z21 is full");
+		}
 	}
 
 	private void sendSetBroadcastFlag() {
-		byte message[] = new byte[8];
-		message[0] = (0x08);
-		message[1] = (0x00);
-		message[2] = (0x50);
-		message[3] = (0x00);
-		message[4] = (0x00);
-		message[5] = (0x00);
-		message[6] = (0x01);
-		message[7] = (0x00);
-		send(message);
+		send(Z21Encoder.BROADCAST_FLAGS_LENGTH, buffer -> Z21Encoder.putBroadcastFlags(buffer, 0x00010001));
 	}
 
 	private void sendDeleteBroadcastFlag() {
-		byte message[] = new byte[8];
-		message[0] = (0x08);
-		message[1] = (0x00);
-		message[2] = (0x50);
-		message[3] = (0x00);
-		message[4] = (0x00);
-		message[5] = (0x00);
-		message[6] = (0x00);
-		message[7] = (0x00);
-		send(message);
+		send(Z21Encoder.BROADCAST_FLAGS_LENGTH, buffer -> Z21Encoder.putBroadcastFlags(buffer, 0x00000000));
 	}
 
 	@Override
 	public void close() {
 		closed = true;
+		batcher.flush();
 		sendDeleteBroadcastFlag();
-		broadcastSocket.close();
+		receiver.close();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		for (CompletableFuture<byte[]> pending : pendingRequests.values()) {
+			pending.completeExceptionally(new IOException("Socket for communication to Z21 closed"));
+		}
+		pendingRequests.clear();
 		System.out.println("Socket for communicatin to Z21 closed");
 		
 	}
 
-	private static byte xor(byte data[]) {
-		byte xor = 0;
-		for (int i = 0; i < data.length; i++) {
-			xor = (byte) (data[i] ^ xor);
+	/**
+	 * Send a message in its own datagram. Batched commands are sent before, so
+	 * the Z21 receives all commands in order.
+	 * 
+	 * @param length  - of the message
+	 * @param message - writes the message into the buffer
+	 */
+	private CompletableFuture<Void> send(int length, Consumer<ByteBuffer> message) {
+		synchronized (batcher) {
+			batcher.flush();
+			message.accept(batcher.begin(length));
+			batcher.end();
+			return batcher.flush();
 		}
-		return xor;
 	}
 
-	private void send(byte[] data) {
-		DatagramPacket datagram = new DatagramPacket(data, data.length);
-		datagram.setAddress(ip_addr);
-		datagram.setPort(Main.S21_PORT);
-		try {
-			broadcastSocket.send(datagram);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	/**
+	 * @param xHeader - the LAN_X header of the response
+	 * @param address - the address of the response, the state of the track
+	 *                power or 0 if it has none
+	 * @return the key of the response in the pendingRequests
+	 */
+	private static int getResponseKey(byte xHeader, int address) {
+		return ((xHeader & 0xff) << 16) | (address & 0xffff);
+	}
 
+	/**
+	 * Send a request over the channel. If the same response is already awaited,
+	 * the request is not sent again and both get the same response. An
+	 * unanswered request is sent again up to maxRetries times, each time with the
+	 * current timeout of its type.
+	 * 
+	 * @param length      - of the request
+	 * @param message     - writes the request into the buffer
+	 * @param responseKey - the key of the expected response
+	 * @param rtt         - of the type of the request
+	 * @return the response of the Z21. It fails with a SocketTimeoutException if
+	 *         the Z21 does not respond to any transmission.
+	 */
+	private CompletableFuture<byte[]> sendAndReceive(int length, Consumer<ByteBuffer> message, int responseKey,
+			RttEstimator rtt) {
+		return sendAndReceive(length, message, responseKey, rtt, false);
 	}
 
-	private byte[] sendAndReceive(byte[] message) {
-		DatagramPacket datagram = new DatagramPacket(message, message.length);
-		try {
-			DatagramSocket mySocket = new DatagramSocket();
-			datagram.setAddress(ip_addr);
-			datagram.setPort(Main.S21_PORT);
-
-			mySocket.setSoTimeout(timeout);
-			mySocket.send(datagram);
-			mySocket.receive(datagram);
-			mySocket.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/**
+	 * @param batched - the request is batched with the other commands instead of
+	 *                sent in its own datagram
+	 * @see #sendAndReceive(int, Consumer, int, RttEstimator)
+	 */
+	private CompletableFuture<byte[]> sendAndReceive(int length, Consumer<ByteBuffer> message, int responseKey,
+			RttEstimator rtt, boolean batched) {
+		CompletableFuture<byte[]> response = new CompletableFuture<>();
+		CompletableFuture<byte[]> pending = pendingRequests.putIfAbsent(responseKey, response);
+		if (pending != null) {
+			return pending;
 		}
-		return datagram.getData();
+		long firstSent = System.nanoTime();
+		AtomicInteger transmissions = new AtomicInteger(1);
+		response.thenRun(() -> {
+			// Karn: the response of a retransmitted request may answer any transmission
+			if (transmissions.get() == 1) {
+				rtt.addSample(System.nanoTime() - firstSent);
+			}
+		});
+		transmit(length, message, responseKey, rtt, batched, response, transmissions);
+		return response;
 	}
 
-	@Override
-	public void setTrackPowerOff() {
-		byte message[] = new byte[7];
-		message[0] = (0x07);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (0x21);
-		message[5] = (byte) (0x80);
-		message[6] = xor(message);
-		send(message);
+	private void transmit(int length, Consumer<ByteBuffer> message, int responseKey, RttEstimator rtt,
+			boolean batched, CompletableFuture<byte[]> response, AtomicInteger transmissions) {
+		long timeout = rtt.getTimeout();
+		CompletableFuture.delayedExecutor(timeout, TimeUnit.NANOSECONDS).execute(() -> {
+			if (response.isDone()) {
+				return;
+			}
+			rtt.timedOut(timeout);
+			if (transmissions.get() <= maxRetries && !closed) {
+				transmissions.incrementAndGet();
+				transmit(length, message, responseKey, rtt, batched, response, transmissions);
+			} else if (pendingRequests.remove(responseKey, response)) {
+				response.completeExceptionally(new SocketTimeoutException(
+						"The Z21 did not respond to " + transmissions.get() + " transmissions"));
+			}
+		});
+		CompletableFuture<Void> sent;
+		if (batched) {
+			synchronized (batcher) {
+				message.accept(batcher.begin(length));
+				sent = batcher.end();
+			}
+		} else {
+			sent = send(length, message);
+		}
+		sent.whenComplete((v, e) -> {
+			if (e != null && pendingRequests.remove(responseKey, response)) {
+				response.completeExceptionally(e);
+			}
+		});
 	}
 
-	@Override
-	public void setTrackPowerOn() {
-		byte message[] = new byte[7];
-		message[0] = (0x07);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (0x21);
-		message[5] = (byte) (0x81);
-		message[6] = xor(message);
-		send(message);
+	private RttEstimator newRttEstimator() {
+		return new RttEstimator(TimeUnit.MILLISECONDS.toNanos(initialTimeout), TimeUnit.MILLISECONDS.toNanos(minTimeout),
+				TimeUnit.MILLISECONDS.toNanos(maxTimeout));
+	}
+
+	/**
+	 * @return the round trip time of LAN_X_GET_LOCO_INFO
+	 */
+	public RttEstimator getLocoInfoRtt() {
+		return locoInfoRtt;
 	}
 
 	@Override
-	public void stop() {
-		byte message[] = new byte[7];
-		message[0] = (0x06);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (byte) (0x80);
-		message[5] = (byte) (0x80);
-		sendAndReceive(message);
-		assert (message[0] == (0x07));
-		assert (message[1] == (0x00));
-		assert (message[2] == (0x40));
-		assert (message[3] == (0x00));
-		assert (message[4] == (byte) (0x81));
-		assert (message[5] == (0x00));
-		assert (message[6] == (byte) (0x80));
+	public CompletableFuture<Void> setTrackPowerOff() {
+		return sendAndReceive(Z21Encoder.TRACK_POWER_LENGTH, buffer -> Z21Encoder.putTrackPower(buffer, false),
+				getResponseKey((byte) (0x61), 0x00), trackPowerRtt).thenApply(response -> null);
 	}
 
-	private static byte getAddressMSB(Locomotive locomotive) {
-		return (byte) ((0xc0) | (locomotive.getDccAddress() / 256));
+	@Override
+	public CompletableFuture<Void> setTrackPowerOn() {
+		return sendAndReceive(Z21Encoder.TRACK_POWER_LENGTH, buffer -> Z21Encoder.putTrackPower(buffer, true),
+				getResponseKey((byte) (0x61), 0x01), trackPowerRtt).thenApply(response -> null);
 	}
 
-	private static byte getAddressLSB(Locomotive locomotive) {
-		return (byte) (locomotive.getDccAddress() % 256);
+	@Override
+	public CompletableFuture<Void> stop() {
+		return sendAndReceive(Z21Encoder.STOP_LENGTH, Z21Encoder::putStop, getResponseKey((byte) (0x81), 0), stopRtt)
+				.thenAccept(response -> {
+					assert (response[0] == (0x07));
+					assert (response[1] == (0x00));
+					assert (response[2] == (0x40));
+					assert (response[3] == (0x00));
+					assert (response[4] == (byte) (0x81));
+					assert (response[5] == (0x00));
+					assert (response[6] == (byte) (0x81));
+				});
 	}
 
 	private static int demarshallAdress(byte MSB, byte LSB) {
@@ -162,119 +319,199 @@ public class Z21 implements ControlUnit, Runnable {
 		return msb * 256 + lsb;
 	}
 
-	private static byte getSpeedFormat(Locomotive locomotive, byte dccSpeed) {
-		if (locomotive.isDirectionDecoder()) {
-			return (byte) ((0x80) | dccSpeed);
+	@Override
+	public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed) {
+		return setDccSpeed(locomotive.getDccAddress(), locomotive.isDirectionDecoder(), dccSpeed);
+	}
+
+	/**
+	 * Set the speed of a decoder without a Locomotive of the model, e.g. to
+	 * test the Z21 under load
+	 * 
+	 * @param dccAddress
+	 * @param directionDecoder
+	 * @param dccSpeed
+	 * @return completes when the command is sent
+	 */
+	public CompletableFuture<Void> setDccSpeed(int dccAddress, boolean directionDecoder, int dccSpeed) {
+		assert (0 <= dccSpeed && dccSpeed < Main.MAX_DCC_VALUES);
+		synchronized (batcher) {
+			Z21Encoder.putLocoDrive(batcher.begin(Z21Encoder.LOCO_DRIVE_LENGTH), dccAddress, directionDecoder,
+					dccSpeed);
+			return batcher.end();
 		}
-		return dccSpeed;
 	}
 
 	@Override
-	public void setDccSpeed(Locomotive locomotive, int dccSpeed) {
-		assert (0 <= dccSpeed && dccSpeed < Main.MAX_DCC_VALUES);
+	public CompletableFuture<Void> setLightsOn(Locomotive locomotive) {
+		return this.setLocoFunction(locomotive, (byte) 0, FunctionSwitchingType.ON);
+
+	}
 
-		byte message[] = new byte[14];
-		message[0] = (0x0A);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (byte) (0xe4);
-		message[5] = (0x13);
-		message[6] = getAddressMSB(locomotive);
-		message[7] = getAddressLSB(locomotive);
-		message[8] = getSpeedFormat(locomotive, (byte) dccSpeed);
-		message[9] = xor(message);
-		send(message);
+	@Override
+	public CompletableFuture<Void> setLightsOff(Locomotive locomotive) {
+		return this.setLocoFunction(locomotive, (byte) 0, FunctionSwitchingType.OFF);
 	}
 
 	@Override
-	public void setLightsOn(Locomotive locomotive) {
-		this.setLocoFunction(locomotive, (byte) 0, FunctionSwitchingType.ON);
+	public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+			FunctionSwitchingType switchType) {
+		assert (functionIndex < 64);
+		int dccAddress = locomotive.getDccAddress();
+		synchronized (batcher) {
+			Z21Encoder.putLocoFunction(batcher.begin(Z21Encoder.LOCO_FUNCTION_LENGTH), dccAddress, functionIndex,
+					switchType);
+			return batcher.end();
+		}
+	}
+
+	private CompletableFuture<byte[]> sendLocoInfoRequest(int dccAddress) {
+		return sendAndReceive(Z21Encoder.LOCO_INFO_REQUEST_LENGTH,
+				buffer -> Z21Encoder.putLocoInfoRequest(buffer, dccAddress), getResponseKey((byte) (0xef), dccAddress),
+				locoInfoRtt);
+	}
 
+	/**
+	 * The state is read from the cache. Only if there is no state of the
+	 * locomotive or it is older than LOCO_STATE_MAX_AGE, the Z21 is queried.
+	 * This also subscribes the broadcasts of the locomotive.
+	 * 
+	 * @param locomotive
+	 * @return the latest state of the locomotive
+	 */
+	public CompletableFuture<LocoState> getLocoState(Locomotive locomotive) {
+		return getLocoState(locomotive.getDccAddress());
+	}
+
+	/**
+	 * @param dccAddress
+	 * @return the latest state of the decoder
+	 * @see #getLocoState(Locomotive)
+	 */
+	public CompletableFuture<LocoState> getLocoState(int dccAddress) {
+		LocoState state = locoStates.get(dccAddress);
+		if (state != null && state.getAge() <= LOCO_STATE_MAX_AGE) {
+			return CompletableFuture.completedFuture(state);
+		}
+		return sendLocoInfoRequest(dccAddress)
+				.thenApply(response -> LocoState.of(response, dccAddress, System.nanoTime()));
 	}
 
 	@Override
-	public void setLightsOff(Locomotive locomotive) {
-		this.setLocoFunction(locomotive, (byte) 0, FunctionSwitchingType.OFF);
+	public CompletableFuture<Boolean> isLightOn(Locomotive locomotive) {
+		return getLocoState(locomotive).thenApply(LocoState::isLightOn);
 	}
 
 	@Override
-	public void setLocoFunction(Locomotive locomotive, byte functionIndex, FunctionSwitchingType switchType) {
-		assert (functionIndex < 64);
-		byte message[] = new byte[10];
-		message[0] = (0x0A);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (byte) (0xe4);
-		message[5] = (byte) (0xf8);
-		message[6] = getAddressMSB(locomotive);
-		message[7] = getAddressLSB(locomotive);
-		switch (switchType) {
-		case OFF:
-			message[8] = functionIndex;
-			break;
-		case ON:
-			message[8] = (byte) ((0x40) | functionIndex);
-			break;
-		case SWITCH:
-			message[8] = (byte) (0x80 | functionIndex);
-			break;
-		}
-		message[9] = xor(message);
-		send(message);
-	}
-
-	private static byte[] generateLocoInfoMessage(Locomotive locomotive) {
-		byte message[] = new byte[14];
-		message[0] = (0x09);
-		message[1] = (0x00);
-		message[2] = (0x40);
-		message[3] = (0x00);
-		message[4] = (byte) (0xe3);
-		message[5] = (byte) (0xf0);
-		message[6] = getAddressMSB(locomotive);
-		message[7] = getAddressLSB(locomotive);
-		message[8] = xor(message);
-		return message;
+	public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive) {
+		return getLocoState(locomotive).thenApply(LocoState::getDccSpeed);
 	}
 
 	@Override
-	public boolean isLightOn(Locomotive locomotive) {
-		byte response[] = sendAndReceive(generateLocoInfoMessage(locomotive));
-		if ((response[9] & (0x10)) == (0x10)) {
-			return true;
-		}
-		return false;
+	public CompletableFuture<Boolean> getDirection(Locomotive locomotive) {
+		return getLocoState(locomotive).thenApply(LocoState::getDirection);
 	}
 
+	/**
+	 * @param turnoutAddress
+	 * @param output         - the requested position
+	 * @return the key of the LAN_X_TURNOUT_INFO that reports the position in
+	 *         the pendingRequests
+	 */
+	private static int getTurnoutKey(int turnoutAddress, boolean output) {
+		return getResponseKey((byte) (0x53), (turnoutAddress << 1) | (output ? 1 : 0));
+	}
+
+	/**
+	 * The position is read from the cache. Only a turnout without a reported
+	 * position is queried.
+	 */
 	@Override
-	public int getDccSpeed(Locomotive locomotive) {
-		byte[] response = sendAndReceive(generateLocoInfoMessage(locomotive));
-		return response[8] & ((byte) (0x7f));
+	public CompletableFuture<Boolean> getSwitchState(Switch switch_) {
+		int turnoutAddress = switch_.getDccAddress();
+		Boolean state = turnoutStates.get(turnoutAddress);
+		if (state != null) {
+			return CompletableFuture.completedFuture(state);
+		}
+		return sendAndReceive(Z21Encoder.TURNOUT_INFO_REQUEST_LENGTH,
+				buffer -> Z21Encoder.putTurnoutInfoRequest(buffer, turnoutAddress),
+				getResponseKey((byte) (0x43), turnoutAddress), turnoutRtt)
+				.thenApply(response -> (response[7] & 0x03) == 0x02);
 	}
 
+	/**
+	 * The command is batched, so all turnouts of a route that are set before the
+	 * next flush() leave in one datagram. The output is deactivated turnoutPulse
+	 * ms after the Z21 reported the new position.
+	 * 
+	 * @return completes when the Z21 reports the new position
+	 */
 	@Override
-	public boolean getDirection(Locomotive locomotive) {
-		byte[] response = sendAndReceive(generateLocoInfoMessage(locomotive));
-		if (((byte) (0x80) & response[8]) == (byte) (0x80)) {
-			return true;
+	public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState) {
+		int turnoutAddress = switch_.getDccAddress();
+		// A retransmission of the other position must not switch the turnout back
+		CompletableFuture<byte[]> other = pendingRequests.remove(getTurnoutKey(turnoutAddress, !SwitchState));
+		if (other != null) {
+			other.cancel(false);
 		}
-		return false;
+		CompletableFuture<byte[]> switched = sendAndReceive(Z21Encoder.TURNOUT_LENGTH,
+				buffer -> Z21Encoder.putTurnout(buffer, turnoutAddress, SwitchState, true),
+				getTurnoutKey(turnoutAddress, SwitchState), turnoutRtt, true);
+		switched.whenComplete((response, e) -> CompletableFuture
+				.delayedExecutor(turnoutPulse, TimeUnit.MILLISECONDS).execute(() -> {
+					if (closed) {
+						return;
+					}
+					synchronized (batcher) {
+						Z21Encoder.putTurnout(batcher.begin(Z21Encoder.TURNOUT_LENGTH), turnoutAddress, SwitchState,
+								false);
+						batcher.end();
+					}
+				}));
+		return switched.thenApply(response -> null);
 	}
 
+	/**
+	 * The batch is locked while the turnouts are set, so neither a deadline nor
+	 * another Thread can send a part of the route on its own. The route leaves
+	 * in one datagram, unless it does not fit into one.
+	 * 
+	 * @return completes when the Z21 reports all new positions
+	 */
 	@Override
-	public boolean getSwitchState(Switch switch_) {
-		// TODO Auto-generated method stub
-		assert(false);
-		return false;
+	public CompletableFuture<Void> setRoute(Switch[] switches, boolean[] states) {
+		assert (switches.length == states.length);
+		CompletableFuture<?>[] switched = new CompletableFuture<?>[switches.length];
+		synchronized (batcher) {
+			for (int i = 0; i < switches.length; i++) {
+				switched[i] = setSwitch(switches[i], states[i]);
+			}
+			batcher.flush();
+		}
+		return CompletableFuture.allOf(switched);
 	}
 
+	/**
+	 * Send all batched commands now. Call this at the end of a control tick.
+	 */
 	@Override
-	public void setSwitch(Switch switch_, boolean SwitchState) {
-		// TODO Auto-generated method stub
-		assert(false);
+	public void flush() {
+		batcher.flush();
+	}
 
+	/**
+	 * @return the sent commands per second in the last measured second
+	 */
+	public double getCommandsPerSecond() {
+		return batcher.getCommandsPerSecond();
+	}
+
+	/**
+	 * @return the sent datagrams with batched commands per second in the last
+	 *         measured second
+	 */
+	public double getPacketsPerSecond() {
+		return batcher.getPacketsPerSecond();
 	}
 
 	private void printBoadcastMessage(byte[] response) {
@@ -294,26 +531,61 @@ public class Z21 implements ControlUnit, Runnable {
 		System.out.println();
 	}
 	
-	private void resolveBoadcastMessage(byte[] response) {
-		
-		//Loco Info
-		if (response[4] == (byte) (0xef)) {
-			resolveLocoInfo(response);
+	private void handleLocoInfo(byte[] response) {
+		int dccAdress = demarshallAdress(response[5], response[6]);
+		LocoState state = LocoState.of(response, dccAdress, System.nanoTime());
+		locoStates.put(dccAdress, state);
+		completePendingRequest(response);
+		if (PRINT_BROADCASTS) {
+			printBoadcastMessage(response);
 		}
-		
-		//Track Power
-		else if(response[4] == (0x61)) {
-			if(response[5] == (0x00)) {
-				//TODO Track Power Off
-			}else {
-				//TODO Track Power On
+		modelUpdates.put(state);
+	}
+
+	private void handleTrackPower(byte[] response) {
+		completePendingRequest(response);
+		if (PRINT_BROADCASTS) {
+			printBoadcastMessage(response);
+		}
+		if(response[5] == (0x00)) {
+			//TODO Track Power Off
+		}else {
+			//TODO Track Power On
+		}
+	}
+
+	private void handleTurnoutInfo(byte[] response) {
+		int turnoutAddress = ((response[5] & 0xff) << 8) | (response[6] & 0xff);
+		int position = response[7] & 0x03;
+		if (position == 0x01 || position == 0x02) {
+			boolean output = position == 0x02;
+			turnoutStates.put(turnoutAddress, output);
+			CompletableFuture<byte[]> pending = pendingRequests.remove(getTurnoutKey(turnoutAddress, output));
+			if (pending != null) {
+				pending.complete(response);
 			}
+		} else {
+			turnoutStates.remove(turnoutAddress);
+		}
+		completePendingRequest(response);
+		if (PRINT_BROADCASTS) {
+			printBoadcastMessage(response);
+		}
+	}
+
+	private void handleOtherMessage(byte[] response) {
+		completePendingRequest(response);
+		if (PRINT_BROADCASTS) {
+			printBoadcastMessage(response);
 		}
 	}
 
 	private void printLocoInfo(byte[] response) {
 		int dccAdress = demarshallAdress(response[5], response[6]);
-		System.out.println("      Lok Name: " + Locomotive.getLocomotiveByDccAddress(dccAdress).getName());
+		Locomotive locomotive = Locomotive.getLocomotiveByDccAddress(dccAdress);
+		if (locomotive != null) {
+			System.out.println("      Lok Name: " + locomotive.getName());
+		}
 		System.out.println("      DCC Adresse: " + dccAdress);
 		// DB2
 		if (((0x08) & response[7]) == (0x08)) {
@@ -397,64 +669,48 @@ public class Z21 implements ControlUnit, Runnable {
 		}
 	}
 	
-	private void resolveLocoInfo(byte[] response) {
-		int dccAdress = demarshallAdress(response[5], response[6]);
-		Locomotive locomotive = Locomotive.getLocomotiveByDccAddress(dccAdress);
+	private void resolveLocoInfo(LocoState state) {
+		Locomotive locomotive = Locomotive.getLocomotiveByDccAddress(state.getDccAddress());
+		if (locomotive == null) {
+			return;
+		}
 		// DB2
 		
 		//Wird von Handregler gesteuert
 		//Daraus folgt, dass eine manuelle Geschwindigkeitsgrenze gesetzt wurde.
-		if (((0x08) & response[7]) == (0x08)) {
-			locomotive.setDccSpeedLimit((response[8] & ((byte) (0x7f))));
-			locomotive.updateDccSpeed((response[8] & ((byte) (0x7f))));
+		if (state.isControlledByHandRegulator()) {
+			locomotive.setDccSpeedLimit(state.getDccSpeed());
+			locomotive.updateDccSpeed(state.getDccSpeed());
 		//Wir nicht von Handregler gesteuert
 		//In diesem Fall hat das Programm die Geschwindigkeit gesetzt.
 		} else {
-			locomotive.updateDccSpeed((response[8] & ((byte) (0x7f))));
+			locomotive.updateDccSpeed(state.getDccSpeed());
 		}
 
-		//128 Fahrstufen
-		if (((0x04) & response[7]) == (0x04)) {
-			assert(true);
-		}
-		//28 Fahrstufen
-		 else if (((0x02) & response[7]) == (0x02)) {
-			assert(false);
-		}
-		//14 Fahrstufen
-		 else {
-			assert(false);
-		}
+		//Nur 128 Fahrstufen werden untersttzt
+		assert(state.getSpeedSteps() == 128);
 
 		// DB3
 		//Direction  Decoder
-		if (((byte) (0x80) & response[8]) == (byte) (0x80)) {
-			locomotive.updateDirectionDecoder(true);
-		} else {
-			locomotive.updateDirectionDecoder(false);
-		}
+		locomotive.updateDirectionDecoder(state.getDirection());
 	}
 
-	@Override
-	public void run() {
-
-		System.out.println("Start Z21 Broadcast Thread");
-		byte buffer[] = new byte[16];
-		DatagramPacket currentDatagram = new DatagramPacket(buffer, buffer.length);
-
-		while (!closed) {
-			try {
-				broadcastSocket.receive(currentDatagram);
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				// e.printStackTrace();
-			}
-			printBoadcastMessage(currentDatagram.getData());
-			resolveBoadcastMessage(currentDatagram.getData());
+	/**
+	 * Hand a message of the Z21 to the Thread waiting for it, if there is one.
+	 */
+	private void completePendingRequest(byte[] response) {
+		int address = 0;
+		if (response[4] == (byte) (0xef)) {
+			address = demarshallAdress(response[5], response[6]);
+		} else if (response[4] == (0x61)) {
+			address = response[5];
+		} else if (response[4] == (0x43)) {
+			address = ((response[5] & 0xff) << 8) | (response[6] & 0xff);
+		}
+		CompletableFuture<byte[]> pending = pendingRequests.remove(getResponseKey(response[4], address));
+		if (pending != null) {
+			pending.complete(response);
 		}
-		
-		System.out.println("Z21 Broadcast Thread terminated");
-
 	}
 
 }
@@ -0,0 +1,192 @@
+package sensorsAktuators;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the messages of the Z21 LAN protocol into a ByteBuffer without
+ * allocating anything. The address bytes of all dcc addresses are computed
+ * once, the XOR byte of a LAN_X message is computed while it is written. The
+ * buffer has to be in big endian order, which is the default of a ByteBuffer.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public final class Z21Encoder {
+
+	public static final int MAX_DCC_ADDRESS = 10239;
+	public static final int MAX_TURNOUT_ADDRESS = 4095;
+
+	public static final int BROADCAST_FLAGS_LENGTH = 8;
+	public static final int TRACK_POWER_LENGTH = 7;
+	public static final int STOP_LENGTH = 6;
+	public static final int LOCO_DRIVE_LENGTH = 10;
+	public static final int LOCO_FUNCTION_LENGTH = 10;
+	public static final int LOCO_INFO_REQUEST_LENGTH = 9;
+	public static final int TURNOUT_LENGTH = 9;
+	public static final int TURNOUT_INFO_REQUEST_LENGTH = 8;
+
+	private static final byte LAN_X_HEADER = 0x40;
+	/**
+	 * The first six bytes of LAN_X_SET_LOCO_DRIVE with 128 drive levels, shifted
+	 * to be followed by the address
+	 */
+	private static final long LOCO_DRIVE_HEADER = 0x0A004000E4130000L;
+	/**
+	 * The first six bytes of LAN_X_SET_LOCO_FUNCTION, shifted to be followed by
+	 * the address
+	 */
+	private static final long LOCO_FUNCTION_HEADER = 0x0A004000E4F80000L;
+	private static final byte LAN_SET_BROADCASTFLAGS = 0x50;
+
+	/**
+	 * The MSB in the high byte and the LSB in the low byte of each dcc address
+	 */
+	private static final short[] ADDRESS_BYTES = new short[MAX_DCC_ADDRESS + 1];
+
+	static {
+		for (int address = 0; address <= MAX_DCC_ADDRESS; address++) {
+			ADDRESS_BYTES[address] = (short) (((0xc0 | (address / 256)) << 8) | (address % 256));
+		}
+	}
+
+	private Z21Encoder() {
+	}
+
+	private static void putLanXHeader(ByteBuffer buffer, int length) {
+		buffer.put((byte) length);
+		buffer.put((byte) 0x00);
+		buffer.put(LAN_X_HEADER);
+		buffer.put((byte) 0x00);
+	}
+
+	/**
+	 * LAN_SET_BROADCASTFLAGS
+	 * 
+	 * @param buffer
+	 * @param flags  - written in little endian
+	 */
+	public static void putBroadcastFlags(ByteBuffer buffer, int flags) {
+		buffer.put((byte) BROADCAST_FLAGS_LENGTH);
+		buffer.put((byte) 0x00);
+		buffer.put(LAN_SET_BROADCASTFLAGS);
+		buffer.put((byte) 0x00);
+		buffer.put((byte) flags);
+		buffer.put((byte) (flags >> 8));
+		buffer.put((byte) (flags >> 16));
+		buffer.put((byte) (flags >> 24));
+	}
+
+	/**
+	 * LAN_X_SET_TRACK_POWER_OFF or LAN_X_SET_TRACK_POWER_ON
+	 */
+	public static void putTrackPower(ByteBuffer buffer, boolean on) {
+		byte db0 = on ? (byte) 0x81 : (byte) 0x80;
+		putLanXHeader(buffer, TRACK_POWER_LENGTH);
+		buffer.put((byte) 0x21);
+		buffer.put(db0);
+		buffer.put((byte) (0x21 ^ db0));
+	}
+
+	/**
+	 * LAN_X_SET_STOP
+	 */
+	public static void putStop(ByteBuffer buffer) {
+		putLanXHeader(buffer, STOP_LENGTH);
+		buffer.put((byte) 0x80);
+		buffer.put((byte) 0x80);
+	}
+
+	/**
+	 * LAN_X_SET_LOCO_DRIVE with 128 drive levels
+	 * 
+	 * @param buffer
+	 * @param dccAddress
+	 * @param directionDecoder
+	 * @param dccSpeed
+	 */
+	public static void putLocoDrive(ByteBuffer buffer, int dccAddress, boolean directionDecoder, int dccSpeed) {
+		int address = ADDRESS_BYTES[dccAddress] & 0xffff;
+		int speed = (directionDecoder ? 0x80 | dccSpeed : dccSpeed) & 0xff;
+		int xor = (0xe4 ^ 0x13 ^ (address >> 8) ^ address ^ speed) & 0xff;
+		buffer.putLong(LOCO_DRIVE_HEADER | address);
+		buffer.putShort((short) ((speed << 8) | xor));
+	}
+
+	/**
+	 * LAN_X_SET_LOCO_FUNCTION
+	 * 
+	 * @param buffer
+	 * @param dccAddress
+	 * @param functionIndex
+	 * @param switchType
+	 */
+	public static void putLocoFunction(ByteBuffer buffer, int dccAddress, byte functionIndex,
+			FunctionSwitchingType switchType) {
+		int address = ADDRESS_BYTES[dccAddress] & 0xffff;
+		int function = functionIndex & 0xff;
+		switch (switchType) {
+		case OFF:
+			function = functionIndex & 0xff;
+			break;
+		case ON:
+			function = ((0x40) | functionIndex) & 0xff;
+			break;
+		case SWITCH:
+			function = (0x80 | functionIndex) & 0xff;
+			break;
+		}
+		int xor = (0xe4 ^ 0xf8 ^ (address >> 8) ^ address ^ function) & 0xff;
+		buffer.putLong(LOCO_FUNCTION_HEADER | address);
+		buffer.putShort((short) ((function << 8) | xor));
+	}
+
+	/**
+	 * LAN_X_GET_LOCO_INFO
+	 * 
+	 * @param buffer
+	 * @param dccAddress
+	 */
+	public static void putLocoInfoRequest(ByteBuffer buffer, int dccAddress) {
+		short address = ADDRESS_BYTES[dccAddress];
+		putLanXHeader(buffer, LOCO_INFO_REQUEST_LENGTH);
+		buffer.put((byte) 0xe3);
+		buffer.put((byte) 0xf0);
+		buffer.putShort(address);
+		buffer.put((byte) (0xe3 ^ 0xf0 ^ (address >> 8) ^ address));
+	}
+
+	/**
+	 * LAN_X_SET_TURNOUT in queue mode, so the Z21 switches the turnouts of a
+	 * datagram one after the other
+	 * 
+	 * @param buffer
+	 * @param turnoutAddress - the address of the protocol, one less than shown by
+	 *                       the Z21 app
+	 * @param output         - false for output 1, true for output 2
+	 * @param activate       - false to deactivate the output again
+	 */
+	public static void putTurnout(ByteBuffer buffer, int turnoutAddress, boolean output, boolean activate) {
+		assert (0 <= turnoutAddress && turnoutAddress <= MAX_TURNOUT_ADDRESS);
+		int db2 = 0xa0 | (activate ? 0x08 : 0x00) | (output ? 0x01 : 0x00);
+		putLanXHeader(buffer, TURNOUT_LENGTH);
+		buffer.put((byte) 0x53);
+		buffer.putShort((short) turnoutAddress);
+		buffer.put((byte) db2);
+		buffer.put((byte) (0x53 ^ (turnoutAddress >> 8) ^ turnoutAddress ^ db2));
+	}
+
+	/**
+	 * LAN_X_GET_TURNOUT_INFO
+	 * 
+	 * @param buffer
+	 * @param turnoutAddress
+	 */
+	public static void putTurnoutInfoRequest(ByteBuffer buffer, int turnoutAddress) {
+		assert (0 <= turnoutAddress && turnoutAddress <= MAX_TURNOUT_ADDRESS);
+		putLanXHeader(buffer, TURNOUT_INFO_REQUEST_LENGTH);
+		buffer.put((byte) 0x43);
+		buffer.putShort((short) turnoutAddress);
+		buffer.put((byte) (0x43 ^ (turnoutAddress >> 8) ^ turnoutAddress));
+	}
+}
@@ -0,0 +1,154 @@
+package sensorsAktuators;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Receives the datagrams of the Z21 on a non-blocking DatagramChannel. Each
+ * datagram can contain several messages, each starting with its length. A
+ * LAN_X message is dispatched by its X-header to its MessageHandler, all other
+ * messages to the default MessageHandler.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+class Z21Receiver implements Runnable {
+
+	interface MessageHandler {
+		/**
+		 * @param message - a single message. The array has at least 16 bytes,
+		 *                the bytes after the message are 0.
+		 */
+		void handle(byte[] message);
+	}
+
+	private static final int MIN_MESSAGE_ARRAY_LENGTH = 16;
+	/**
+	 * Buffers bursts of the Z21 while a datagram is handled
+	 */
+	private static final int RECEIVE_BUFFER_SIZE = 1 << 20;
+
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final ByteBuffer datagram = ByteBuffer.allocateDirect(CommandBatcher.MAX_DATAGRAM_SIZE);
+	private final MessageHandler[] lanXHandlers = new MessageHandler[256];
+	private MessageHandler defaultHandler = message -> {
+	};
+	private volatile boolean closed = false;
+	private volatile long receivedMessages = 0;
+
+	/**
+	 * @param channel - is switched to non-blocking
+	 * @throws IOException
+	 */
+	Z21Receiver(DatagramChannel channel) throws IOException {
+		this.channel = channel;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Set the handlers before the receiver is started
+	 */
+	void setLanXHandler(byte xHeader, MessageHandler handler) {
+		lanXHandlers[xHeader & 0xff] = handler;
+	}
+
+	void setDefaultHandler(MessageHandler handler) {
+		defaultHandler = handler;
+	}
+
+	/**
+	 * @return the number of received messages
+	 */
+	long getReceivedMessages() {
+		return receivedMessages;
+	}
+
+	void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		System.out.println("Start Z21 Broadcast Thread");
+		while (!closed) {
+			try {
+				selector.select();
+				selector.selectedKeys().clear();
+				receiveAll();
+			} catch (IOException e) {
+				if (!closed) {
+					e.printStackTrace();
+				}
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println("Z21 Broadcast Thread terminated");
+	}
+
+	/**
+	 * Receive until no datagram is left in the channel
+	 */
+	private void receiveAll() throws IOException {
+		while (!closed) {
+			datagram.clear();
+			try {
+				if (channel.receive(datagram) == null) {
+					return;
+				}
+			} catch (PortUnreachableException e) {
+				// The Z21 is not reachable, the pending requests time out
+				continue;
+			}
+			datagram.flip();
+			dispatch(datagram);
+		}
+	}
+
+	/**
+	 * Dispatch all messages of a datagram. A truncated message at the end is
+	 * dropped.
+	 * 
+	 * @param datagram - from its position to its limit
+	 */
+	void dispatch(ByteBuffer datagram) {
+		while (datagram.remaining() >= 4) {
+			int position = datagram.position();
+			int length = (datagram.get(position) & 0xff) | ((datagram.get(position + 1) & 0xff) << 8);
+			if (length < 4 || length > datagram.remaining()) {
+				return;
+			}
+			byte[] message = new byte[Math.max(length, MIN_MESSAGE_ARRAY_LENGTH)];
+			datagram.get(message, 0, length);
+			receivedMessages++;
+
+			MessageHandler handler = null;
+			if (length >= 5 && message[2] == 0x40 && message[3] == 0x00) {
+				handler = lanXHandlers[message[4] & 0xff];
+			}
+			if (handler == null) {
+				handler = defaultHandler;
+			}
+			try {
+				handler.handle(message);
+			} catch (RuntimeException e) {
+				// A broken message must not stop the receiving
+				e.printStackTrace();
+			}
+		}
+	}
+}
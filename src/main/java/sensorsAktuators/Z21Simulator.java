@@ -0,0 +1,404 @@
+package sensorsAktuators;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the Z21 on localhost to test the Z21 client without the
+ * command station. It understands the LAN messages the client sends:
+ * LAN_SET_BROADCASTFLAGS, LAN_X_SET_TRACK_POWER_OFF/ON, LAN_X_SET_STOP,
+ * LAN_X_SET_LOCO_DRIVE, LAN_X_SET_LOCO_FUNCTION, LAN_X_GET_LOCO_INFO,
+ * LAN_X_SET_TURNOUT and LAN_X_GET_TURNOUT_INFO. Like the Z21 it sends a
+ * LAN_X_LOCO_INFO to every client that asked for the locomotive or subscribed
+ * all locomotives whenever a locomotive changes, and a LAN_X_TURNOUT_INFO to
+ * every client that subscribed switching whenever a turnout is switched.
+ * <p>
+ * Every received and sent datagram is lost with the configured probability.
+ * Every sent datagram is delayed by the latency plus a random jitter.
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class Z21Simulator implements Runnable, AutoCloseable {
+
+	public static final int DEFAULT_PORT = 21105;
+
+	private static final int BROADCAST_DRIVING_SWITCHING = 0x00000001;
+	private static final int BROADCAST_ALL_LOCOS = 0x00010000;
+
+	/**
+	 * The state of a simulated decoder
+	 */
+	private static final class SimulatedLoco {
+		/**
+		 * The drive level with the direction in bit 7, like in DB3 of
+		 * LAN_X_LOCO_INFO
+		 */
+		private int speed = 0x80;
+		/**
+		 * Bit i is set, if the function Fi is on
+		 */
+		private long functions = 0;
+	}
+
+	private final DatagramChannel channel;
+	private final ScheduledExecutorService delayedSender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Z21Simulator Sender");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Random random = new Random();
+	private volatile int latency;
+	private volatile int jitter;
+	private volatile double loss;
+	private volatile boolean closed = false;
+
+	// Only used by the Thread of the simulator
+	private final Map<Integer, SimulatedLoco> locos = new HashMap<>();
+	private final Map<SocketAddress, Integer> broadcastFlags = new HashMap<>();
+	private final Map<SocketAddress, Set<Integer>> subscriptions = new HashMap<>();
+	private final Set<SocketAddress> clients = new HashSet<>();
+	/**
+	 * The position of each switched turnout like in LAN_X_TURNOUT_INFO: 1 for
+	 * output 1, 2 for output 2
+	 */
+	private final Map<Integer, Integer> turnouts = new HashMap<>();
+	private boolean trackPower = true;
+
+	private final AtomicLong receivedDatagrams = new AtomicLong();
+	private final AtomicLong receivedMessages = new AtomicLong();
+	private final AtomicLong sentMessages = new AtomicLong();
+	private final AtomicLong lostDatagrams = new AtomicLong();
+	private final AtomicLong invalidMessages = new AtomicLong();
+
+	/**
+	 * @param port    - on localhost, 0 for any free port
+	 * @param latency - in ms, that every sent datagram is delayed
+	 * @param jitter  - in ms, that is randomly added to the latency
+	 * @param loss    - the probability from 0 to 1 that a datagram is lost
+	 * @throws IOException
+	 */
+	public Z21Simulator(int port, int latency, int jitter, double loss) throws IOException {
+		channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		setNetwork(latency, jitter, loss);
+	}
+
+	/**
+	 * Change the simulated network while the simulator runs
+	 */
+	public void setNetwork(int latency, int jitter, double loss) {
+		assert (latency >= 0 && jitter >= 0);
+		assert (0 <= loss && loss <= 1);
+		this.latency = latency;
+		this.jitter = jitter;
+		this.loss = loss;
+	}
+
+	public int getPort() throws IOException {
+		return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Start the simulator in a new Thread
+	 *
+	 * @return the Thread of the simulator
+	 */
+	public Thread start() {
+		Thread thread = new Thread(this, "Z21Simulator");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		delayedSender.shutdownNow();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return the number of received datagrams, that were not lost
+	 */
+	public long getReceivedDatagrams() {
+		return receivedDatagrams.get();
+	}
+
+	public long getReceivedMessages() {
+		return receivedMessages.get();
+	}
+
+	public long getSentMessages() {
+		return sentMessages.get();
+	}
+
+	public long getLostDatagrams() {
+		return lostDatagrams.get();
+	}
+
+	/**
+	 * @return the number of received messages with an unknown header or a
+	 *         wrong XOR byte
+	 */
+	public long getInvalidMessages() {
+		return invalidMessages.get();
+	}
+
+	@Override
+	public void run() {
+		System.out.println("Z21Simulator started");
+		ByteBuffer datagram = ByteBuffer.allocate(CommandBatcher.MAX_DATAGRAM_SIZE);
+		while (!closed) {
+			datagram.clear();
+			SocketAddress client;
+			try {
+				client = channel.receive(datagram);
+			} catch (ClosedChannelException e) {
+				break;
+			} catch (IOException e) {
+				e.printStackTrace();
+				continue;
+			}
+			if (isLost()) {
+				continue;
+			}
+			receivedDatagrams.incrementAndGet();
+			clients.add(client);
+			datagram.flip();
+			while (datagram.remaining() >= 4) {
+				int length = (datagram.get(datagram.position()) & 0xff)
+						| ((datagram.get(datagram.position() + 1) & 0xff) << 8);
+				if (length < 4 || length > datagram.remaining()) {
+					invalidMessages.incrementAndGet();
+					break;
+				}
+				byte[] message = new byte[length];
+				datagram.get(message);
+				receivedMessages.incrementAndGet();
+				handle(client, message);
+			}
+		}
+		System.out.println("Z21Simulator terminated");
+	}
+
+	private boolean isLost() {
+		if (loss > 0 && random.nextDouble() < loss) {
+			lostDatagrams.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	private void handle(SocketAddress client, byte[] message) {
+		if (message[2] == 0x50 && message.length == 8) {
+			int flags = (message[4] & 0xff) | (message[5] & 0xff) << 8 | (message[6] & 0xff) << 16
+					| (message[7] & 0xff) << 24;
+			broadcastFlags.put(client, flags);
+			return;
+		}
+		if (message[2] != 0x40 || message.length < 6 || !hasValidXor(message)) {
+			invalidMessages.incrementAndGet();
+			return;
+		}
+		int xHeader = message[4] & 0xff;
+		int db0 = message[5] & 0xff;
+		if (xHeader == 0x21 && (db0 == 0x80 || db0 == 0x81)) {
+			trackPower = db0 == 0x81;
+			byte[] response = { 0x07, 0x00, 0x40, 0x00, 0x61, (byte) (trackPower ? 0x01 : 0x00),
+					(byte) (trackPower ? 0x60 : 0x61) };
+			sendToSenderAndSubscribers(client, response);
+		} else if (xHeader == 0x80) {
+			byte[] response = { 0x07, 0x00, 0x40, 0x00, (byte) 0x81, 0x00, (byte) 0x81 };
+			sendToSenderAndSubscribers(client, response);
+			// The locomotives stop, but keep their direction
+			for (Map.Entry<Integer, SimulatedLoco> entry : locos.entrySet()) {
+				if ((entry.getValue().speed & 0x7f) != 0) {
+					entry.getValue().speed = entry.getValue().speed & 0x80;
+					broadcastLocoInfo(entry.getKey());
+				}
+			}
+		} else if (xHeader == 0xe4 && db0 == 0x13 && message.length == 10) {
+			int address = getAddress(message);
+			SimulatedLoco loco = getLoco(address);
+			int speed = message[8] & 0xff;
+			if (loco.speed != speed) {
+				loco.speed = speed;
+				broadcastLocoInfo(address);
+			}
+		} else if (xHeader == 0xe4 && db0 == 0xf8 && message.length == 10) {
+			int address = getAddress(message);
+			SimulatedLoco loco = getLoco(address);
+			int function = message[8] & 0x3f;
+			long bit = 1L << function;
+			switch ((message[8] & 0xc0) >> 6) {
+			case 0:
+				loco.functions = loco.functions & ~bit;
+				break;
+			case 1:
+				loco.functions = loco.functions | bit;
+				break;
+			case 2:
+				loco.functions = loco.functions ^ bit;
+				break;
+			default:
+				invalidMessages.incrementAndGet();
+				return;
+			}
+			broadcastLocoInfo(address);
+		} else if (xHeader == 0xe3 && db0 == 0xf0 && message.length == 9) {
+			int address = getAddress(message);
+			subscriptions.computeIfAbsent(client, c -> new HashSet<>()).add(address);
+			send(client, generateLocoInfo(address));
+		} else if (xHeader == 0x53 && message.length == 9) {
+			int address = getTurnoutAddress(message);
+			// Only the activation switches, the deactivation just ends the pulse
+			if ((message[7] & 0x08) != 0) {
+				turnouts.put(address, (message[7] & 0x01) + 1);
+				sendToSenderAndSubscribers(client, generateTurnoutInfo(address));
+			}
+		} else if (xHeader == 0x43 && message.length == 8) {
+			send(client, generateTurnoutInfo(getTurnoutAddress(message)));
+		} else {
+			invalidMessages.incrementAndGet();
+		}
+	}
+
+	private static int getTurnoutAddress(byte[] message) {
+		return (message[5] & 0xff) << 8 | (message[6] & 0xff);
+	}
+
+	/**
+	 * LAN_X_TURNOUT_INFO
+	 */
+	private byte[] generateTurnoutInfo(int address) {
+		byte position = (byte) (int) turnouts.getOrDefault(address, 0);
+		byte[] message = { 0x09, 0x00, 0x40, 0x00, 0x43, (byte) (address >> 8), (byte) address, position, 0 };
+		message[8] = (byte) (message[4] ^ message[5] ^ message[6] ^ message[7]);
+		return message;
+	}
+
+	private static boolean hasValidXor(byte[] message) {
+		byte xor = 0;
+		for (int i = 4; i < message.length - 1; i++) {
+			xor = (byte) (xor ^ message[i]);
+		}
+		return xor == message[message.length - 1];
+	}
+
+	private static int getAddress(byte[] message) {
+		return (message[6] & 0x3f) << 8 | (message[7] & 0xff);
+	}
+
+	private SimulatedLoco getLoco(int address) {
+		return locos.computeIfAbsent(address, a -> new SimulatedLoco());
+	}
+
+	/**
+	 * LAN_X_LOCO_INFO with 128 drive levels
+	 */
+	private byte[] generateLocoInfo(int address) {
+		SimulatedLoco loco = getLoco(address);
+		byte[] message = new byte[14];
+		message[0] = 0x0e;
+		message[2] = 0x40;
+		message[4] = (byte) 0xef;
+		message[5] = (byte) ((address >> 8) & 0x3f);
+		message[6] = (byte) address;
+		message[7] = 0x04;
+		message[8] = (byte) loco.speed;
+		// F0 is bit 4, F1 to F4 are bits 0 to 3
+		message[9] = (byte) (((loco.functions & 0x01) << 4) | ((loco.functions >> 1) & 0x0f));
+		message[10] = (byte) (loco.functions >> 5);
+		message[11] = (byte) (loco.functions >> 13);
+		message[12] = (byte) (loco.functions >> 21);
+		byte xor = 0;
+		for (int i = 4; i < 13; i++) {
+			xor = (byte) (xor ^ message[i]);
+		}
+		message[13] = xor;
+		return message;
+	}
+
+	private void broadcastLocoInfo(int address) {
+		byte[] message = generateLocoInfo(address);
+		for (SocketAddress client : clients) {
+			int flags = broadcastFlags.getOrDefault(client, 0);
+			Set<Integer> subscribed = subscriptions.get(client);
+			if ((flags & BROADCAST_ALL_LOCOS) != 0 || (subscribed != null && subscribed.contains(address))) {
+				send(client, message);
+			}
+		}
+	}
+
+	private void sendToSenderAndSubscribers(SocketAddress sender, byte[] message) {
+		for (SocketAddress client : clients) {
+			if (client.equals(sender)
+					|| (broadcastFlags.getOrDefault(client, 0) & BROADCAST_DRIVING_SWITCHING) != 0) {
+				send(client, message);
+			}
+		}
+	}
+
+	private void send(SocketAddress client, byte[] message) {
+		if (isLost()) {
+			return;
+		}
+		int delay = latency;
+		if (jitter > 0) {
+			delay = delay + random.nextInt(jitter + 1);
+		}
+		if (delay == 0) {
+			sendNow(client, message);
+		} else {
+			delayedSender.schedule(() -> sendNow(client, message), delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void sendNow(SocketAddress client, byte[] message) {
+		try {
+			channel.send(ByteBuffer.wrap(message), client);
+			sentMessages.incrementAndGet();
+		} catch (IOException e) {
+			if (!closed) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Run the simulator until the process is stopped
+	 *
+	 * @param args - [port [latency [jitter [loss]]]]
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int latency = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int jitter = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+		double loss = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+		Z21Simulator simulator = new Z21Simulator(port, latency, jitter, loss);
+		System.out.println("Z21Simulator listens on 127.0.0.1:" + simulator.getPort() + " with " + latency
+				+ " ms latency, " + jitter + " ms jitter and " + loss + " loss");
+		simulator.run();
+	}
+}
@@ -0,0 +1,151 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Position;
+import modelling.Track;
+import modelling.TrainScope;
+import sensorsAktuators.AsyncControlUnit;
+import sensorsAktuators.BlockingControlUnit;
+
+/**
+ * Measures how many TrainScopes keep their tick period in each
+ * SpeedControlMode. Every locomotive drives on its own ring of tracks, so the
+ * TrainScopes never meet. The control unit is replaced by one that blocks for
+ * a while on every speed command, like a synchronous network call, and counts
+ * the commands. Each tick sends one speed command per locomotive, so the
+ * achieved ticks per second are the commands per second.
+ * <p>
+ * To fix the number of cores run it with -XX:ActiveProcessorCount=n. The
+ * StoreHandler stores into the serializedObjects directory of the working
+ * directory, so run it in a directory with nothing else than an empty one.
+ * <p>
+ * Arguments: [blocking ms [scopes...]]
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class SpeedControlBenchmark {
+
+	private static final int WARMUP = 1000;
+	private static final int DURATION = 5000;
+
+	private static final AtomicLong speedCommands = new AtomicLong();
+	private static volatile int blocking;
+	private static int nextDccAddress = 1;
+
+	public static void main(String[] args) throws Exception {
+		blocking = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		int[] scopes = { 50, 200, 800 };
+		if (args.length > 1) {
+			scopes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				scopes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Field anlageID = Main.class.getDeclaredField("anlageID");
+		anlageID.setAccessible(true);
+		anlageID.set(null, "SpeedControlBenchmark");
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = (AsyncControlUnit) Proxy.newProxyInstance(
+				SpeedControlBenchmark.class.getClassLoader(), new Class<?>[] { AsyncControlUnit.class },
+				(proxy, method, methodArgs) -> {
+					switch (method.getName()) {
+					case "setDccSpeed":
+						speedCommands.incrementAndGet();
+						Thread.sleep(blocking);
+						return CompletableFuture.completedFuture(null);
+					case "getDccSpeed":
+						return CompletableFuture.completedFuture(0);
+					case "close":
+						return null;
+					default:
+						if (method.getName().startsWith("get") || method.getName().startsWith("is")) {
+							return CompletableFuture.completedFuture(false);
+						}
+						return CompletableFuture.completedFuture(null);
+					}
+				});
+		Main.controlUnit = new BlockingControlUnit(Main.asyncControlUnit);
+		StoreHandler.open();
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		PrintStream out = System.out;
+		out.printf("%d cores, %d ms blocking per speed command, %d ms tick period%n", cores, blocking,
+				TrainScope.DEFAULT_TICK_PERIOD);
+		out.printf("%-16s %6s %12s %12s %8s %8s%n", "mode", "scopes", "expected/s", "ticks/s", "ratio", "threads");
+		for (TrainScope.SpeedControlMode mode : TrainScope.SpeedControlMode.values()) {
+			for (int n : scopes) {
+				// The TrainScopes print every start, stop and five seconds
+				System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+				Result result;
+				try {
+					result = run(mode, n);
+				} finally {
+					System.setOut(out);
+				}
+				double expected = n * 1000.0 / TrainScope.DEFAULT_TICK_PERIOD;
+				out.printf("%-16s %6d %12.0f %12.0f %8.2f %8d%n", mode, n, expected, result.ticksPerSecond,
+						result.ticksPerSecond / expected, result.threads);
+			}
+		}
+
+		StoreHandler.close();
+		// The Threads of the StoreHandler would keep running
+		System.exit(0);
+	}
+
+	private static class Result {
+		private final double ticksPerSecond;
+		private final int threads;
+
+		private Result(double ticksPerSecond, int threads) {
+			this.ticksPerSecond = ticksPerSecond;
+			this.threads = threads;
+		}
+	}
+
+	private static Result run(TrainScope.SpeedControlMode mode, int n) throws Exception {
+		TrainScope.SPEED_CONTROL_MODE = mode;
+		List<Locomotive> locomotives = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			Node first = new Node();
+			Node second = new Node();
+			Node third = new Node();
+			Track track = new Track(first, second, 1, 50);
+			new Track(second, third, 1, 50);
+			new Track(third, first, 1, 50);
+			Locomotive locomotive = new Locomotive("Benchmark " + nextDccAddress, 0.2, 30,
+					new Position(track.getCurrentTrackEdge(), 0.5), nextDccAddress++);
+			locomotive.setDccSpeedLimit(100);
+			locomotives.add(locomotive);
+		}
+
+		Thread.sleep(WARMUP);
+		long commands = speedCommands.get();
+		long start = System.nanoTime();
+		Thread.sleep(DURATION);
+		double ticksPerSecond = (speedCommands.get() - commands) / ((System.nanoTime() - start) / 1e9);
+		// Virtual Threads are not counted, only their carriers
+		int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+		for (Locomotive locomotive : locomotives) {
+			locomotive.getTrainScope().closeSpeedControlThread();
+		}
+		return new Result(ticksPerSecond, threads);
+	}
+}
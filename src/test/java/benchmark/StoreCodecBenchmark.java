@@ -0,0 +1,81 @@
+package benchmark;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import main.SnapshotFormat;
+import main.StoreCodec;
+
+/**
+ * Compares the encode and decode time and the size of all snapshot formats. The
+ * snapshots in serializedObjects/ are used as input.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class StoreCodecBenchmark {
+
+	private static final int SNAPSHOT_MAGIC = 0x4E545331;
+	private static final int SNAPSHOT_HEADER_LENGTH = 20;
+	private static final int WARMUP_ITERATIONS = 2000;
+	private static final int ITERATIONS = 5000;
+
+	public static void main(String[] args) throws Exception {
+		File[] files = new File("serializedObjects").listFiles((dir, name) -> name.endsWith(".ser"));
+		if (files == null) {
+			System.out.println("No snapshots found in serializedObjects/");
+			return;
+		}
+		Arrays.sort(files);
+		for (File file : files) {
+			byte[] snapshot = withoutHeader(Files.readAllBytes(file.toPath()));
+			List<Serializable> objects = SnapshotFormat.of(snapshot).getCodec().decode(snapshot).getObjects();
+			System.out.println(file.getName() + " (" + objects.size() + " stored Objects)");
+			for (SnapshotFormat format : SnapshotFormat.values()) {
+				benchmark(format, objects);
+			}
+			System.out.println();
+		}
+		// Loading a snapshot opens the StoreHandler
+		System.exit(0);
+	}
+
+	private static void benchmark(SnapshotFormat format, List<Serializable> objects) throws Exception {
+		StoreCodec codec = format.getCodec();
+		byte[] encoded = codec.encode(objects, 1);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			codec.decode(codec.encode(objects, 1));
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			encoded = codec.encode(objects, 1);
+		}
+		long encodeTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			codec.decode(encoded);
+		}
+		long decodeTime = System.nanoTime() - start;
+
+		System.out.printf("  %-20s %8d bytes   encode %8.1f us   decode %8.1f us%n", format, encoded.length,
+				encodeTime / 1000.0 / ITERATIONS, decodeTime / 1000.0 / ITERATIONS);
+	}
+
+	/**
+	 * Snapshots written by the StoreHandler start with a header, older ones
+	 * don't.
+	 */
+	private static byte[] withoutHeader(byte[] bytes) {
+		if (bytes.length >= SNAPSHOT_HEADER_LENGTH && ((bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16
+				| (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff)) == SNAPSHOT_MAGIC) {
+			return Arrays.copyOfRange(bytes, SNAPSHOT_HEADER_LENGTH, bytes.length);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,179 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Position;
+import modelling.Switch;
+import modelling.Track;
+import modelling.TrainScope;
+import sensorsAktuators.AsyncControlUnit;
+import sensorsAktuators.BlockingControlUnit;
+import sensorsAktuators.FunctionSwitchingType;
+
+/**
+ * Measures the bytes a TrainScope allocates per tick of its speed control. A
+ * locomotive drives around a ring of tracks, and the ticks are called one
+ * millisecond apart by this benchmark instead of the speed control. The bytes
+ * are taken from the allocation counter of the Thread, so the JIT has to
+ * compile the tick first. The information printed every five seconds is not
+ * counted. The StoreHandler stores into the serializedObjects directory of the
+ * working directory, so run it in a directory with nothing else than an empty
+ * one.
+ * <p>
+ * Arguments: [warmup ticks [measured ticks]]
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class TickAllocationBenchmark {
+
+	/**
+	 * Answers all requests at once without allocating
+	 */
+	private static class NullControlUnit implements AsyncControlUnit {
+		private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+		private static final CompletableFuture<Boolean> FALSE = CompletableFuture.completedFuture(false);
+		private static final CompletableFuture<Integer> ZERO = CompletableFuture.completedFuture(0);
+
+		@Override
+		public CompletableFuture<Void> setTrackPowerOff() {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setTrackPowerOn() {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> stop() {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed) {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setLightsOn(Locomotive locomotive) {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setLightsOff(Locomotive locomotive) {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+				FunctionSwitchingType switchType) {
+			return DONE;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> isLightOn(Locomotive locomotive) {
+			return FALSE;
+		}
+
+		@Override
+		public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive) {
+			return ZERO;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> getDirection(Locomotive locomotive) {
+			return FALSE;
+		}
+
+		@Override
+		public CompletableFuture<Boolean> getSwitchState(Switch switch_) {
+			return FALSE;
+		}
+
+		@Override
+		public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState) {
+			return DONE;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static final Object[] NO_ARGUMENTS = {};
+
+	public static void main(String[] args) throws Exception {
+		int warmup = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int measured = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		Field anlageID = Main.class.getDeclaredField("anlageID");
+		anlageID.setAccessible(true);
+		anlageID.set(null, "TickAllocationBenchmark");
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = new NullControlUnit();
+		Main.controlUnit = new BlockingControlUnit(Main.asyncControlUnit);
+		StoreHandler.CHECKPOINT_INTERVAL = Long.MAX_VALUE / 2000000;
+		StoreHandler.open();
+
+		Node first = new Node();
+		Node second = new Node();
+		Node third = new Node();
+		Track track = new Track(first, second, 1, 50);
+		new Track(second, third, 1, 50);
+		new Track(third, first, 1, 50);
+		Locomotive locomotive = new Locomotive("Benchmark", 0.2, 30, new Position(track.getCurrentTrackEdge(), 0.5), 1);
+		locomotive.setDccSpeedLimit(100);
+		TrainScope scope = locomotive.getTrainScope();
+		scope.closeSpeedControlThread();
+		Method tick = TrainScope.class.getDeclaredMethod("tick");
+		tick.setAccessible(true);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long bytes = 0;
+		long ticks = 0;
+		long freeTicks = 0;
+		long maxBytes = 0;
+		long lastInformation = System.nanoTime();
+		for (int i = 0; i < warmup + measured; i++) {
+			long next = System.nanoTime() + 1000000;
+			while (System.nanoTime() < next) {
+				Thread.onSpinWait();
+			}
+			long before = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			tick.invoke(scope, NO_ARGUMENTS);
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			if (start - lastInformation >= 4900000000L) {
+				// The tick may print its information
+				lastInformation = start;
+				continue;
+			}
+			if (i >= warmup) {
+				ticks++;
+				bytes += allocated;
+				maxBytes = Math.max(maxBytes, allocated);
+				if (allocated == 0) {
+					freeTicks++;
+				}
+			}
+		}
+
+		System.out.printf("%d ticks: %.1f bytes per tick, %.1f %% without allocation, at most %d bytes%n", ticks,
+				(double) bytes / ticks, 100.0 * freeTicks / ticks, maxBytes);
+
+		StoreHandler.close();
+		// The Threads of the StoreHandler would keep running
+		System.exit(0);
+	}
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+
+import sensorsAktuators.FunctionSwitchingType;
+import sensorsAktuators.Z21Encoder;
+
+/**
+ * Measures the encode throughput and the allocated bytes per message of the
+ * Z21Encoder. As a baseline a message is encoded like before: into a new array
+ * with the XOR over the whole array and wrapped into a new DatagramPacket.
+ * 
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class Z21EncoderBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5000000;
+	private static final int ITERATIONS = 20000000;
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Keeps the results alive
+	 */
+	private static long sink = 0;
+
+	private interface Encoder {
+		void encode(int i);
+	}
+
+	public static void main(String[] args) {
+		ByteBuffer datagram = ByteBuffer.allocateDirect(1472);
+		benchmark("array and DatagramPacket", i -> {
+			byte[] message = new byte[14];
+			message[0] = (0x0A);
+			message[2] = (0x40);
+			message[4] = (byte) (0xe4);
+			message[5] = (0x13);
+			message[6] = (byte) ((0xc0) | ((i & 0x3ff) / 256));
+			message[7] = (byte) ((i & 0x3ff) % 256);
+			message[8] = (byte) (0x80 | (i & 0x7f));
+			byte xor = 0;
+			for (int j = 0; j < message.length; j++) {
+				xor = (byte) (message[j] ^ xor);
+			}
+			message[9] = xor;
+			DatagramPacket packet = new DatagramPacket(message, message.length);
+			sink = sink + packet.getLength();
+		});
+		benchmark("Z21Encoder loco drive", i -> {
+			if (datagram.remaining() < Z21Encoder.LOCO_DRIVE_LENGTH) {
+				sink = sink + datagram.get(9);
+				datagram.clear();
+			}
+			Z21Encoder.putLocoDrive(datagram, i & 0x3ff, true, i & 0x7f);
+		});
+		datagram.clear();
+		benchmark("Z21Encoder loco function", i -> {
+			if (datagram.remaining() < Z21Encoder.LOCO_FUNCTION_LENGTH) {
+				sink = sink + datagram.get(9);
+				datagram.clear();
+			}
+			Z21Encoder.putLocoFunction(datagram, i & 0x3ff, (byte) (i & 0x1f), FunctionSwitchingType.ON);
+		});
+		System.out.println("(" + sink + ")");
+	}
+
+	private static void benchmark(String name, Encoder encoder) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			encoder.encode(i);
+		}
+		long threadId = Thread.currentThread().getId();
+		long allocated = THREADS.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			encoder.encode(i);
+		}
+		long time = System.nanoTime() - start;
+		allocated = THREADS.getThreadAllocatedBytes(threadId) - allocated;
+
+		System.out.printf("  %-26s %8.1f ns/message %8.1f M messages/s %8.2f bytes allocated/message%n", name,
+				(double) time / ITERATIONS, ITERATIONS * 1000.0 / time, (double) allocated / ITERATIONS);
+	}
+}
@@ -0,0 +1,98 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import main.Main;
+import main.StoreHandler;
+import sensorsAktuators.LocoState;
+import sensorsAktuators.Z21;
+import sensorsAktuators.Z21Simulator;
+
+/**
+ * Drives hundreds of locomotives of a Z21Simulator with the real Z21 client.
+ * Every tick all locomotives get a new speed, like the TrainScopes do. It
+ * measures the sent commands and datagrams per second and the latency of loco
+ * queries under that load. The StoreHandler stores into the working directory,
+ * so run it in an empty one.
+ * <p>
+ * Arguments: [locomotives [latency [jitter [loss]]]]
+ *
+ * @author David Lieb
+ * @author david.lieb.00@gmail.com
+ * @version 17.10.2026
+ */
+public class Z21LoadBenchmark {
+
+	private static final int TICK = 100;
+	private static final int TICKS = 100;
+	private static final int FIRST_ADDRESS = 1;
+
+	public static void main(String[] args) throws Exception {
+		int locomotives = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		int latency = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		int jitter = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		double loss = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+		Z21Simulator simulator = new Z21Simulator(0, latency, jitter, loss);
+		simulator.start();
+		Main.S21_IP4 = new byte[] { 127, 0, 0, 1 };
+		Main.S21_PORT = simulator.getPort();
+		Main.MAX_DCC_VALUES = 128;
+		// The received loco infos are resolved against the stored locomotives
+		StoreHandler.open();
+		Z21 z21 = new Z21();
+		Z21.LOCO_STATE_MAX_AGE = 0;
+
+		long[] queryLatencies = new long[TICKS];
+		long start = System.nanoTime();
+		for (int tick = 0; tick < TICKS; tick++) {
+			long tickStart = System.nanoTime();
+			for (int i = 0; i < locomotives; i++) {
+				int speed = 1 + (tick * 7 + i) % 120;
+				z21.setDccSpeed(FIRST_ADDRESS + i, (tick / 20 + i) % 2 == 0, speed);
+			}
+			z21.flush();
+
+			long queryStart = System.nanoTime();
+			CompletableFuture<LocoState> query = z21.getLocoState(FIRST_ADDRESS + tick % locomotives);
+			try {
+				query.join();
+				queryLatencies[tick] = System.nanoTime() - queryStart;
+			} catch (RuntimeException e) {
+				// Lost in all transmissions
+				queryLatencies[tick] = Long.MAX_VALUE;
+			}
+
+			long sleep = TICK - (System.nanoTime() - tickStart) / 1000000;
+			if (sleep > 0) {
+				Thread.sleep(sleep);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		Arrays.sort(queryLatencies);
+		System.out.printf("%d locomotives, %d ms latency, %d ms jitter, %.3f loss, %d ticks in %.1f s%n", locomotives,
+				latency, jitter, loss, TICKS, seconds);
+		System.out.printf("client:    %10.0f commands/s %10.0f datagrams/s%n", z21.getCommandsPerSecond(),
+				z21.getPacketsPerSecond());
+		System.out.printf("simulator: %10d commands   %10d sent messages %d lost datagrams %d invalid messages%n",
+				simulator.getReceivedMessages(), simulator.getSentMessages(), simulator.getLostDatagrams(),
+				simulator.getInvalidMessages());
+		System.out.printf("query:     p50 %s p99 %s%n", format(queryLatencies[TICKS / 2]),
+				format(queryLatencies[TICKS * 99 / 100]));
+		System.out.println("loco info: " + z21.getLocoInfoRtt());
+
+		z21.close();
+		simulator.close();
+		// The Threads of the StoreHandler would keep running
+		System.exit(0);
+	}
+
+	private static String format(long nanos) {
+		if (nanos == Long.MAX_VALUE) {
+			return "lost";
+		}
+		return String.format("%.2f ms", nanos / 1e6);
+	}
+}
@@ -0,0 +1,99 @@
+package mainTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Node;
+import modelling.Track;
+
+/**
+ * Damages the snapshot of a closed StoreHandler and checks which snapshot is
+ * loaded when it is opened again. The snapshot contains three Nodes, the backup
+ * only two.
+ */
+class SnapshotFileTest {
+
+	private static final Path SNAPSHOT = Paths.get("serializedObjects", "SnapshotFileTest.ser");
+	private static final Path BACKUP = Paths.get("serializedObjects", "SnapshotFileTest.ser.bak");
+	private static final Path LOG = Paths.get("serializedObjects", "SnapshotFileTest.log");
+
+	@Test
+	void testIntactSnapshot() throws Exception {
+		writeTwoSnapshots();
+		StoreHandler.open();
+		assertEquals(3, StoreHandler.getAll(Node.class).size());
+		finish();
+	}
+
+	@Test
+	void testDamagedSnapshot() throws Exception {
+		writeTwoSnapshots();
+		byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+		// A flipped bit in the payload, the header is still valid
+		snapshot[snapshot.length - 1] ^= 1;
+		Files.write(SNAPSHOT, snapshot);
+		StoreHandler.open();
+		assertEquals(2, StoreHandler.getAll(Node.class).size());
+		assertEquals(1, StoreHandler.getAll(Track.class).size());
+		finish();
+	}
+
+	@Test
+	void testTruncatedSnapshot() throws Exception {
+		writeTwoSnapshots();
+		byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+		Files.write(SNAPSHOT, Arrays.copyOf(snapshot, snapshot.length / 2));
+		StoreHandler.open();
+		assertEquals(2, StoreHandler.getAll(Node.class).size());
+		assertEquals(1, StoreHandler.getAll(Track.class).size());
+		finish();
+	}
+
+	/**
+	 * Store a Track with two Nodes, then add another Node. Each close() writes a
+	 * new snapshot and keeps the previous one as the backup.
+	 */
+	private static void writeTwoSnapshots() throws Exception {
+		if (StoreHandler.isOpen()) {
+			StoreHandler.close();
+		}
+		setAnlageID("SnapshotFileTest");
+		deleteFiles();
+		StoreHandler.open();
+		Node n1 = new Node();
+		Node n2 = new Node();
+		new Track(n1, n2, 1, 50);
+		StoreHandler.close();
+
+		StoreHandler.open();
+		new Node();
+		StoreHandler.close();
+	}
+
+	private static void finish() throws Exception {
+		StoreHandler.close();
+		deleteFiles();
+		setAnlageID(null);
+	}
+
+	private static void deleteFiles() throws Exception {
+		Files.deleteIfExists(SNAPSHOT);
+		Files.deleteIfExists(BACKUP);
+		Files.deleteIfExists(LOG);
+	}
+
+	private static void setAnlageID(String id) throws Exception {
+		Field anlageID = Main.class.getDeclaredField("anlageID");
+		anlageID.setAccessible(true);
+		anlageID.set(null, id);
+	}
+}
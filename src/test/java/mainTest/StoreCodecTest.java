@@ -0,0 +1,159 @@
+package mainTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import main.Main;
+import main.SnapshotFormat;
+import main.StoreCodec;
+import main.StoreHandler;
+import modelling.Balise;
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Position;
+import modelling.Switch;
+import modelling.Track;
+import modelling.TrainScope;
+import sensorsAktuators.AsyncControlUnit;
+
+class StoreCodecTest {
+
+	@Test
+	void testRoundTrip() throws Exception {
+		if(!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		List<Serializable> objects = Arrays.asList(t1, n1, n2);
+
+		for (SnapshotFormat format : SnapshotFormat.values()) {
+			StoreCodec codec = format.getCodec();
+			byte[] snapshot = codec.encode(objects, 42);
+			assertEquals(format, SnapshotFormat.of(snapshot));
+
+			StoreCodec.Snapshot content = codec.decode(snapshot);
+			assertEquals(42, content.getGeneration());
+			assertEquals(3, content.getObjects().size());
+			assertTrue(content.getObjects().get(0) instanceof Track);
+			assertTrue(content.getObjects().get(1) instanceof Node);
+			
+			Track t2 = (Track) content.getObjects().get(0);
+			assertNotSame(t1, t2);
+			// References inside the snapshot point to the same Objects again
+			assertSame(t2.getCurrentTrackEdge(), t2.getAllAscociatiedEdges()[0]);
+			assertSame(t2, t2.getCurrentTrackEdge().getOrigin());
+		}
+
+		t1.delete();
+		n1.delete();
+		n2.delete();
+		StoreHandler.close();
+	}
+
+	@Test
+	void testSwitchRoundTrip() throws Exception {
+		if(!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Switch s1 = new Switch(n1, n2, n3, 1, 1, 50, 30);
+		List<Serializable> objects = Arrays.asList(s1, n1, n2, n3);
+
+		for (SnapshotFormat format : SnapshotFormat.values()) {
+			StoreCodec codec = format.getCodec();
+			StoreCodec.Snapshot content = codec.decode(codec.encode(objects, 7));
+			Switch s2 = (Switch) content.getObjects().get(0);
+			// A switch without a turnout keeps its address -1, not 0
+			assertEquals(-1, s2.getDccAddress());
+			assertEquals(s1.getState(), s2.getState());
+			// The current edge is one of the associated edges, not a copy
+			assertSame(s2.getCurrentTrackEdge(), s2.getAllAscociatiedEdges()[0]);
+			assertSame(s2, s2.getAllAscociatiedEdges()[1].getOrigin());
+		}
+
+		s1.delete();
+		n1.delete();
+		n2.delete();
+		n3.delete();
+		StoreHandler.close();
+	}
+
+	/**
+	 * A layout with Objects in all chunks of the ChunkedCodec, that reference each
+	 * other across the chunks. The chunks are decoded in parallel and must give
+	 * the same layout as the single stream of the BinaryCodec.
+	 */
+	@Test
+	void testChunksRoundTrip() throws Exception {
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = (AsyncControlUnit) Proxy.newProxyInstance(StoreCodecTest.class.getClassLoader(),
+				new Class<?>[] { AsyncControlUnit.class }, (proxy, method, args) -> {
+					if (method.getName().equals("getDccSpeed")) {
+						return CompletableFuture.completedFuture(0);
+					}
+					if (method.getName().startsWith("get") || method.getName().startsWith("is")) {
+						return CompletableFuture.completedFuture(false);
+					}
+					return method.getReturnType() == void.class ? null : CompletableFuture.completedFuture(null);
+				});
+		if(!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		Track t2 = new Track(n2, n3, 1, 50);
+		Track t3 = new Track(n3, n1, 1, 50);
+		Locomotive locomotive = new Locomotive("Test", 0.2, 30, new Position(t1.getCurrentTrackEdge(), 0.5), 3);
+		TrainScope trainScope = locomotive.getTrainScope();
+		// The layout must not change between the encodings
+		trainScope.closeSpeedControlThread();
+		Balise balise = new Balise(new Position(t2.getCurrentTrackEdge(), 0.5), 1);
+		List<Serializable> objects = new ArrayList<>(Arrays.asList(n1, n2, n3, t1, t2, t3, t1.getCurrentTrackEdge(),
+				t2.getCurrentTrackEdge(), t3.getCurrentTrackEdge(), trainScope, balise, locomotive));
+
+		StoreCodec binary = SnapshotFormat.BINARY.getCodec();
+		StoreCodec chunked = SnapshotFormat.CHUNKED.getCodec();
+		byte[] expected = binary.encode(objects, 3);
+		StoreCodec.Snapshot content = chunked.decode(chunked.encode(objects, 3));
+		assertEquals(3, content.getGeneration());
+		assertEquals(objects.size(), content.getObjects().size());
+		for (int i = 0; i < objects.size(); i++) {
+			assertEquals(objects.get(i).getClass(), content.getObjects().get(i).getClass());
+		}
+		// The same layout gives the same bytes
+		assertTrue(Arrays.equals(expected, binary.encode(content.getObjects(), 3)));
+		assertTrue(Arrays.equals(expected, binary.encode(binary.decode(expected).getObjects(), 3)));
+
+		// A reference from the rolling stock into the train scopes
+		Locomotive l2 = (Locomotive) content.getObjects().get(11);
+		assertSame(content.getObjects().get(9), l2.getTrainScope());
+
+		balise.delete();
+		locomotive.delete();
+		t1.delete();
+		t2.delete();
+		t3.delete();
+		n1.delete();
+		n2.delete();
+		n3.delete();
+		StoreHandler.close();
+		Main.asyncControlUnit = null;
+	}
+}
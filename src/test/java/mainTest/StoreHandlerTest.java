@@ -0,0 +1,42 @@
+package mainTest;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import main.StoreHandler;
+import modelling.Node;
+import modelling.Track;
+
+class StoreHandlerTest {
+
+	@Test
+	void testGetAll() throws Exception {
+		if(!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		
+		Set<Node> nodes = StoreHandler.getAll(Node.class);
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		
+		assertTrue(nodes.contains(n1));
+		assertTrue(nodes.contains(n2));
+		assertTrue(StoreHandler.getAll(Track.class).contains(t1));
+		assertFalse(StoreHandler.getAll(Track.class).contains(n1));
+		
+		t1.delete();
+		n1.delete();
+		n2.delete();
+		
+		assertFalse(nodes.contains(n1));
+		assertFalse(StoreHandler.getAll(Track.class).contains(t1));
+		
+		StoreHandler.close();
+	}
+
+}
@@ -0,0 +1,186 @@
+package mainTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Edge;
+import modelling.Node;
+import modelling.Track;
+
+/**
+ * Simulates crashes of the StoreHandler by copying its files while it is
+ * running and restoring them after it has been closed.
+ */
+class StoreJournalTest {
+
+	private static final Path SNAPSHOT = Paths.get("serializedObjects", "StoreJournalTest.ser");
+	private static final Path LOG = Paths.get("serializedObjects", "StoreJournalTest.log");
+	/**
+	 * The generation at the start of the journal
+	 */
+	private static final int HEADER_LENGTH = 8;
+
+	@Test
+	void testReplayAfterCrash() throws Exception {
+		crashAfterChanges(new byte[0]);
+		StoreHandler.open();
+		assertReplayed();
+		finish();
+	}
+
+	@Test
+	void testTornRecord() throws Exception {
+		// An add record of 5 Objects that ends after its type and count
+		crashAfterChanges(new byte[] { 1, 5 });
+		StoreHandler.open();
+		// All complete records are still replayed
+		assertReplayed();
+		finish();
+	}
+
+	@Test
+	void testCompaction() throws Exception {
+		start();
+		StoreHandler.COMPACTION_THRESHOLD = 1;
+		try {
+			StoreHandler.open();
+			Node n1 = new Node();
+			Node n2 = new Node();
+			new Track(n1, n2, 1, 50);
+			awaitFlush();
+			// The journal was folded into the snapshot and truncated
+			assertEquals(HEADER_LENGTH, Files.size(LOG));
+			byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+			StoreHandler.close();
+
+			Files.write(SNAPSHOT, snapshot);
+			StoreHandler.open();
+			assertEquals(2, StoreHandler.getAll(Node.class).size());
+			assertEquals(1, StoreHandler.getAll(Track.class).size());
+		} finally {
+			StoreHandler.COMPACTION_THRESHOLD = 1000;
+		}
+		finish();
+	}
+
+	@Test
+	void testStaleJournal() throws Exception {
+		start();
+		StoreHandler.open();
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		awaitFlush();
+		byte[] log = Files.readAllBytes(LOG);
+		t1.delete();
+		// Folds the journal into a new snapshot
+		StoreHandler.close();
+
+		// A crash after the new snapshot was written, but before the journal was
+		// started on top of it
+		Files.write(LOG, log);
+		StoreHandler.open();
+		// The records are already in the snapshot and must not be applied again
+		assertEquals(2, StoreHandler.getAll(Node.class).size());
+		assertEquals(0, StoreHandler.getAll(Track.class).size());
+		assertEquals(0, StoreHandler.getAll(Edge.class).size());
+		finish();
+	}
+
+	/**
+	 * Store a Track in a snapshot, then replace it by another Track in the journal
+	 * and crash.
+	 *
+	 * @param tail - is appended to the journal of the crashed StoreHandler
+	 */
+	private static void crashAfterChanges(byte[] tail) throws Exception {
+		start();
+		StoreHandler.open();
+		Node n1 = new Node();
+		Node n2 = new Node();
+		new Track(n1, n2, 1, 50);
+		StoreHandler.close();
+
+		StoreHandler.open();
+		// Unbinds the Nodes, they are updated in the journal
+		StoreHandler.getAll(Track.class).iterator().next().delete();
+		Node n3 = new Node();
+		Node n4 = new Node();
+		new Track(n3, n4, 2, 50);
+		awaitFlush();
+		byte[] snapshot = Files.readAllBytes(SNAPSHOT);
+		byte[] log = Files.readAllBytes(LOG);
+		StoreHandler.close();
+
+		Files.write(SNAPSHOT, snapshot);
+		Files.write(LOG, log);
+		Files.write(LOG, tail, StandardOpenOption.APPEND);
+	}
+
+	private static void assertReplayed() throws Exception {
+		assertEquals(4, StoreHandler.getAll(Node.class).size());
+		assertEquals(1, StoreHandler.getAll(Track.class).size());
+		assertEquals(1, StoreHandler.getAll(Edge.class).size());
+		Track track = StoreHandler.getAll(Track.class).iterator().next();
+		assertSame(track, track.getCurrentTrackEdge().getOrigin());
+		assertSame(StoreHandler.getAll(Edge.class).iterator().next(), track.getCurrentTrackEdge());
+
+		track.delete();
+		// A Node can only be deleted if it is unbound, so the updates of the first
+		// two Nodes were replayed as well
+		for (Node node : new ArrayList<>(StoreHandler.getAll(Node.class))) {
+			node.delete();
+		}
+	}
+
+	/**
+	 * Open the StoreHandler on empty files of its own.
+	 */
+	private static void start() throws Exception {
+		if (StoreHandler.isOpen()) {
+			StoreHandler.close();
+		}
+		setAnlageID("StoreJournalTest");
+		deleteFiles();
+	}
+
+	private static void finish() throws Exception {
+		StoreHandler.close();
+		deleteFiles();
+		setAnlageID(null);
+	}
+
+	/**
+	 * Wait until the StoreHandler Thread has written the current changes and
+	 * started its next round.
+	 */
+	private static void awaitFlush() throws InterruptedException {
+		long flushes = StoreHandler.getPerformedFlushes() + StoreHandler.getSkippedFlushes();
+		while (StoreHandler.getPerformedFlushes() + StoreHandler.getSkippedFlushes() < flushes + 2) {
+			Thread.sleep(50);
+		}
+	}
+
+	private static void deleteFiles() throws Exception {
+		Files.deleteIfExists(SNAPSHOT);
+		Files.deleteIfExists(Paths.get("serializedObjects", "StoreJournalTest.ser.bak"));
+		Files.deleteIfExists(LOG);
+	}
+
+	private static void setAnlageID(String id) throws Exception {
+		Field anlageID = Main.class.getDeclaredField("anlageID");
+		anlageID.setAccessible(true);
+		anlageID.set(null, id);
+	}
+}
@@ -0,0 +1,112 @@
+package modellingTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import modelling.ControlLoopScheduler;
+import modelling.TickStatistics;
+
+class ControlLoopSchedulerTest {
+
+	private static final long MS = 1000000;
+
+	@Test
+	void testFanOut() throws InterruptedException {
+		ControlLoopScheduler scheduler = new ControlLoopScheduler(4);
+		Set<String> workers = ConcurrentHashMap.newKeySet();
+		ControlLoopScheduler.Registration[] registrations = new ControlLoopScheduler.Registration[8];
+		for (int i = 0; i < registrations.length; i++) {
+			registrations[i] = scheduler.register(() -> {
+				workers.add(Thread.currentThread().getName());
+				sleep(2);
+			}, 5 * MS);
+		}
+		assertEquals(registrations.length, scheduler.getNumberOfRegistrations());
+		Thread.sleep(300);
+		for (ControlLoopScheduler.Registration registration : registrations) {
+			registration.cancel();
+			registration.awaitTermination();
+			assertTrue(registration.getStatistics().getTicks() > 0);
+		}
+		assertEquals(0, scheduler.getNumberOfRegistrations());
+
+		// The loops are ticked by several workers, but never by more than the pool
+		assertTrue(workers.size() > 1 && workers.size() <= 4);
+		for (String worker : workers) {
+			assertTrue(worker.startsWith("ControlLoop Worker "));
+		}
+	}
+
+	@Test
+	void testOverrunPolicies() throws InterruptedException {
+		ControlLoopScheduler scheduler = new ControlLoopScheduler(2);
+		// Every tick takes more than two periods
+		ControlLoopScheduler.Registration skip = scheduler.register(() -> sleep(25), 10 * MS,
+				ControlLoopScheduler.OverrunPolicy.SKIP, new TickStatistics());
+		ControlLoopScheduler.Registration catchUp = scheduler.register(() -> sleep(25), 10 * MS,
+				ControlLoopScheduler.OverrunPolicy.CATCH_UP, new TickStatistics());
+		Thread.sleep(300);
+		skip.cancel();
+		catchUp.cancel();
+		skip.awaitTermination();
+		catchUp.awaitTermination();
+
+		// Both count the passed deadlines, only SKIP drops ticks
+		assertTrue(skip.getSkippedTicks() > 0);
+		assertTrue(skip.getStatistics().getMissedDeadlines() >= skip.getSkippedTicks());
+		assertEquals(0, catchUp.getSkippedTicks());
+		assertTrue(catchUp.getStatistics().getMissedDeadlines() > 0);
+		// The ticks of CATCH_UP run back to back
+		assertTrue(catchUp.getStatistics().getTicks() >= 8);
+	}
+
+	@Test
+	void testCancel() throws InterruptedException {
+		ControlLoopScheduler scheduler = new ControlLoopScheduler(1);
+		AtomicInteger ticks = new AtomicInteger();
+		ControlLoopScheduler.Registration[] registration = new ControlLoopScheduler.Registration[1];
+		// The tick cancels its own loop
+		registration[0] = scheduler.register(() -> {
+			if (ticks.incrementAndGet() == 3) {
+				registration[0].cancel();
+			}
+		}, MS);
+		registration[0].awaitTermination();
+		Thread.sleep(20);
+		assertEquals(3, ticks.get());
+		assertEquals(3, registration[0].getStatistics().getTicks());
+		assertEquals(0, scheduler.getNumberOfRegistrations());
+	}
+
+	@Test
+	void testExceptionInTick() throws InterruptedException {
+		ControlLoopScheduler scheduler = new ControlLoopScheduler(1);
+		AtomicInteger ticks = new AtomicInteger();
+		ControlLoopScheduler.Registration registration = scheduler.register(() -> {
+			if (ticks.incrementAndGet() == 1) {
+				throw new IllegalStateException("The first tick fails");
+			}
+		}, MS);
+		Thread.sleep(50);
+		registration.cancel();
+		registration.awaitTermination();
+
+		// The failed tick is recorded and the loop goes on
+		assertTrue(ticks.get() > 1);
+		assertEquals(ticks.get(), registration.getStatistics().getTicks());
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
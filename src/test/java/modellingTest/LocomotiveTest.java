@@ -1,7 +1,13 @@
 package modellingTest;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+
 import org.junit.jupiter.api.Test;
 
+import main.Main;
 import main.StoreHandler;
 import modelling.Bumper;
 import modelling.Locomotive;
@@ -9,6 +15,8 @@ import modelling.Node;
 import modelling.Position;
 import modelling.Switch;
 import modelling.Track;
+import modelling.TrainScope;
+import sensorsAktuators.AsyncControlUnit;
 
 class LocomotiveTest {
 
@@ -18,4 +26,63 @@ class LocomotiveTest {
 		
 	}
 
+	/**
+	 * The Z21 reports the drive level while the speed control ticks. The tick
+	 * locks the TrainScope before the Locomotive, so updateDccSpeed must not
+	 * lock them the other way round.
+	 */
+	@Test
+	void testUpdateDccSpeedDuringTicks() throws Exception {
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = (AsyncControlUnit) Proxy.newProxyInstance(LocomotiveTest.class.getClassLoader(),
+				new Class<?>[] { AsyncControlUnit.class }, (proxy, method, args) -> {
+					if (method.getName().equals("getDccSpeed")) {
+						return CompletableFuture.completedFuture(0);
+					}
+					if (method.getName().startsWith("get") || method.getName().startsWith("is")) {
+						return CompletableFuture.completedFuture(false);
+					}
+					return method.getReturnType() == void.class ? null : CompletableFuture.completedFuture(null);
+				});
+		if (!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		// A ring, so the train never reaches the end of the track
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		Track t2 = new Track(n2, n3, 1, 50);
+		Track t3 = new Track(n3, n1, 1, 50);
+		Locomotive locomotive = new Locomotive("Test", 0.2, 30, new Position(t1.getCurrentTrackEdge(), 0.5), 3);
+		TrainScope trainScope = locomotive.getTrainScope();
+		trainScope.closeSpeedControlThread();
+		trainScope.setTickPeriod(1);
+		trainScope.startSpeedControlThread();
+
+		Thread reports = new Thread(() -> {
+			long end = System.currentTimeMillis() + 1000;
+			for (int i = 0; System.currentTimeMillis() < end; i++) {
+				locomotive.updateDccSpeed(i % 10);
+			}
+		}, "Z21 Model Update");
+		reports.setDaemon(true);
+		reports.start();
+		reports.join(5000);
+		assertTrue(!reports.isAlive());
+
+		// The speed control still ticks
+		long ticks = trainScope.getTickStatistics().getTicks();
+		Thread.sleep(50);
+		assertTrue(trainScope.getTickStatistics().getTicks() > ticks);
+
+		trainScope.closeSpeedControlThread();
+		locomotive.delete();
+		t1.delete();
+		t2.delete();
+		t3.delete();
+		StoreHandler.close();
+		Main.asyncControlUnit = null;
+	}
+
 }
@@ -0,0 +1,61 @@
+package modellingTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import modelling.ControlLoopScheduler;
+import modelling.TickStatistics;
+
+class TickStatisticsTest {
+
+	private static final long MS = 1000000;
+
+	@Test
+	void testHistogram() {
+		TickStatistics statistics = new TickStatistics();
+		assertEquals(0, statistics.getTickDurationPercentile(0.5));
+
+		// 0.5 ms is in the bucket below 512 us, 3 ms in the bucket below 4096 us
+		for (int i = 0; i < 98; i++) {
+			statistics.recordTick(MS / 2);
+		}
+		statistics.recordTick(3 * MS);
+		statistics.recordTick(3 * MS);
+		assertEquals(100, statistics.getTicks());
+		assertEquals(98, statistics.getTickDurationHistogram()[9]);
+		assertEquals(2, statistics.getTickDurationHistogram()[12]);
+		assertEquals(512000, statistics.getTickDurationPercentile(0.5));
+		assertEquals(512000, statistics.getTickDurationPercentile(0.98));
+		assertEquals(4096000, statistics.getTickDurationPercentile(0.99));
+		assertEquals(3 * MS, statistics.getMaxTickDuration());
+
+		// Longer ticks end up in the last bucket
+		statistics.recordTick(Long.MAX_VALUE / 2);
+		assertEquals(1, statistics.getTickDurationHistogram()[TickStatistics.BUCKETS - 1]);
+	}
+
+	@Test
+	void testSkipOverruns() throws InterruptedException {
+		ControlLoopScheduler scheduler = new ControlLoopScheduler(1);
+		TickStatistics statistics = new TickStatistics();
+		// Every tick takes more than two periods
+		ControlLoopScheduler.Registration registration = scheduler.register(() -> {
+			try {
+				Thread.sleep(25);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}, 10 * MS, ControlLoopScheduler.OverrunPolicy.SKIP, statistics);
+		Thread.sleep(300);
+		registration.cancel();
+		registration.awaitTermination();
+
+		long ticks = statistics.getTicks();
+		assertTrue(ticks > 0 && ticks <= 12);
+		// At least two deadlines pass during every tick
+		assertTrue(statistics.getMissedDeadlines() >= 2 * (ticks - 1));
+		assertTrue(statistics.getTickDurationPercentile(0.5) >= 25 * MS);
+	}
+}
@@ -0,0 +1,103 @@
+package modellingTest;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Position;
+import modelling.Track;
+import modelling.TrainScope;
+import modelling.Vehicle;
+import sensorsAktuators.AsyncControlUnit;
+
+class TrainScopeTest {
+
+	/**
+	 * The constraints are cached by the TrainScope, a Vehicle that moves into
+	 * another TrainScope must invalidate the constraints of both.
+	 */
+	@Test
+	void testMoveVehicle() throws Exception {
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = (AsyncControlUnit) Proxy.newProxyInstance(TrainScopeTest.class.getClassLoader(),
+				new Class<?>[] { AsyncControlUnit.class }, (proxy, method, args) -> {
+					if (method.getName().equals("getDccSpeed")) {
+						return CompletableFuture.completedFuture(0);
+					}
+					if (method.getName().startsWith("get") || method.getName().startsWith("is")) {
+						return CompletableFuture.completedFuture(false);
+					}
+					return method.getReturnType() == void.class ? null : CompletableFuture.completedFuture(null);
+				});
+		if (!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Track t1 = new Track(n1, n2, 1, 50);
+		Track t2 = new Track(n2, n3, 1, 50);
+		Track t3 = new Track(n3, n1, 1, 50);
+		Locomotive l1 = new Locomotive("Test 1", 0.2, 30, new Position(t1.getCurrentTrackEdge(), 0.5), 3);
+		Locomotive l2 = new Locomotive("Test 2", 0.2, 20, new Position(t2.getCurrentTrackEdge(), 0.5), 4);
+		TrainScope s1 = l1.getTrainScope();
+		TrainScope s2 = l2.getTrainScope();
+		// The constraints are only computed by the test
+		s1.closeSpeedControlThread();
+		s2.closeSpeedControlThread();
+
+		Object c1 = getConstraints(s1);
+		Object c2 = getConstraints(s2);
+		assertSame(c1, getConstraints(s1));
+
+		setTrainScope(l2, s1);
+		assertSame(s1, l2.getTrainScope());
+		assertNull(getField(s1, "constraints"));
+		assertNull(getField(s2, "constraints"));
+		assertNotSame(c1, getConstraints(s1));
+		assertNotSame(c2, getConstraints(s2));
+		assertNotNull(getField(s1, "constraints"));
+
+		setTrainScope(l2, s2);
+		l1.delete();
+		l2.delete();
+		t1.delete();
+		t2.delete();
+		t3.delete();
+		n1.delete();
+		n2.delete();
+		n3.delete();
+		StoreHandler.close();
+		Main.asyncControlUnit = null;
+	}
+
+	private static Object getConstraints(TrainScope trainScope) throws Exception {
+		Method getConstraints = TrainScope.class.getDeclaredMethod("getConstraints");
+		getConstraints.setAccessible(true);
+		return getConstraints.invoke(trainScope);
+	}
+
+	private static void setTrainScope(Vehicle vehicle, TrainScope trainScope) throws Exception {
+		Method setTrainScope = Vehicle.class.getDeclaredMethod("setTrainScope", TrainScope.class);
+		setTrainScope.setAccessible(true);
+		setTrainScope.invoke(vehicle, trainScope);
+	}
+
+	private static Object getField(TrainScope trainScope, String name) throws Exception {
+		Field field = TrainScope.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(trainScope);
+	}
+}
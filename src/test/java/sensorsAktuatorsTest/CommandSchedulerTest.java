@@ -0,0 +1,284 @@
+package sensorsAktuatorsTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Switch;
+import sensorsAktuators.CommandScheduler;
+import sensorsAktuators.CommandScheduler.Priority;
+import sensorsAktuators.DeduplicatingControlUnit;
+
+/**
+ * The dispatcher of the CommandScheduler can't send while the test holds the
+ * lock of the CommandScheduler, so the commands given within a synchronized
+ * block are all queued before the first one is sent.
+ */
+class CommandSchedulerTest {
+
+	@Test
+	void testPriorityOrder() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(2);
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Switch turnout = new Switch(n1, n2, n3, 1, 1, 50, 30, 7);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+
+		CompletableFuture<?>[] commands = new CompletableFuture<?>[5];
+		synchronized (scheduler) {
+			commands[0] = scheduler.getDccSpeed(locomotives[1]);
+			commands[1] = scheduler.setLightsOn(locomotives[1]);
+			commands[2] = scheduler.setDccSpeed(locomotives[1], 50);
+			commands[3] = scheduler.setSwitch(turnout, true);
+			commands[4] = scheduler.setDccSpeed(locomotives[0], 0);
+			assertEquals(1, scheduler.getQueueLength(Priority.SAFETY_BRAKING));
+			assertEquals(1, scheduler.getQueueLength(Priority.SPEED));
+		}
+		CompletableFuture.allOf(commands).join();
+
+		assertEquals(List.of("speed 1 0", "switch 7 true", "speed 2 50", "lightsOn 2", "getDccSpeed 2"),
+				counting.getCommands());
+		assertEquals(1, scheduler.getSentCommands(Priority.SAFETY_BRAKING));
+		assertEquals(1, scheduler.getSentCommands(Priority.QUERY));
+		// The control unit is flushed as soon as the queues are empty
+		Thread.sleep(50);
+		assertTrue(counting.getFlushes() > 0);
+
+		scheduler.close();
+		turnout.delete();
+		n1.delete();
+		n2.delete();
+		n3.delete();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testCoalescing() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(1);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+
+		CompletableFuture<Void> first;
+		synchronized (scheduler) {
+			first = scheduler.setDccSpeed(locomotives[0], 10);
+			assertSame(first, scheduler.setDccSpeed(locomotives[0], 20));
+			assertSame(first, scheduler.setDccSpeed(locomotives[0], 40));
+		}
+		first.join();
+		assertEquals(List.of("speed 1 40"), counting.getCommands());
+		assertEquals(2, scheduler.getCoalescedCommands());
+
+		synchronized (scheduler) {
+			// Lower than the sent drive level
+			scheduler.setDccSpeed(locomotives[0], 20);
+			assertEquals(1, scheduler.getQueueLength(Priority.SAFETY_BRAKING));
+			assertEquals(0, scheduler.getQueueLength(Priority.SPEED));
+
+			// The replaced command accelerates again
+			first = scheduler.setDccSpeed(locomotives[0], 50);
+			assertEquals(0, scheduler.getQueueLength(Priority.SAFETY_BRAKING));
+			assertEquals(1, scheduler.getQueueLength(Priority.SPEED));
+		}
+		first.join();
+		assertEquals(List.of("speed 1 40", "speed 1 50"), counting.getCommands());
+		assertEquals(0, scheduler.getSentCommands(Priority.SAFETY_BRAKING));
+		assertEquals(2, scheduler.getSentCommands(Priority.SPEED));
+
+		scheduler.close();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testRoute() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(1);
+		Node[] nodes = new Node[9];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new Node();
+		}
+		Switch[] route = new Switch[3];
+		for (int i = 0; i < route.length; i++) {
+			route[i] = new Switch(nodes[3 * i], nodes[3 * i + 1], nodes[3 * i + 2], 1, 1, 50, 30, 7 + i);
+		}
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+
+		CompletableFuture<Void> switched;
+		CompletableFuture<Void> turnout;
+		synchronized (scheduler) {
+			switched = scheduler.setRoute(route, new boolean[] { true, false, true });
+			turnout = scheduler.setSwitch(route[1], true);
+			// The route is queued as one command
+			assertEquals(2, scheduler.getQueueLength(Priority.TURNOUT));
+		}
+		switched.join();
+		turnout.join();
+
+		assertEquals(List.of("switch 7 true", "switch 8 false", "switch 9 true", "switch 8 true"),
+				counting.getCommands());
+		assertEquals(4, scheduler.getSentCommands(Priority.TURNOUT));
+
+		scheduler.close();
+		for (Switch switch_ : route) {
+			switch_.delete();
+		}
+		for (Node node : nodes) {
+			node.delete();
+		}
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testParkedTrains() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(25);
+		Node n1 = new Node();
+		Node n2 = new Node();
+		Node n3 = new Node();
+		Switch turnout = new Switch(n1, n2, n3, 1, 1, 50, 30, 7);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+		// Wired like the Main class
+		DeduplicatingControlUnit unit = new DeduplicatingControlUnit(scheduler);
+
+		// The speed control of each parked train sends its 0 every tick
+		long[] latency = new long[2];
+		CompletableFuture<Void> switched = null;
+		CompletableFuture<Boolean> query = null;
+		for (int tick = 0; tick < 20; tick++) {
+			for (Locomotive locomotive : locomotives) {
+				unit.setDccSpeed(locomotive, 0);
+			}
+			if (tick == 5) {
+				long start = System.nanoTime();
+				switched = unit.setSwitch(turnout, true);
+				switched.thenRun(() -> latency[0] = System.nanoTime() - start);
+				query = unit.isLightOn(locomotives[0]);
+				query.thenRun(() -> latency[1] = System.nanoTime() - start);
+			}
+			Thread.sleep(10);
+		}
+		switched.join();
+		query.join();
+
+		// The turnout and the query only wait for their own budget
+		assertTrue(latency[0] / 1000000 < 50);
+		assertTrue(latency[1] / 1000000 < 50);
+		assertEquals(25, counting.count("speed"));
+		assertEquals(25, scheduler.getSentCommands(Priority.SAFETY_BRAKING));
+
+		// Without the DeduplicatingControlUnit an unchanged 0 is no braking command
+		synchronized (scheduler) {
+			for (Locomotive locomotive : locomotives) {
+				scheduler.setDccSpeed(locomotive, 0);
+			}
+			assertEquals(0, scheduler.getQueueLength(Priority.SAFETY_BRAKING));
+			assertEquals(25, scheduler.getQueueLength(Priority.SPEED));
+		}
+
+		scheduler.close();
+		turnout.delete();
+		n1.delete();
+		n2.delete();
+		n3.delete();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testRateLimit() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(1);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+		// A burst of 2 commands, then one every 50 ms
+		scheduler.setRateLimit(Priority.FUNCTION, 20);
+
+		long start = System.nanoTime();
+		CompletableFuture<?>[] commands = new CompletableFuture<?>[10];
+		for (int i = 0; i < commands.length; i++) {
+			commands[i] = scheduler.setLocoFunction(locomotives[0], (byte) i, null);
+		}
+		CompletableFuture.allOf(commands).join();
+		long elapsed = (System.nanoTime() - start) / 1000000;
+
+		assertTrue(elapsed >= 350);
+		assertEquals(10, counting.count("function 1 "));
+		assertTrue(scheduler.getMaxWait(Priority.FUNCTION) >= 350);
+
+		scheduler.close();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testCancelOnStop() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(3);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+
+		CompletableFuture<?>[] speeds = new CompletableFuture<?>[3];
+		CompletableFuture<Void> function;
+		CompletableFuture<Void> stop;
+		synchronized (scheduler) {
+			for (int i = 0; i < speeds.length; i++) {
+				speeds[i] = scheduler.setDccSpeed(locomotives[i], i == 0 ? 0 : 60);
+			}
+			function = scheduler.setLightsOn(locomotives[0]);
+			// Sent right away by this Thread
+			stop = scheduler.stop();
+			assertEquals(0, scheduler.getQueueLength(Priority.SAFETY_BRAKING));
+			assertEquals(0, scheduler.getQueueLength(Priority.SPEED));
+		}
+		stop.join();
+		function.join();
+		for (CompletableFuture<?> speed : speeds) {
+			assertTrue(speed.isCancelled());
+		}
+		Thread.sleep(50);
+		// The queued speed commands would move the locomotives again
+		assertEquals(List.of("stop", "lightsOn 1"), counting.getCommands());
+		assertEquals(1, scheduler.getSentCommands(Priority.EMERGENCY));
+
+		// New speed commands are sent again
+		scheduler.setDccSpeed(locomotives[1], 30).join();
+		assertEquals(1, counting.count("speed 2 30"));
+
+		scheduler.close();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testBoundedLatency() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(3);
+		CountingControlUnit counting = new CountingControlUnit();
+		CommandScheduler scheduler = new CommandScheduler(counting);
+
+		// More queries and functions than the control unit can send in a second
+		CompletableFuture<?>[] flood = new CompletableFuture<?>[300];
+		for (int i = 0; i < flood.length; i++) {
+			flood[i] = i % 2 == 0 ? scheduler.isLightOn(locomotives[1])
+					: scheduler.setLocoFunction(locomotives[2], (byte) 1, null);
+		}
+		scheduler.setDccSpeed(locomotives[0], 60).join();
+
+		long start = System.nanoTime();
+		scheduler.setDccSpeed(locomotives[0], 0).join();
+		long latency = (System.nanoTime() - start) / 1000000;
+
+		// The braking command only waits for the capacity of the control unit
+		assertTrue(latency < 50);
+		assertTrue(scheduler.getMaxWait(Priority.SAFETY_BRAKING) < 50);
+		assertTrue(scheduler.getQueueLength(Priority.QUERY) + scheduler.getQueueLength(Priority.FUNCTION) > 0);
+
+		CompletableFuture.allOf(flood).join();
+		assertEquals(150, counting.count("isLightOn"));
+
+		scheduler.close();
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+}
@@ -0,0 +1,186 @@
+package sensorsAktuatorsTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Locomotive;
+import modelling.Node;
+import modelling.Position;
+import modelling.Switch;
+import modelling.Track;
+import sensorsAktuators.AsyncControlUnit;
+import sensorsAktuators.FunctionSwitchingType;
+
+/**
+ * A fake control unit, that answers every request at once and records the
+ * commands in the order they arrive, e.g. "speed 3 40" for a drive level of 40
+ * for the dcc address 3.
+ */
+class CountingControlUnit implements AsyncControlUnit {
+
+	private final List<String> commands = new ArrayList<>();
+	private int flushes = 0;
+	private boolean failing = false;
+
+	/**
+	 * Create locomotives on a long track. Their speed control is stopped, so
+	 * only the test sends commands for them.
+	 *
+	 * @param number
+	 * @return the locomotives with the dcc addresses 1 to number
+	 * @throws Exception
+	 */
+	static Locomotive[] createLocomotives(int number) throws Exception {
+		Main.MAX_DCC_VALUES = 128;
+		Main.asyncControlUnit = new CountingControlUnit();
+		if (!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		Track track = new Track(new Node(), new Node(), number, 50);
+		Locomotive[] locomotives = new Locomotive[number];
+		for (int i = 0; i < number; i++) {
+			locomotives[i] = new Locomotive("Test " + (i + 1), 0.2, 30,
+					new Position(track.getCurrentTrackEdge(), i + 0.5), i + 1);
+			locomotives[i].getTrainScope().closeSpeedControlThread();
+		}
+		return locomotives;
+	}
+
+	static void deleteLocomotives(Locomotive[] locomotives) throws Exception {
+		for (Locomotive locomotive : locomotives) {
+			locomotive.delete();
+		}
+		StoreHandler.close();
+	}
+
+	/**
+	 * @param failing - if true, all following commands fail
+	 */
+	synchronized void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+
+	synchronized List<String> getCommands() {
+		return new ArrayList<>(commands);
+	}
+
+	/**
+	 * @param prefix - e.g. "speed" or "speed 3 "
+	 * @return the number of received commands that start with the prefix
+	 */
+	synchronized int count(String prefix) {
+		int count = 0;
+		for (String command : commands) {
+			if (command.startsWith(prefix)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	synchronized int getFlushes() {
+		return flushes;
+	}
+
+	/**
+	 * Wait until the number of received commands has reached the number
+	 *
+	 * @param number
+	 * @param timeout - in ms
+	 * @return false if the timeout has elapsed
+	 * @throws InterruptedException
+	 */
+	synchronized boolean await(int number, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		while (commands.size() < number) {
+			long left = end - System.currentTimeMillis();
+			if (left <= 0) {
+				return false;
+			}
+			wait(left);
+		}
+		return true;
+	}
+
+	private synchronized <T> CompletableFuture<T> record(String command, T value) {
+		commands.add(command);
+		notifyAll();
+		if (failing) {
+			return CompletableFuture.failedFuture(new java.io.IOException("Failed " + command));
+		}
+		return CompletableFuture.completedFuture(value);
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOff() {
+		return record("powerOff", null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setTrackPowerOn() {
+		return record("powerOn", null);
+	}
+
+	@Override
+	public CompletableFuture<Void> stop() {
+		return record("stop", null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setDccSpeed(Locomotive locomotive, int dccSpeed) {
+		return record("speed " + locomotive.getDccAddress() + " " + dccSpeed, null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOn(Locomotive locomotive) {
+		return record("lightsOn " + locomotive.getDccAddress(), null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLightsOff(Locomotive locomotive) {
+		return record("lightsOff " + locomotive.getDccAddress(), null);
+	}
+
+	@Override
+	public CompletableFuture<Void> setLocoFunction(Locomotive locomotive, byte functionIndex,
+			FunctionSwitchingType switchType) {
+		return record("function " + locomotive.getDccAddress() + " " + functionIndex, null);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> isLightOn(Locomotive locomotive) {
+		return record("isLightOn " + locomotive.getDccAddress(), false);
+	}
+
+	@Override
+	public CompletableFuture<Integer> getDccSpeed(Locomotive locomotive) {
+		return record("getDccSpeed " + locomotive.getDccAddress(), 0);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getDirection(Locomotive locomotive) {
+		return record("getDirection " + locomotive.getDccAddress(), false);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> getSwitchState(Switch switch_) {
+		return record("getSwitchState " + switch_.getDccAddress(), false);
+	}
+
+	@Override
+	public CompletableFuture<Void> setSwitch(Switch switch_, boolean SwitchState) {
+		return record("switch " + switch_.getDccAddress() + " " + SwitchState, null);
+	}
+
+	@Override
+	synchronized public void flush() {
+		flushes++;
+	}
+
+	@Override
+	public void close() {
+	}
+}
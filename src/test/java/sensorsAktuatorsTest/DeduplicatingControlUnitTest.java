@@ -0,0 +1,118 @@
+package sensorsAktuatorsTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import modelling.Locomotive;
+import sensorsAktuators.DeduplicatingControlUnit;
+
+class DeduplicatingControlUnitTest {
+
+	@Test
+	void testDropDuplicates() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(2);
+		CountingControlUnit counting = new CountingControlUnit();
+		DeduplicatingControlUnit unit = new DeduplicatingControlUnit(counting);
+
+		CompletableFuture<Void> first = unit.setDccSpeed(locomotives[0], 40);
+		for (int i = 0; i < 9; i++) {
+			// The dropped commands complete with the sent one
+			assertSame(first, unit.setDccSpeed(locomotives[0], 40));
+			unit.setDccSpeed(locomotives[1], 40);
+		}
+		assertEquals(1, counting.count("speed 1 "));
+		assertEquals(1, counting.count("speed 2 "));
+		assertEquals(2, unit.getSentCommands());
+		assertEquals(17, unit.getDroppedCommands());
+
+		// A new drive level or a new direction is sent
+		unit.setDccSpeed(locomotives[0], 41);
+		locomotives[0].updateDirectionDecoder(!locomotives[0].isDirectionDecoder());
+		unit.setDccSpeed(locomotives[0], 41);
+		assertEquals(3, counting.count("speed 1 "));
+
+		// A failed command is sent again
+		counting.setFailing(true);
+		unit.setDccSpeed(locomotives[1], 50);
+		counting.setFailing(false);
+		unit.setDccSpeed(locomotives[1], 50);
+		assertEquals(3, counting.count("speed 2 "));
+
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testTicks() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(30);
+		CountingControlUnit counting = new CountingControlUnit();
+		DeduplicatingControlUnit unit = new DeduplicatingControlUnit(counting);
+
+		// Each speed control sends every tick, but changes its drive level
+		// only every tenth tick
+		for (int tick = 0; tick < 50; tick++) {
+			for (Locomotive locomotive : locomotives) {
+				unit.setDccSpeed(locomotive, 10 + tick / 10);
+			}
+		}
+		assertEquals(30 * 5, counting.count("speed"));
+		assertEquals(30 * 50 - 30 * 5, unit.getDroppedCommands());
+
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testKeepalive() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(1);
+		CountingControlUnit counting = new CountingControlUnit();
+		DeduplicatingControlUnit unit = new DeduplicatingControlUnit(counting);
+		int keepalive = DeduplicatingControlUnit.KEEPALIVE_INTERVAL;
+		DeduplicatingControlUnit.KEEPALIVE_INTERVAL = 50;
+		try {
+			unit.setDccSpeed(locomotives[0], 40);
+			unit.setDccSpeed(locomotives[0], 40);
+			assertEquals(1, counting.count("speed"));
+
+			// An unchanged drive level is sent again after the interval
+			Thread.sleep(60);
+			unit.setDccSpeed(locomotives[0], 40);
+			unit.setDccSpeed(locomotives[0], 40);
+			assertEquals(2, counting.count("speed"));
+		} finally {
+			DeduplicatingControlUnit.KEEPALIVE_INTERVAL = keepalive;
+		}
+
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+
+	@Test
+	void testClear() throws Exception {
+		Locomotive[] locomotives = CountingControlUnit.createLocomotives(1);
+		CountingControlUnit counting = new CountingControlUnit();
+		DeduplicatingControlUnit unit = new DeduplicatingControlUnit(counting);
+
+		unit.setDccSpeed(locomotives[0], 40);
+		// The track power off keeps the drive levels
+		unit.setTrackPowerOff();
+		unit.setDccSpeed(locomotives[0], 40);
+		assertEquals(1, counting.count("speed"));
+
+		// The emergency stop sets all drive levels to 0
+		unit.stop();
+		unit.setDccSpeed(locomotives[0], 40);
+		assertEquals(2, counting.count("speed"));
+
+		// The decoders may have lost their drive levels without power
+		unit.setTrackPowerOn();
+		unit.setDccSpeed(locomotives[0], 40);
+		assertEquals(3, counting.count("speed"));
+		assertTrue(counting.getCommands().contains("stop"));
+		assertTrue(counting.getCommands().contains("powerOn"));
+
+		CountingControlUnit.deleteLocomotives(locomotives);
+	}
+}
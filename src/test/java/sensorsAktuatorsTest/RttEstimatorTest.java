@@ -0,0 +1,58 @@
+package sensorsAktuatorsTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import sensorsAktuators.RttEstimator;
+
+class RttEstimatorTest {
+
+	private static final long MS = 1000000;
+
+	@Test
+	void testSamples() {
+		RttEstimator rtt = new RttEstimator(20 * MS, 2 * MS, 500 * MS);
+		assertEquals(20 * MS, rtt.getTimeout());
+
+		// The first sample sets the variance to half of the sample
+		rtt.addSample(4 * MS);
+		assertEquals(4 * MS, rtt.getSmoothedRtt(), 1);
+		assertEquals(2 * MS, rtt.getRttVariance(), 1);
+		assertEquals(12 * MS, rtt.getTimeout(), 1);
+
+		// A stable round trip time lets the timeout approach it
+		for (int i = 0; i < 100; i++) {
+			rtt.addSample(4 * MS);
+		}
+		assertEquals(4 * MS, rtt.getSmoothedRtt(), 1);
+		assertEquals(4 * MS, rtt.getTimeout(), 1);
+
+		// It never drops below the minimum
+		for (int i = 0; i < 100; i++) {
+			rtt.addSample(MS / 10);
+		}
+		assertEquals(2 * MS, rtt.getTimeout());
+		assertEquals(201, rtt.getSamples());
+	}
+
+	@Test
+	void testTimedOut() {
+		RttEstimator rtt = new RttEstimator(20 * MS, 2 * MS, 500 * MS);
+		rtt.timedOut(20 * MS);
+		assertEquals(40 * MS, rtt.getTimeout());
+		// Another request with the old timeout does not back off again
+		rtt.timedOut(20 * MS);
+		assertEquals(40 * MS, rtt.getTimeout());
+		for (int i = 0; i < 10; i++) {
+			rtt.timedOut(rtt.getTimeout());
+		}
+		assertEquals(500 * MS, rtt.getTimeout());
+		assertEquals(12, rtt.getTimeouts());
+
+		// The next sample ends the back off
+		rtt.addSample(10 * MS);
+		assertTrue(rtt.getTimeout() < 500 * MS);
+	}
+}
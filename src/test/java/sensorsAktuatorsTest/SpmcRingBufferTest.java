@@ -0,0 +1,76 @@
+package sensorsAktuatorsTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import sensorsAktuators.SpmcRingBuffer;
+
+class SpmcRingBufferTest {
+
+	@Test
+	void testFull() {
+		SpmcRingBuffer<Integer> buffer = new SpmcRingBuffer<>(4);
+		SpmcRingBuffer<Integer>.Cursor first = buffer.newCursor();
+		SpmcRingBuffer<Integer>.Cursor second = buffer.newCursor();
+		assertEquals(4, buffer.getCapacity());
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(4));
+		assertEquals(0, (int) first.poll());
+		// The second Cursor has not read anything yet
+		assertFalse(buffer.offer(4));
+		assertEquals(0, (int) second.poll());
+		assertTrue(buffer.offer(4));
+
+		for (int i = 1; i < 5; i++) {
+			assertEquals(i, (int) first.poll());
+			assertEquals(i, (int) second.poll());
+		}
+		assertNull(first.poll());
+	}
+
+	@Test
+	void testConcurrent() throws Exception {
+		int elements = 1000000;
+		SpmcRingBuffer<Integer> buffer = new SpmcRingBuffer<>(64);
+		long[] sums = new long[3];
+		Thread[] consumers = new Thread[sums.length];
+		for (int c = 0; c < consumers.length; c++) {
+			SpmcRingBuffer<Integer>.Cursor cursor = buffer.newCursor();
+			int index = c;
+			consumers[c] = new Thread(() -> {
+				try {
+					int expected = 0;
+					while (expected < elements) {
+						Integer element = cursor.poll(1, TimeUnit.SECONDS);
+						// Every Cursor reads every element in order
+						assertEquals(expected, (int) element);
+						sums[index] = sums[index] + element;
+						expected++;
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			});
+			consumers[c].start();
+		}
+		for (int i = 0; i < elements; i++) {
+			buffer.put(i);
+		}
+		for (Thread consumer : consumers) {
+			consumer.join();
+		}
+		for (long sum : sums) {
+			assertEquals((long) elements * (elements - 1) / 2, sum);
+		}
+	}
+
+}
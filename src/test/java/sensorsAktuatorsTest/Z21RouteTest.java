@@ -0,0 +1,70 @@
+package sensorsAktuatorsTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import main.Main;
+import main.StoreHandler;
+import modelling.Node;
+import modelling.Switch;
+import sensorsAktuators.CommandScheduler;
+import sensorsAktuators.DeduplicatingControlUnit;
+import sensorsAktuators.Z21;
+import sensorsAktuators.Z21Simulator;
+
+/**
+ * Sends a route through the same chain of control units as the Main class to a
+ * Z21Simulator and counts the datagrams the simulator receives.
+ */
+class Z21RouteTest {
+
+	private static final int TURNOUTS = 8;
+
+	@Test
+	void testRouteInOneDatagram() throws Exception {
+		Z21Simulator simulator = new Z21Simulator(0, 0, 0, 0);
+		simulator.start();
+		Main.S21_IP4 = new byte[] { 127, 0, 0, 1 };
+		Main.S21_PORT = simulator.getPort();
+		Main.MAX_DCC_VALUES = 128;
+		if (!StoreHandler.isOpen()) {
+			StoreHandler.open();
+		}
+		CommandScheduler scheduler = new CommandScheduler(new Z21());
+		Main.asyncControlUnit = new DeduplicatingControlUnit(scheduler);
+
+		Node[] nodes = new Node[3 * TURNOUTS];
+		Switch[] switches = new Switch[TURNOUTS];
+		boolean[] states = new boolean[TURNOUTS];
+		for (int i = 0; i < TURNOUTS; i++) {
+			nodes[3 * i] = new Node();
+			nodes[3 * i + 1] = new Node();
+			nodes[3 * i + 2] = new Node();
+			switches[i] = new Switch(nodes[3 * i], nodes[3 * i + 1], nodes[3 * i + 2], 1, 1, 50, 30, i + 1);
+			states[i] = true;
+		}
+		// The new Switches are set to the left branch, wait until their
+		// outputs are deactivated again
+		Thread.sleep(500);
+
+		long datagrams = simulator.getReceivedDatagrams();
+		long messages = simulator.getReceivedMessages();
+		Main.asyncControlUnit.setRoute(switches, states).join();
+		// Read before the outputs of the route are deactivated
+		assertEquals(1, simulator.getReceivedDatagrams() - datagrams);
+		assertEquals(TURNOUTS, simulator.getReceivedMessages() - messages);
+		assertEquals(TURNOUTS, scheduler.getSentCommands(CommandScheduler.Priority.TURNOUT) - TURNOUTS);
+
+		scheduler.close();
+		simulator.close();
+		Main.asyncControlUnit = null;
+		for (Switch switch_ : switches) {
+			switch_.delete();
+		}
+		for (Node node : nodes) {
+			node.delete();
+		}
+		StoreHandler.close();
+	}
+}